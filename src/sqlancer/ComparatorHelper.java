@@ -1,11 +1,14 @@
 package sqlancer;
 
 import java.io.IOException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
@@ -38,6 +41,60 @@ public final class ComparatorHelper {
 
     public static List<String> getResultSetFirstColumnAsString(String queryString, ExpectedErrors errors,
             SQLGlobalState<?, ?> state) throws SQLException {
+        List<String> resultSet = new ArrayList<>();
+        // Remove the trailing zeros as many DBMS treat it as non-bugs
+        consumeFirstColumn(queryString, errors, state, v -> resultSet.add(removeTrailingZeros(v)));
+        return resultSet;
+    }
+
+    /**
+     * Executes a query and folds the values of its first column into a fingerprint, without keeping the rows.
+     *
+     * @param queryString
+     *            the query
+     * @param errors
+     *            the expected errors
+     * @param state
+     *            the global state
+     * @param fingerprint
+     *            the fingerprint to add the values to
+     *
+     * @throws SQLException
+     *             if the query cannot be executed
+     */
+    public static void addResultSetFirstColumn(String queryString, ExpectedErrors errors, SQLGlobalState<?, ?> state,
+            ResultSetFingerprint fingerprint) throws SQLException {
+        consumeFirstColumn(queryString, errors, state, fingerprint::add);
+    }
+
+    /**
+     * Executes a query with a statement of a connection other than the one of the global state and returns the
+     * fingerprint of its first column. Unlike {@link #addResultSetFirstColumn}, an error is thrown rather than checked
+     * against the expected errors.
+     *
+     * @param statement
+     *            the statement to execute the query with
+     * @param queryString
+     *            the query
+     *
+     * @return the fingerprint of the first column
+     *
+     * @throws SQLException
+     *             if the query cannot be executed
+     */
+    public static ResultSetFingerprint getResultSetFirstColumnFingerprint(Statement statement, String queryString)
+            throws SQLException {
+        ResultSetFingerprint fingerprint = new ResultSetFingerprint();
+        try (ResultSet rs = statement.executeQuery(queryString)) {
+            while (rs.next()) {
+                fingerprint.add(rs.getString(1));
+            }
+        }
+        return fingerprint;
+    }
+
+    private static void consumeFirstColumn(String queryString, ExpectedErrors errors, SQLGlobalState<?, ?> state,
+            Consumer<String> consumer) throws SQLException {
         if (state.getOptions().logEachSelect()) {
             // TODO: refactor me
             state.getLogger().writeCurrent(queryString);
@@ -50,7 +107,6 @@ public final class ComparatorHelper {
         }
         boolean canonicalizeString = state.getOptions().canonicalizeSqlString();
         SQLQueryAdapter q = new SQLQueryAdapter(queryString, errors, true, canonicalizeString);
-        List<String> resultSet = new ArrayList<>();
         SQLancerResultSet result = null;
         try {
             result = q.executeAndGet(state);
@@ -58,12 +114,7 @@ public final class ComparatorHelper {
                 throw new IgnoreMeException();
             }
             while (result.next()) {
-                String resultTemp = result.getString(1);
-                if (resultTemp != null) {
-                    resultTemp = resultTemp.replaceAll("[\\.]0+$", ""); // Remove the trailing zeros as many DBMS treat
-                    // it as non-bugs
-                }
-                resultSet.add(resultTemp);
+                consumer.accept(result.getString(1));
             }
         } catch (Exception e) {
             if (e instanceof IgnoreMeException) {
@@ -82,50 +133,150 @@ public final class ComparatorHelper {
                 result.close();
             }
         }
-        return resultSet;
+    }
+
+    /**
+     * Finds where a run of zeros after a trailing decimal point starts, e.g., 1 for "1.00".
+     *
+     * @param value
+     *            the value
+     *
+     * @return the index of the decimal point, or the length of the value if it does not end with such a run
+     */
+    static int getTrailingZerosStart(String value) {
+        int i = value.length();
+        while (i > 0 && value.charAt(i - 1) == '0') {
+            i--;
+        }
+        if (i == value.length() || i == 0 || value.charAt(i - 1) != '.') {
+            return value.length();
+        }
+        return i - 1;
+    }
+
+    static String removeTrailingZeros(String value) {
+        if (value == null) {
+            return null;
+        }
+        int end = getTrailingZerosStart(value);
+        return end == value.length() ? value : value.substring(0, end);
     }
 
     public static void assumeResultSetsAreEqual(List<String> resultSet, List<String> secondResultSet,
             String originalQueryString, List<String> combinedString, SQLGlobalState<?, ?> state) {
         if (resultSet.size() != secondResultSet.size()) {
-            String queryFormatString = "-- %s;" + System.lineSeparator() + "-- cardinality: %d"
-                    + System.lineSeparator();
-            String firstQueryString = String.format(queryFormatString, originalQueryString, resultSet.size());
-            String combinedQueryString = String.join(";", combinedString);
-            String secondQueryString = String.format(queryFormatString, combinedQueryString, secondResultSet.size());
-            state.getState().getLocalState()
-                    .log(String.format("%s" + System.lineSeparator() + "%s", firstQueryString, secondQueryString));
-            String assertionMessage = String.format(
-                    "The size of the result sets mismatch (%d and %d)!" + System.lineSeparator()
-                            + "First query: \"%s\", whose cardinality is: %d" + System.lineSeparator()
-                            + "Second query:\"%s\", whose cardinality is: %d",
-                    resultSet.size(), secondResultSet.size(), originalQueryString, resultSet.size(),
-                    combinedQueryString, secondResultSet.size());
-            throw new AssertionError(assertionMessage);
-        }
-
-        Set<String> firstHashSet = new HashSet<>(resultSet);
-        Set<String> secondHashSet = new HashSet<>(secondResultSet);
-
+            throw getSizeMismatch(resultSet.size(), secondResultSet.size(), originalQueryString, combinedString,
+                    state);
+        }
         boolean validateResultSizeOnly = state.getOptions().validateResultSizeOnly();
-        if (!validateResultSizeOnly && !firstHashSet.equals(secondHashSet)) {
-            Set<String> firstResultSetMisses = new HashSet<>(firstHashSet);
-            firstResultSetMisses.removeAll(secondHashSet);
-            Set<String> secondResultSetMisses = new HashSet<>(secondHashSet);
-            secondResultSetMisses.removeAll(firstHashSet);
-
-            String queryFormatString = "-- Query: \"%s\"; It misses: \"%s\"";
-            String firstQueryString = String.format(queryFormatString, originalQueryString, firstResultSetMisses);
-            String secondQueryString = String.format(queryFormatString, String.join(";", combinedString),
-                    secondResultSetMisses);
-            // update the SELECT queries to be logged at the bottom of the error log file
-            state.getState().getLocalState()
-                    .log(String.format("%s" + System.lineSeparator() + "%s", firstQueryString, secondQueryString));
-            String assertionMessage = String.format("The content of the result sets mismatch!" + System.lineSeparator()
-                    + "First query : \"%s\"" + System.lineSeparator() + "Second query: \"%s\"", originalQueryString,
-                    secondQueryString);
-            throw new AssertionError(assertionMessage);
+        if (!validateResultSizeOnly) {
+            AssertionError mismatch = getContentMismatch(resultSet, secondResultSet, originalQueryString,
+                    combinedString, state);
+            if (mismatch != null) {
+                throw mismatch;
+            }
+        }
+    }
+
+    /**
+     * Compares the fingerprints of two result sets. The rows are only fetched again if the values differ, to report
+     * which values are missing.
+     *
+     * @param fingerprint
+     *            the fingerprint of the original query
+     * @param secondFingerprint
+     *            the fingerprint of the combined queries
+     * @param originalQueryString
+     *            the original query
+     * @param combinedString
+     *            the combined queries, whose results are concatenated
+     * @param state
+     *            the global state
+     * @param errors
+     *            the expected errors
+     *
+     * @throws SQLException
+     *             if the queries cannot be executed again
+     */
+    public static void assumeResultSetsAreEqual(ResultSetFingerprint fingerprint,
+            ResultSetFingerprint secondFingerprint, String originalQueryString, List<String> combinedString,
+            SQLGlobalState<?, ?> state, ExpectedErrors errors) throws SQLException {
+        if (fingerprint.getCount() != secondFingerprint.getCount()) {
+            throw getSizeMismatch(fingerprint.getCount(), secondFingerprint.getCount(), originalQueryString,
+                    combinedString, state);
         }
+        if (state.getOptions().validateResultSizeOnly() || fingerprint.hasSameValues(secondFingerprint)) {
+            return;
+        }
+        List<String> resultSet = getResultSetFirstColumnAsString(originalQueryString, errors, state);
+        List<String> secondResultSet = new ArrayList<>();
+        for (String queryString : combinedString) {
+            secondResultSet.addAll(getResultSetFirstColumnAsString(queryString, errors, state));
+        }
+        resultSet.replaceAll(ComparatorHelper::canonicalizeResultValue);
+        secondResultSet.replaceAll(ComparatorHelper::canonicalizeResultValue);
+        AssertionError mismatch = getContentMismatch(resultSet, secondResultSet, originalQueryString, combinedString,
+                state);
+        if (mismatch == null) {
+            // the values differed when the fingerprints were computed, but not when the rows were fetched again
+            mismatch = new AssertionError("The content of the result sets mismatch!" + System.lineSeparator()
+                    + "First query : \"" + originalQueryString + "\"" + System.lineSeparator() + "Second query: \""
+                    + String.join(";", combinedString) + "\"");
+        }
+        throw mismatch;
+    }
+
+    private static AssertionError getSizeMismatch(long size, long secondSize, String originalQueryString,
+            List<String> combinedString, SQLGlobalState<?, ?> state) {
+        String queryFormatString = "-- %s;" + System.lineSeparator() + "-- cardinality: %d" + System.lineSeparator();
+        String firstQueryString = String.format(queryFormatString, originalQueryString, size);
+        String combinedQueryString = String.join(";", combinedString);
+        String secondQueryString = String.format(queryFormatString, combinedQueryString, secondSize);
+        state.getState().getLocalState()
+                .log(String.format("%s" + System.lineSeparator() + "%s", firstQueryString, secondQueryString));
+        String assertionMessage = String.format(
+                "The size of the result sets mismatch (%d and %d)!" + System.lineSeparator()
+                        + "First query: \"%s\", whose cardinality is: %d" + System.lineSeparator()
+                        + "Second query:\"%s\", whose cardinality is: %d",
+                size, secondSize, originalQueryString, size, combinedQueryString, secondSize);
+        return new AssertionError(assertionMessage);
+    }
+
+    // compares the values as multisets, so that a value that occurs a different number of times is a mismatch
+    private static AssertionError getContentMismatch(List<String> resultSet, List<String> secondResultSet,
+            String originalQueryString, List<String> combinedString, SQLGlobalState<?, ?> state) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String value : resultSet) {
+            counts.merge(value, 1, Integer::sum);
+        }
+        for (String value : secondResultSet) {
+            counts.merge(value, -1, Integer::sum);
+        }
+        List<String> firstResultSetMisses = new ArrayList<>();
+        List<String> secondResultSetMisses = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                firstResultSetMisses.add(entry.getKey());
+            }
+            for (int i = 0; i < -entry.getValue(); i++) {
+                secondResultSetMisses.add(entry.getKey());
+            }
+        }
+        if (firstResultSetMisses.isEmpty() && secondResultSetMisses.isEmpty()) {
+            return null;
+        }
+
+        String queryFormatString = "-- Query: \"%s\"; It misses: \"%s\"";
+        String firstQueryString = String.format(queryFormatString, originalQueryString, firstResultSetMisses);
+        String secondQueryString = String.format(queryFormatString, String.join(";", combinedString),
+                secondResultSetMisses);
+        // update the SELECT queries to be logged at the bottom of the error log file
+        state.getState().getLocalState()
+                .log(String.format("%s" + System.lineSeparator() + "%s", firstQueryString, secondQueryString));
+        String assertionMessage = String.format("The content of the result sets mismatch!" + System.lineSeparator()
+                + "First query : \"%s\"" + System.lineSeparator() + "Second query: \"%s\"", originalQueryString,
+                secondQueryString);
+        return new AssertionError(assertionMessage);
     }
 
     public static void assumeResultSetsAreEqual(List<String> resultSet, List<String> secondResultSet,
@@ -161,6 +312,35 @@ public final class ComparatorHelper {
         return secondResultSet;
     }
 
+    /**
+     * Folds the results of the three partitions into a fingerprint, see
+     * {@link #getCombinedResultSet(String, String, String, List, boolean, SQLGlobalState, ExpectedErrors)}.
+     *
+     * @return the fingerprint of the combined results
+     *
+     * @throws SQLException
+     *             if the queries cannot be executed
+     */
+    public static ResultSetFingerprint getCombinedResultFingerprint(String firstQueryString,
+            String secondQueryString, String thirdQueryString, List<String> combinedString, boolean asUnion,
+            SQLGlobalState<?, ?> state, ExpectedErrors errors) throws SQLException {
+        ResultSetFingerprint fingerprint = new ResultSetFingerprint();
+        if (asUnion) {
+            String unionString = firstQueryString + " UNION ALL " + secondQueryString + " UNION ALL "
+                    + thirdQueryString;
+            combinedString.add(unionString);
+            addResultSetFirstColumn(unionString, errors, state, fingerprint);
+        } else {
+            addResultSetFirstColumn(firstQueryString, errors, state, fingerprint);
+            addResultSetFirstColumn(secondQueryString, errors, state, fingerprint);
+            addResultSetFirstColumn(thirdQueryString, errors, state, fingerprint);
+            combinedString.add(firstQueryString);
+            combinedString.add(secondQueryString);
+            combinedString.add(thirdQueryString);
+        }
+        return fingerprint;
+    }
+
     public static List<String> getCombinedResultSetNoDuplicates(String firstQueryString, String secondQueryString,
             String thirdQueryString, List<String> combinedString, boolean asUnion, SQLGlobalState<?, ?> state,
             ExpectedErrors errors) throws SQLException {
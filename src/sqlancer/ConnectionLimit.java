@@ -0,0 +1,124 @@
+package sqlancer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounds the number of physical connections that are open to the tested DBMS at the same time, see --max-connections.
+ *
+ * A permit is acquired when a connection is opened and released when that connection is closed, so a connection that
+ * is kept open across databases, e.g., by --reuse-connections, holds its permit until it is closed. The main connection
+ * of a database waits for a permit. Additional connections, i.e., the read connections, the connections of oracle
+ * workers, and the ones of the differential mode, are opened while the main connection already holds a permit, so
+ * they only wait for a bounded time, as all permits could be held by threads that wait for an additional one.
+ */
+public final class ConnectionLimit {
+
+    private static final int ADDITIONAL_CONNECTION_TIMEOUT_SECONDS = 5;
+
+    // null if the number of connections is not bounded
+    private static volatile Semaphore permits;
+
+    private ConnectionLimit() {
+    }
+
+    /**
+     * Sets the maximum number of connections that may be open at the same time.
+     *
+     * @param maxConnections
+     *            the maximum number of connections, or -1 for no limit
+     */
+    public static void setMaxConnections(int maxConnections) {
+        permits = maxConnections > 0 ? new Semaphore(maxConnections, true) : null;
+    }
+
+    /**
+     * Opens the main connection of a database, waiting until a permit is available.
+     *
+     * @param url
+     *            the JDBC URL to connect to
+     *
+     * @return the connection, which releases its permit when it is closed
+     *
+     * @throws SQLException
+     *             if the connection cannot be opened, or the thread was interrupted while waiting for a permit
+     */
+    public static Connection getConnection(String url) throws SQLException {
+        Semaphore semaphore = permits;
+        if (semaphore == null) {
+            return DriverManager.getConnection(url);
+        }
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+        return open(semaphore, url);
+    }
+
+    /**
+     * Opens an additional connection to the database of a thread that already holds the permit of its main connection,
+     * waiting only for a bounded time for a permit.
+     *
+     * @param url
+     *            the JDBC URL to connect to
+     *
+     * @return the connection, which releases its permit when it is closed
+     *
+     * @throws SQLTransientConnectionException
+     *             if no permit became available in time
+     * @throws SQLException
+     *             if the connection cannot be opened, or the thread was interrupted while waiting for a permit
+     */
+    public static Connection getAdditionalConnection(String url) throws SQLException {
+        Semaphore semaphore = permits;
+        if (semaphore == null) {
+            return DriverManager.getConnection(url);
+        }
+        try {
+            if (!semaphore.tryAcquire(ADDITIONAL_CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLTransientConnectionException("All --max-connections connections are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+        return open(semaphore, url);
+    }
+
+    // opens a connection for an acquired permit, and releases the permit when the connection is closed
+    private static Connection open(Semaphore semaphore, String url) throws SQLException {
+        Connection connection;
+        try {
+            connection = DriverManager.getConnection(url);
+        } catch (SQLException | RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+                        return proxy == args[0];
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            semaphore.release();
+                        }
+                    }
+                });
+    }
+
+}
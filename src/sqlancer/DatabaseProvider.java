@@ -75,4 +75,10 @@ public interface DatabaseProvider<G extends GlobalState<O, ?, C>, O extends DBMS
 
     void initializeFeatures(G globalState);
 
+    /**
+     * Closes the connections that the current thread keeps open across the databases it generates, e.g., a cached
+     * connection. It is called when the thread stops generating databases.
+     */
+    void closeThreadConnections();
+
 }
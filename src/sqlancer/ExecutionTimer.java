@@ -1,23 +1,28 @@
 package sqlancer;
 
+import java.util.Locale;
+
 public final class ExecutionTimer {
 
     private long startTime;
     private long endTime;
 
     public ExecutionTimer start() {
-        startTime = System.currentTimeMillis();
+        startTime = System.nanoTime();
         return this;
     }
 
     public ExecutionTimer end() {
-        endTime = System.currentTimeMillis();
+        endTime = System.nanoTime();
         return this;
     }
 
+    public long getElapsedNanos() {
+        return endTime - startTime;
+    }
+
     public String asString() {
-        long timeMillis = endTime - startTime;
-        return timeMillis + "ms";
+        return String.format(Locale.ROOT, "%.3fms", getElapsedNanos() / 1_000_000.0);
     }
 
 }
@@ -16,6 +16,7 @@ import java.util.ServiceLoader;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -31,6 +32,7 @@ import sqlancer.general.GeneralProvider;
 public final class Main {
 
     public static final File LOG_DIRECTORY = new File("logs");
+    private static final long SMALL_THREAD_STACK_SIZE = 256 * 1024;
     public static volatile AtomicLong nrQueries = new AtomicLong();
     public static volatile AtomicLong nrDatabases = new AtomicLong();
     public static volatile AtomicLong nrSuccessfulActions = new AtomicLong();
@@ -331,11 +333,8 @@ public final class Main {
         }
 
         private String removeNamesFromQueryPlans(String queryPlan) {
-            String result = queryPlan;
-            result = result.replaceAll("t[0-9]+", "t0"); // Avoid duplicate tables
-            result = result.replaceAll("v[0-9]+", "v0"); // Avoid duplicate views
-            result = result.replaceAll("i[0-9]+", "i0"); // Avoid duplicate indexes
-            return result + "\n";
+            // Avoid duplicate tables, views and indexes
+            return QueryPlanPool.removeNames(queryPlan) + "\n";
         }
     }
 
@@ -418,6 +417,8 @@ public final class Main {
             G state = getInitializedGlobalState(options.getRandomSeed());
             try (SQLancerDBConnection con = provider.createDatabase(state)) {
                 return;
+            } finally {
+                provider.closeThreadConnections();
             }
         }
 
@@ -630,7 +631,9 @@ public final class Main {
             }
         }
 
-        ExecutorService execService = Executors.newFixedThreadPool(options.getNumberConcurrentThreads());
+        ConnectionLimit.setMaxConnections(options.getMaxConnections());
+        ExecutorService execService = Executors.newFixedThreadPool(options.getNumberConcurrentThreads(),
+                getThreadFactory(options));
         DBMSExecutorFactory<?, ?, ?> executorFactory = nameToProvider.get(jc.getParsedCommand());
 
         if (options.performConnectionTest()) {
@@ -681,6 +684,7 @@ public final class Main {
                             }
                         }
                     } finally {
+                        executorFactory.getProvider().closeThreadConnections();
                         threadsShutdown.addAndGet(1);
                         if (threadsShutdown.get() == options.getTotalNumberTries()) {
                             execService.shutdown();
@@ -730,6 +734,32 @@ public final class Main {
         return someOneFails.get() ? options.getErrorExitCode() : 0;
     }
 
+    /**
+     * Creates the threads on which the test sessions run. In {@link MainOptions.ExecutorMode#VIRTUAL} mode, each
+     * session gets its own virtual thread, so that sessions that mostly wait for a remote DBMS do not hold a platform
+     * thread and its stack. Virtual threads are only available from Java 21 on, so they are looked up reflectively and
+     * we fall back to platform threads with a small stack on older runtimes.
+     *
+     * @param options
+     *            the options that select the executor mode
+     *
+     * @return the factory used by the thread pool of the test sessions
+     */
+    static ThreadFactory getThreadFactory(MainOptions options) {
+        if (options.getExecutorMode() == MainOptions.ExecutorMode.FIXED) {
+            return Executors.defaultThreadFactory();
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads are not supported by this Java runtime (" + Runtime.version()
+                    + "), falling back to platform threads with a reduced stack size.");
+            AtomicLong threadNr = new AtomicLong();
+            return r -> new Thread(null, r, "sqlancer-" + threadNr.getAndIncrement(), SMALL_THREAD_STACK_SIZE);
+        }
+    }
+
     /**
      * To register a new provider, it is necessary to implement the DatabaseProvider interface and add an additional
      * configuration file, see https://docs.oracle.com/javase/9/docs/api/java/util/ServiceLoader.html. Currently, we use
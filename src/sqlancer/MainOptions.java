@@ -13,6 +13,10 @@ public class MainOptions {
     public static final int NO_REDUCE_LIMIT = -1;
     public static final MainOptions DEFAULT_OPTIONS = new MainOptions();
 
+    public enum ExecutorMode {
+        FIXED, VIRTUAL
+    }
+
     @Parameter(names = { "--help", "-h" }, description = "Lists all supported options and commands", help = true)
     private boolean help; // NOPMD
 
@@ -20,6 +24,14 @@ public class MainOptions {
             "--num-threads" }, description = "How many threads should run concurrently to test separate databases")
     private int nrConcurrentThreads = 4; // NOPMD
 
+    @Parameter(names = {
+            "--executor" }, description = "How test threads are scheduled: FIXED runs them on platform threads, VIRTUAL runs them on virtual threads (falls back to platform threads with a small stack before Java 21)")
+    private ExecutorMode executorMode = ExecutorMode.FIXED; // NOPMD
+
+    @Parameter(names = {
+            "--max-connections" }, description = "The maximum number of connections that may be open to the tested DBMS at the same time (-1 for no limit)")
+    private int maxConnections = -1; // NOPMD
+
     @Parameter(names = {
             "--random-seed" }, description = "A seed value != -1 that can be set to make the query and database generation deterministic")
     private long randomSeed = -1; // NOPMD
@@ -66,6 +78,12 @@ public class MainOptions {
     @Parameter(names = "--qpg-selection-probability", description = "The probability (0-1) of the random selection of mutators. A higher value (>0.5) favors exploration over exploitation. (requires --qpg-enable)")
     private static double qpgProbability = 0.7;
 
+    @Parameter(names = "--qpg-max-pool-size", description = "The maximum number of query plans that are kept; the least recently found plan is evicted from a full pool (requires --qpg-enable)")
+    private int qpgMaxPoolSize = 10000; // NOPMD
+
+    @Parameter(names = "--qpg-recheck-sample-size", description = "The number of randomly sampled queries whose query plans are obtained again after a mutation to reward the mutator (requires --qpg-enable)")
+    private int qpgRecheckSampleSize = 100; // NOPMD
+
     @Parameter(names = "--username", description = "The user name used to log into the DBMS")
     private String userName = "sqlancer"; // NOPMD
 
@@ -174,6 +192,14 @@ public class MainOptions {
         return nrConcurrentThreads;
     }
 
+    public ExecutorMode getExecutorMode() {
+        return executorMode;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
     public boolean logEachSelect() {
         return logEachSelect;
     }
@@ -223,6 +249,14 @@ public class MainOptions {
         return qpgProbability;
     }
 
+    public int getQPGMaxPoolSize() {
+        return qpgMaxPoolSize;
+    }
+
+    public int getQPGRecheckSampleSize() {
+        return qpgRecheckSampleSize;
+    }
+
     public int getNrQueries() {
         return nrQueries;
     }
@@ -1,16 +1,23 @@
 package sqlancer;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import sqlancer.StateToReproduce.OracleRunReproductionState;
 import sqlancer.common.DBMSCommon;
 import sqlancer.common.oracle.CompositeTestOracle;
 import sqlancer.common.oracle.TestOracle;
+import sqlancer.common.query.Query;
 import sqlancer.common.schema.AbstractSchema;
 
 public abstract class ProviderAdapter<G extends GlobalState<O, ? extends AbstractSchema<G, ?>, C>, O extends DBMSSpecificOptions<? extends OracleFactory<G>>, C extends SQLancerDBConnection>
@@ -19,8 +26,15 @@ public abstract class ProviderAdapter<G extends GlobalState<O, ? extends Abstrac
     private final Class<G> globalClass;
     private final Class<O> optionClass;
 
+    // the threads of the oracle workers, shared by all databases
+    private static final ExecutorService oracleWorkerExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "oracle-worker");
+        t.setDaemon(true);
+        return t;
+    });
+
     // Variables for QPG
-    Map<String, String> queryPlanPool = new HashMap<>();
+    QueryPlanPool queryPlanPool;
     static double[] weightedAverageReward; // static variable for sharing across all threads
     int currentSelectRewards;
     int currentSelectCounts;
@@ -36,6 +50,11 @@ public abstract class ProviderAdapter<G extends GlobalState<O, ? extends Abstrac
         return new StateToReproduce(databaseName, this);
     }
 
+    @Override
+    public void closeThreadConnections() {
+        // no connections are kept across databases by default
+    }
+
     @Override
     public Class<G> getGlobalStateClass() {
         return globalClass;
@@ -61,29 +80,15 @@ public abstract class ProviderAdapter<G extends GlobalState<O, ? extends Abstrac
 
             TestOracle<G> oracle = getTestOracle(globalState);
             globalState.setSuccessCaseNum(0);
-            for (int i = 0; i < globalState.getOptions().getNrQueries(); i++) {
-                try (OracleRunReproductionState localState = globalState.getState().createLocalState()) {
-                    assert localState != null;
-                    try {
-                        oracle.check();
-                        globalState.getManager().incrementSelectQueryCount();
-                        globalState.incrementSuccessCaseNum();
-                    } catch (IgnoreMeException ignored) {
-                    } catch (AssertionError e) {
-                        if (globalState.checkIfDuplicate()) {
-                            localState.executedWithoutError();
-                            continue;
-                        }
-                        globalState.updateHandler(false);
-                        Reproducer<G> reproducer = oracle.getLastReproducer();
-                        if (reproducer != null) {
-                            return reproducer;
-                        }
-                        e.printStackTrace();
-                        throw e;
-                    }
-                    localState.executedWithoutError();
-                }
+            List<G> workers = createOracleWorkers(globalState);
+            Reproducer<G> reproducer;
+            if (workers.isEmpty()) {
+                reproducer = runOracle(globalState, oracle, new AtomicBoolean());
+            } else {
+                reproducer = runOracleWorkers(globalState, oracle, workers);
+            }
+            if (reproducer != null) {
+                return reproducer;
             }
         } finally {
             globalState.getConnection().close();
@@ -92,6 +97,173 @@ public abstract class ProviderAdapter<G extends GlobalState<O, ? extends Abstrac
         return null;
     }
 
+    private Reproducer<G> runOracle(G globalState, TestOracle<G> oracle, AtomicBoolean stopped) throws Exception {
+        for (int i = 0; i < globalState.getOptions().getNrQueries() && !stopped.get(); i++) {
+            try (OracleRunReproductionState localState = globalState.getState().createLocalState()) {
+                assert localState != null;
+                try {
+                    oracle.check();
+                    globalState.getManager().incrementSelectQueryCount();
+                    globalState.incrementSuccessCaseNum();
+                } catch (IgnoreMeException ignored) {
+                } catch (AssertionError e) {
+                    if (globalState.checkIfDuplicate()) {
+                        localState.executedWithoutError();
+                        continue;
+                    }
+                    stopped.set(true);
+                    globalState.updateHandler(false);
+                    Reproducer<G> reproducer = oracle.getLastReproducer();
+                    if (reproducer != null) {
+                        return reproducer;
+                    }
+                    e.printStackTrace();
+                    throw e;
+                } catch (Exception e) {
+                    stopped.set(true);
+                    throw e;
+                }
+                localState.executedWithoutError();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs the checks of the global state and of its oracle workers concurrently, until all of them ran their number
+     * of queries or one of them found a bug. The statements of the worker that found the bug are added to the state to
+     * reproduce of the global state, so that the bug is logged like one found by the global state.
+     */
+    private Reproducer<G> runOracleWorkers(G globalState, TestOracle<G> oracle, List<G> workers) throws Exception {
+        AtomicBoolean stopped = new AtomicBoolean();
+        List<Future<Reproducer<G>>> futures = new ArrayList<>();
+        Reproducer<G> reproducer = null;
+        Throwable failure = null;
+        try {
+            for (G worker : workers) {
+                TestOracle<G> workerOracle = getTestOracle(worker);
+                futures.add(oracleWorkerExecutor.submit(() -> runOracle(worker, workerOracle, stopped)));
+            }
+            try {
+                reproducer = runOracle(globalState, oracle, stopped);
+            } catch (Exception | AssertionError e) {
+                failure = e;
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                G worker = workers.get(i);
+                Reproducer<G> workerReproducer = null;
+                Throwable workerFailure = null;
+                try {
+                    workerReproducer = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    workerFailure = e.getCause();
+                }
+                if (reproducer == null && failure == null && (workerReproducer != null || workerFailure != null)) {
+                    reproducer = workerReproducer;
+                    failure = workerFailure;
+                    for (Query<?> statement : worker.getState().getStatements()) {
+                        globalState.getState().logStatement(statement);
+                    }
+                }
+                globalState.setSuccessCaseNum(globalState.getSuccessCaseNum() + worker.getSuccessCaseNum());
+            }
+        } finally {
+            stopped.set(true);
+            for (int i = 0; i < workers.size(); i++) {
+                if (i < futures.size()) {
+                    try {
+                        futures.get(i).get();
+                    } catch (ExecutionException e) {
+                        // already handled above, or the global state failed first
+                    }
+                }
+                closeOracleWorker(globalState, workers.get(i));
+            }
+        }
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        } else if (failure != null) {
+            throw (Error) failure;
+        }
+        return reproducer;
+    }
+
+    /**
+     * Creates the states of additional oracle workers, which check the database generated for a global state
+     * concurrently with it, each on its own connection. DBMSs whose database cannot be shared across connections
+     * create none, and all checks are run on the connection of the global state.
+     *
+     * @param globalState
+     *            the state of the generated database
+     *
+     * @return the states of the workers, see {@link #createOracleWorkerState}
+     *
+     * @throws Exception
+     *             if a worker cannot be created
+     */
+    protected List<G> createOracleWorkers(G globalState) throws Exception {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Creates the state of an oracle worker, which shares the database and options of a global state, but has its own
+     * connection, randomness and state to reproduce, as well as the feedback of a fresh global state. The worker logs
+     * to its own files, e.g., the queries it executes to {@code <database>-worker<worker>-cur.log}, so that the queries
+     * of concurrent workers are not interleaved in one file.
+     *
+     * @param globalState
+     *            the state of the generated database
+     * @param connection
+     *            the connection of the worker to the database
+     * @param worker
+     *            the number of the worker, starting at 1
+     *
+     * @return the state of the worker
+     */
+    protected G createOracleWorkerState(G globalState, C connection, int worker) {
+        G workerState;
+        try {
+            workerState = globalClass.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        StateToReproduce state = getStateToReproduce(globalState.getDatabaseName());
+        state.seedValue = globalState.getState().getSeedValue();
+        state.databaseVersion = globalState.getState().getDatabaseVersion();
+        workerState.setState(state);
+        workerState.setRandomly(new Randomly(globalState.getRandomly().getSeed() + worker));
+        workerState.setDatabaseName(globalState.getDatabaseName());
+        workerState.setMainOptions(globalState.getOptions());
+        workerState.setDbmsSpecificOptions(globalState.getDbmsSpecificOptions());
+        workerState.setConnection(connection);
+        workerState.setStateLogger(new Main.StateLogger(globalState.getDatabaseName() + "-worker" + worker, this,
+                globalState.getOptions()));
+        workerState.setManager(new Main.QueryManager<>(workerState));
+        return workerState;
+    }
+
+    /**
+     * Closes an oracle worker after its checks, e.g., to merge its feedback into the global state.
+     *
+     * @param globalState
+     *            the state of the generated database
+     * @param worker
+     *            the state of the worker
+     *
+     * @throws Exception
+     *             if the connection of the worker cannot be closed
+     */
+    protected void closeOracleWorker(G globalState, G worker) throws Exception {
+        try {
+            worker.getConnection().close();
+        } finally {
+            if (worker.getLogger().currentFileWriter != null) {
+                worker.getLogger().currentFileWriter.close();
+                worker.getLogger().currentFileWriter = null;
+            }
+        }
+    }
+
     protected abstract void checkViewsAreValid(G globalState) throws SQLException;
 
     protected TestOracle<G> getTestOracle(G globalState) throws Exception {
@@ -129,6 +301,9 @@ public abstract class ProviderAdapter<G extends GlobalState<O, ? extends Abstrac
         if (weightedAverageReward == null) {
             weightedAverageReward = initializeWeightedAverageReward(); // Same length as the list of mutators
         }
+        if (queryPlanPool == null) {
+            queryPlanPool = new QueryPlanPool(globalState.getOptions().getQPGMaxPoolSize());
+        }
         try {
             generateDatabase(globalState);
             checkViewsAreValid(globalState);
@@ -184,7 +359,7 @@ public abstract class ProviderAdapter<G extends GlobalState<O, ? extends Abstrac
         } else {
             selectedActionIndex = DBMSCommon.getMaxIndexInDoubleArray(weightedAverageReward);
         }
-        int reward = 0;
+        double reward = 0;
 
         try {
             executeMutator(selectedActionIndex, globalState);
@@ -193,7 +368,7 @@ public abstract class ProviderAdapter<G extends GlobalState<O, ? extends Abstrac
         } catch (IgnoreMeException | AssertionError e) {
         } finally {
             // Update rewards based on existing queries associated with the query plan pool
-            updateReward(selectedActionIndex, (double) reward / (double) queryPlanPool.size(), globalState);
+            updateReward(selectedActionIndex, reward, globalState);
             currentMutationOperator = selectedActionIndex;
         }
 
@@ -205,43 +380,44 @@ public abstract class ProviderAdapter<G extends GlobalState<O, ? extends Abstrac
 
     // QPG: add a query plan to the query plan pool and return true if the query plan is new
     private boolean addQueryPlan(String selectStr, G globalState) throws Exception {
-        String queryPlan = getQueryPlan(selectStr, globalState);
-
-        if (globalState.getOptions().logQueryPlan()) {
-            globalState.getLogger().writeQueryPlan(queryPlan);
-        }
-
+        Long fingerprint = getQueryPlanFingerprint(selectStr, globalState);
         currentSelectCounts += 1;
-        if (queryPlanPool.containsKey(queryPlan)) {
+        if (fingerprint == null || !queryPlanPool.add(fingerprint, selectStr)) {
             return false;
-        } else {
-            queryPlanPool.put(queryPlan, selectStr);
-            currentSelectRewards += 1;
-            return true;
         }
+        currentSelectRewards += 1;
+        return true;
     }
 
-    // Obtain the reward of the current action based on the queries associated with the query plan pool
-    private int checkQueryPlan(G globalState) throws Exception {
+    // Obtain the reward of the current action as the share of a random sample of the pooled queries whose plan changed
+    // to a new one
+    private double checkQueryPlan(G globalState) throws Exception {
+        List<Map.Entry<Long, String>> sample = queryPlanPool.sample(globalState.getOptions().getQPGRecheckSampleSize(),
+                globalState.getRandomly());
+        if (sample.isEmpty()) {
+            return 0;
+        }
+        List<String> queries = sample.stream().map(Map.Entry::getValue).collect(Collectors.toList());
+        List<Long> newFingerprints = getQueryPlanFingerprints(queries, globalState);
         int newQueryPlanFound = 0;
-        HashMap<String, String> modifiedQueryPlan = new HashMap<>();
-        for (Iterator<Map.Entry<String, String>> it = queryPlanPool.entrySet().iterator(); it.hasNext();) {
-            Map.Entry<String, String> item = it.next();
-            String queryPlan = item.getKey();
-            String selectStr = item.getValue();
-            String newQueryPlan = getQueryPlan(selectStr, globalState);
-            if (newQueryPlan.isEmpty()) { // Invalid query
-                it.remove();
-            } else if (!queryPlan.equals(newQueryPlan)) { // A query plan has been changed
-                it.remove();
-                modifiedQueryPlan.put(newQueryPlan, selectStr);
-                if (!queryPlanPool.containsKey(newQueryPlan)) { // A new query plan is found
+        Map<Long, String> modifiedQueryPlan = new HashMap<>();
+        for (int i = 0; i < sample.size(); i++) {
+            long queryPlan = sample.get(i).getKey();
+            Long newFingerprint = newFingerprints.get(i);
+            if (newFingerprint == null) { // Invalid query
+                queryPlanPool.remove(queryPlan);
+                continue;
+            }
+            if (queryPlan != newFingerprint) { // A query plan has been changed
+                queryPlanPool.remove(queryPlan);
+                modifiedQueryPlan.put(newFingerprint, queries.get(i));
+                if (!queryPlanPool.contains(newFingerprint)) { // A new query plan is found
                     newQueryPlanFound++;
                 }
             }
         }
-        queryPlanPool.putAll(modifiedQueryPlan);
-        return newQueryPlanFound;
+        modifiedQueryPlan.forEach(queryPlanPool::add);
+        return (double) newQueryPlanFound / sample.size();
     }
 
     // QPG: update the reward of current action
@@ -260,6 +436,26 @@ public abstract class ProviderAdapter<G extends GlobalState<O, ? extends Abstrac
         throw new UnsupportedOperationException();
     }
 
+    // QPG: obtain the fingerprint of the query plan of a query, or null if the query cannot be planned; DBMSs that
+    // reduce a plan to a fingerprint themselves override this method instead of getQueryPlan
+    protected Long getQueryPlanFingerprint(String selectStr, G globalState) throws Exception {
+        String queryPlan = getQueryPlan(selectStr, globalState);
+        if (globalState.getOptions().logQueryPlan()) {
+            globalState.getLogger().writeQueryPlan(queryPlan);
+        }
+        return queryPlan.isEmpty() ? null : QueryPlanPool.getFingerprint(queryPlan);
+    }
+
+    // QPG: obtain the fingerprints of the query plans of several queries, in the same order (DBMSs may obtain them
+    // concurrently)
+    protected List<Long> getQueryPlanFingerprints(List<String> selectStrs, G globalState) throws Exception {
+        List<Long> fingerprints = new ArrayList<>();
+        for (String selectStr : selectStrs) {
+            fingerprints.add(getQueryPlanFingerprint(selectStr, globalState));
+        }
+        return fingerprints;
+    }
+
     // QPG: execute a mutation operator (required implementation in specific DBMS)
     protected void executeMutator(int index, G globalState) throws Exception {
         throw new UnsupportedOperationException();
@@ -0,0 +1,154 @@
+package sqlancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The query plans found by Query Plan Guidance, each with a query that has the plan.
+ *
+ * A plan is kept as the 64-bit fingerprint of its normalized text instead of the text itself. The pool holds at most
+ * a fixed number of plans; when it is full, the plan that was least recently found again is evicted, so that the pool
+ * keeps the plans that the current databases still lead to. The plans are also kept in an array, from which a sample
+ * draws random positions, so that sampling does not copy the pool.
+ */
+public final class QueryPlanPool {
+
+    // the numbers of tables, views and indexes, which do not make a plan different
+    private static final Pattern OBJECT_NAMES = Pattern.compile("([tvi])[0-9]+");
+
+    private static final class Plan {
+        private final long fingerprint;
+        private final String query;
+        // the position of the plan in the array of the plans
+        private int index;
+
+        Plan(long fingerprint, String query) {
+            this.fingerprint = fingerprint;
+            this.query = query;
+        }
+    }
+
+    // the plans in the order in which they were last found, to evict the least recently found one
+    private final Map<Long, Plan> plans;
+    // the plans in no particular order, so that a sample can draw random positions
+    private Plan[] array = new Plan[16];
+
+    public QueryPlanPool(int maxSize) {
+        this.plans = new LinkedHashMap<Long, Plan>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Plan> eldest) {
+                if (size() > maxSize) {
+                    removeFromArray(eldest.getValue(), size() - 1);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Replaces the numbers in the names of tables, views and indexes of a plan by 0.
+     *
+     * @param queryPlan
+     *            the plan
+     *
+     * @return the normalized plan
+     */
+    public static String removeNames(String queryPlan) {
+        return OBJECT_NAMES.matcher(queryPlan).replaceAll("$10");
+    }
+
+    public static long getFingerprint(String queryPlan) {
+        String normalized = removeNames(queryPlan);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash = (hash ^ normalized.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Adds a plan, or marks it as recently found if it is already in the pool.
+     *
+     * @param fingerprint
+     *            the fingerprint of the plan
+     * @param query
+     *            a query that has the plan
+     *
+     * @return whether the plan is new
+     */
+    public synchronized boolean add(long fingerprint, String query) {
+        if (plans.get(fingerprint) != null) {
+            return false;
+        }
+        Plan plan = new Plan(fingerprint, query);
+        int size = plans.size();
+        if (size == array.length) {
+            array = Arrays.copyOf(array, size * 2);
+        }
+        plan.index = size;
+        array[size] = plan;
+        // evicts the least recently found plan if the pool is full
+        plans.put(fingerprint, plan);
+        return true;
+    }
+
+    public synchronized boolean contains(long fingerprint) {
+        return plans.containsKey(fingerprint);
+    }
+
+    public synchronized void remove(long fingerprint) {
+        Plan plan = plans.remove(fingerprint);
+        if (plan != null) {
+            removeFromArray(plan, plans.size());
+        }
+    }
+
+    // moves the plan at the last position of the array to the position of the removed one
+    private void removeFromArray(Plan plan, int last) {
+        if (plan.index != last) {
+            array[plan.index] = array[last];
+            array[plan.index].index = plan.index;
+        }
+        array[last] = null;
+    }
+
+    public synchronized int size() {
+        return plans.size();
+    }
+
+    /**
+     * Returns a random sample of the plans, without marking them as recently found.
+     *
+     * @param maxSize
+     *            the maximum number of plans in the sample
+     * @param r
+     *            the randomness of the sample
+     *
+     * @return the fingerprints and queries of the sampled plans
+     */
+    public synchronized List<Map.Entry<Long, String>> sample(int maxSize, Randomly r) {
+        int size = plans.size();
+        int sampleSize = Math.min(maxSize, size);
+        List<Map.Entry<Long, String>> sample = new ArrayList<>(sampleSize);
+        // a partial Fisher-Yates shuffle of the first sampleSize positions of the array
+        for (int i = 0; i < sampleSize; i++) {
+            int j = r.getInteger(i, size);
+            Plan plan = array[j];
+            array[j] = array[i];
+            array[j].index = j;
+            array[i] = plan;
+            plan.index = i;
+            sample.add(Map.entry(plan.fingerprint, plan.query));
+        }
+        return sample;
+    }
+
+
+}
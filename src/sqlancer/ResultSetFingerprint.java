@@ -0,0 +1,123 @@
+package sqlancer;
+
+/**
+ * An order-independent fingerprint of the values of a result set, compared in place of the values themselves.
+ *
+ * Each value is canonicalized like the values compared by {@link ComparatorHelper}, hashed into two independent 64-bit
+ * hashes, and added to two sums. As addition is commutative and keeps duplicates, two result sets with the same
+ * multiset of values have the same fingerprint, independent of the order of their rows, and the memory used does not
+ * depend on the number of rows.
+ *
+ * A result set with several columns is fingerprinted row by row: the values of a row are folded in order into one
+ * hash with {@link #addRowValue}, which {@link #endRow} adds as a single element, so that values that are swapped
+ * between rows or columns change the fingerprint.
+ */
+public final class ResultSetFingerprint {
+
+    private static final long NULL_HASH = 0x6a09e667f3bcc908L;
+    private static final long FIRST_MULTIPLIER = 0x100000001b3L;
+    private static final long SECOND_MULTIPLIER = 0xc2b2ae3d27d4eb4fL;
+
+    private long count;
+    private long firstSum;
+    private long secondSum;
+    // the hashes of the last value, set by hashValue
+    private long valueFirst;
+    private long valueSecond;
+    // the hashes of the values of the current row
+    private long rowFirst;
+    private long rowSecond;
+    private int rowLength;
+
+    /**
+     * Adds a value, canonicalized without creating an intermediate string: trailing zeros after the decimal point are
+     * removed, and a negative zero is treated as zero.
+     *
+     * @param value
+     *            the value, or null
+     */
+    public void add(String value) {
+        count++;
+        hashValue(value);
+        firstSum += valueFirst;
+        secondSum += valueSecond;
+    }
+
+    /**
+     * Adds a value to the current row, canonicalized like by {@link #add}.
+     *
+     * @param value
+     *            the value of the next column, or null
+     */
+    public void addRowValue(String value) {
+        hashValue(value);
+        rowFirst = rowFirst * FIRST_MULTIPLIER + valueFirst;
+        rowSecond = (rowSecond ^ valueSecond) * SECOND_MULTIPLIER;
+        rowLength++;
+    }
+
+    /**
+     * Adds the current row, i.e., the values added by {@link #addRowValue} since the last row, as one element.
+     */
+    public void endRow() {
+        count++;
+        firstSum += mix(rowFirst + rowLength);
+        secondSum += mix(rowSecond ^ rowLength);
+        rowFirst = 0;
+        rowSecond = 0;
+        rowLength = 0;
+    }
+
+    private void hashValue(String value) {
+        if (value == null) {
+            valueFirst = NULL_HASH;
+            valueSecond = mix(NULL_HASH);
+            return;
+        }
+        int start = 0;
+        int end = ComparatorHelper.getTrailingZerosStart(value);
+        if (end == 2 && value.charAt(0) == '-' && value.charAt(1) == '0') {
+            start = 1;
+        }
+        long first = 0xcbf29ce484222325L;
+        long second = 0x9e3779b97f4a7c15L;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            first = (first ^ c) * FIRST_MULTIPLIER;
+            second = (second + c) * SECOND_MULTIPLIER;
+        }
+        valueFirst = mix(first ^ (end - start));
+        valueSecond = mix(second + (end - start));
+    }
+
+    /**
+     * Adds the values of another fingerprint, e.g., of another partition of the same query.
+     *
+     * @param other
+     *            the fingerprint to add
+     */
+    public void addAll(ResultSetFingerprint other) {
+        count += other.count;
+        firstSum += other.firstSum;
+        secondSum += other.secondSum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean hasSameValues(ResultSetFingerprint other) {
+        return count == other.count && firstSum == other.firstSum && secondSum == other.secondSum;
+    }
+
+    // the finalizer of MurmurHash3, so that similar values do not cancel out in the sums
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
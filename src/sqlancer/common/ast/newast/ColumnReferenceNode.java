@@ -14,4 +14,9 @@ public class ColumnReferenceNode<E, C extends AbstractTableColumn<?, ?>> impleme
         return c;
     }
 
+    @Override
+    public void accept(NewToStringVisitor<E> visitor) {
+        visitor.visit(this);
+    }
+
 }
@@ -36,4 +36,9 @@ public class NewCaseOperatorNode<T> implements Node<T> {
         return elseExpr;
     }
 
+    @Override
+    public void accept(NewToStringVisitor<T> visitor) {
+        visitor.visit(this);
+    }
+
 }
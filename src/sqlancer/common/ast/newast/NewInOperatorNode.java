@@ -26,4 +26,9 @@ public class NewInOperatorNode<T> implements Node<T> {
         return isNegated;
     }
 
+    @Override
+    public void accept(NewToStringVisitor<T> visitor) {
+        visitor.visit(this);
+    }
+
 }
@@ -28,4 +28,9 @@ public class NewOrderingTerm<T> implements Node<T> {
         return ordering;
     }
 
+    @Override
+    public void accept(NewToStringVisitor<T> visitor) {
+        visitor.visit(this);
+    }
+
 }
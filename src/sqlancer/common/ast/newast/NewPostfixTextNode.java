@@ -17,4 +17,10 @@ public class NewPostfixTextNode<T> implements Node<T> {
     public String getText() {
         return text;
     }
+
+    @Override
+    public void accept(NewToStringVisitor<T> visitor) {
+        visitor.visit(this);
+    }
+
 }
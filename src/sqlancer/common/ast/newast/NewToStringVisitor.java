@@ -4,40 +4,29 @@ import java.util.List;
 
 public abstract class NewToStringVisitor<E> {
 
-    protected final StringBuilder sb = new StringBuilder();
+    protected final StringBuilder sb;
+
+    protected NewToStringVisitor() {
+        this(new StringBuilder());
+    }
+
+    /**
+     * Creates a visitor that appends to a builder, e.g., the one of the statement that is being generated.
+     *
+     * @param sb
+     *            the builder to append to
+     */
+    protected NewToStringVisitor(StringBuilder sb) {
+        this.sb = sb;
+    }
 
-    @SuppressWarnings("unchecked")
     public void visit(Node<E> expr) {
         assert expr != null;
-        if (expr instanceof ColumnReferenceNode<?, ?>) {
-            sb.append(((ColumnReferenceNode<?, ?>) expr).getColumn().getFullQualifiedName());
-        } else if (expr instanceof NewUnaryPostfixOperatorNode<?>) {
-            visit((NewUnaryPostfixOperatorNode<E>) expr);
-        } else if (expr instanceof NewUnaryPrefixOperatorNode<?>) {
-            visit((NewUnaryPrefixOperatorNode<E>) expr);
-        } else if (expr instanceof NewBinaryOperatorNode<?>) {
-            visit((NewBinaryOperatorNode<E>) expr);
-        } else if (expr instanceof TableReferenceNode<?, ?>) {
-            visit((TableReferenceNode<E, ?>) expr);
-        } else if (expr instanceof NewFunctionNode<?, ?>) {
-            visit((NewFunctionNode<E, ?>) expr);
-        } else if (expr instanceof NewBetweenOperatorNode<?>) {
-            visit((NewBetweenOperatorNode<E>) expr);
-        } else if (expr instanceof NewInOperatorNode<?>) {
-            visit((NewInOperatorNode<E>) expr);
-        } else if (expr instanceof NewCaseOperatorNode<?>) {
-            visit((NewCaseOperatorNode<E>) expr);
-        } else if (expr instanceof NewOrderingTerm<?>) {
-            visit((NewOrderingTerm<E>) expr);
-        } else if (expr instanceof NewAliasNode<?>) {
-            visit((NewAliasNode<E>) expr);
-        } else if (expr instanceof NewPostfixTextNode<?>) {
-            visit((NewPostfixTextNode<E>) expr);
-        } else if (expr instanceof NewTernaryNode<?>) {
-            visit((NewTernaryNode<E>) expr);
-        } else {
-            visitSpecific(expr);
-        }
+        expr.accept(this);
+    }
+
+    public void visit(ColumnReferenceNode<E, ?> column) {
+        sb.append(column.getColumn().getFullQualifiedName());
     }
 
     public void visit(List<Node<E>> expressions) {
@@ -20,4 +20,9 @@ public class NewUnaryPostfixOperatorNode<T> implements Node<T> {
         return expr;
     }
 
+    @Override
+    public void accept(NewToStringVisitor<T> visitor) {
+        visitor.visit(this);
+    }
+
 }
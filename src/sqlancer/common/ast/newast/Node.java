@@ -2,4 +2,15 @@ package sqlancer.common.ast.newast;
 
 public interface Node<E> {
 
+    /**
+     * Calls the visit method of the visitor for the class of this node. Nodes of a specific DBMS are passed to
+     * {@link NewToStringVisitor#visitSpecific(Node)}.
+     *
+     * @param visitor
+     *            the visitor
+     */
+    default void accept(NewToStringVisitor<E> visitor) {
+        visitor.visitSpecific(this);
+    }
+
 }
@@ -0,0 +1,136 @@
+package sqlancer.general;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The signatures of the bugs found so far, indexed for the deduplicator.
+ *
+ * A signature holds the generator nodes, fragments and functions that a statement used, as bit sets over their
+ * ordinals and interned IDs. The node sets are kept in a set-trie, so that finding a stored set that is a subset of a
+ * new one only visits the branches of the nodes the new one used. The fragments and functions of all stored
+ * signatures are merged into one bit set each, so an overlap is a single intersection.
+ */
+public final class GeneralBugSignatures {
+
+    public enum Match {
+        // no stored bug matches
+        NONE,
+        // both bugs only use constants
+        CONSTANT,
+        // the bug uses all the nodes, a fragment or a function of a stored bug
+        FEATURE
+    }
+
+    public static final class Signature {
+        private final boolean error;
+        private final BitSet nodes;
+        private final BitSet fragments;
+        private final BitSet functions;
+
+        public Signature(boolean error, BitSet nodes, BitSet fragments, BitSet functions) {
+            this.error = error;
+            this.nodes = nodes;
+            this.fragments = fragments;
+            this.functions = functions;
+        }
+
+        public boolean isError() {
+            return error;
+        }
+    }
+
+    private static final class TrieNode {
+        private final Map<Integer, TrieNode> children = new HashMap<>();
+        private boolean terminal;
+    }
+
+    private static final class Partition {
+        private final TrieNode nodeSets = new TrieNode();
+        private final BitSet fragments = new BitSet();
+        private final BitSet functions = new BitSet();
+        private boolean constant;
+
+        void add(Signature signature) {
+            if (signature.nodes.isEmpty()) {
+                // only the nodes of a constant bug are compared
+                constant = true;
+                return;
+            }
+            TrieNode current = nodeSets;
+            for (int i = signature.nodes.nextSetBit(0); i >= 0; i = signature.nodes.nextSetBit(i + 1)) {
+                current = current.children.computeIfAbsent(i, k -> new TrieNode());
+            }
+            current.terminal = true;
+            fragments.or(signature.fragments);
+            functions.or(signature.functions);
+        }
+
+        Match match(Signature signature) {
+            if (signature.nodes.isEmpty() && constant) {
+                return Match.CONSTANT;
+            }
+            if (containsSubset(nodeSets, signature.nodes, 0) || fragments.intersects(signature.fragments)
+                    || functions.intersects(signature.functions)) {
+                return Match.FEATURE;
+            }
+            return Match.NONE;
+        }
+
+        private static boolean containsSubset(TrieNode trieNode, BitSet nodes, int from) {
+            if (trieNode.terminal) {
+                return true;
+            }
+            if (trieNode.children.isEmpty()) {
+                return false;
+            }
+            for (int i = nodes.nextSetBit(from); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                TrieNode child = trieNode.children.get(i);
+                if (child != null && containsSubset(child, nodes, i + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Map<String, Signature> signatures = new HashMap<>();
+    private Partition errors = new Partition();
+    private Partition failures = new Partition();
+
+    /**
+     * Stores the signature of the bug found for a database, replacing the one stored for it before.
+     *
+     * @param databaseName
+     *            the database of the bug
+     * @param signature
+     *            the signature of the bug
+     */
+    public synchronized void put(String databaseName, Signature signature) {
+        if (signatures.put(databaseName, signature) != null) {
+            errors = new Partition();
+            failures = new Partition();
+            signatures.values().forEach(s -> getPartition(s).add(s));
+        } else {
+            getPartition(signature).add(signature);
+        }
+    }
+
+    /**
+     * Checks whether a bug is a duplicate of a stored bug with the same status.
+     *
+     * @param signature
+     *            the signature of the new bug
+     *
+     * @return how the bug matched
+     */
+    public synchronized Match match(Signature signature) {
+        return getPartition(signature).match(signature);
+    }
+
+    private Partition getPartition(Signature signature) {
+        return signature.error ? errors : failures;
+    }
+
+}
@@ -0,0 +1,100 @@
+package sqlancer.general;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Symbol table for composite generator features. Each (kind, function or operator, argument index, type) tuple is
+ * interned to a dense int ID the first time it is seen, so the generators can look up options and add scores without
+ * building and hashing key strings. The ID of a tuple is the same as the ID of its string key, which is still used
+ * in the options files.
+ */
+public final class GeneralCompositeKeys {
+
+    public enum Kind {
+        // FUNCTION-<function>
+        FUNCTION,
+        // <function>-<index><type>
+        FUNCTION_ARG,
+        // <type>-<function>
+        FUNCTION_TYPE,
+        // BINOP<operator>
+        BINOP,
+        // BINOP<operator>-<type>
+        BINOP_TYPE,
+        // <operator>-<type>
+        OPERATOR_TYPE,
+        // COLUMN-<type>
+        COLUMN;
+
+        String format(Object name, int index, Object type) {
+            switch (this) {
+            case FUNCTION:
+                return "FUNCTION-" + name;
+            case FUNCTION_ARG:
+                return name + "-" + index + type;
+            case FUNCTION_TYPE:
+                return type + "-" + name;
+            case BINOP:
+                return "BINOP" + name;
+            case BINOP_TYPE:
+                return "BINOP" + name + "-" + type;
+            case OPERATOR_TYPE:
+                return name + "-" + type;
+            case COLUMN:
+                return "COLUMN-" + name;
+            default:
+                throw new AssertionError(this);
+            }
+        }
+    }
+
+    private static final Object NONE = new Object();
+    private static final GeneralFeatureIndex<String> index = new GeneralFeatureIndex<>();
+    private static final Map<Kind, Map<Object, Map<Integer, Map<Object, Integer>>>> symbols = initSymbols();
+
+    private GeneralCompositeKeys() {
+    }
+
+    private static Map<Kind, Map<Object, Map<Integer, Map<Object, Integer>>>> initSymbols() {
+        Map<Kind, Map<Object, Map<Integer, Map<Object, Integer>>>> kinds = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            kinds.put(kind, new ConcurrentHashMap<>());
+        }
+        return kinds;
+    }
+
+    public static int getId(String key) {
+        return index.getId(key);
+    }
+
+    public static String getKey(int id) {
+        return index.getKey(id);
+    }
+
+    public static int getId(Kind kind, Object name) {
+        return getId(kind, name, 0, NONE);
+    }
+
+    public static int getId(Kind kind, Object name, Object type) {
+        return getId(kind, name, 0, type);
+    }
+
+    public static int getId(Kind kind, Object name, int argIndex, Object type) {
+        Map<Integer, Map<Object, Integer>> indexes = symbols.get(kind).get(name);
+        if (indexes == null) {
+            indexes = symbols.get(kind).computeIfAbsent(name, n -> new ConcurrentHashMap<>());
+        }
+        Map<Object, Integer> types = indexes.get(argIndex);
+        if (types == null) {
+            types = indexes.computeIfAbsent(argIndex, i -> new ConcurrentHashMap<>());
+        }
+        Integer id = types.get(type);
+        if (id == null) {
+            id = types.computeIfAbsent(type, t -> index.getId(kind.format(name, argIndex, type)));
+        }
+        return id;
+    }
+
+}
@@ -0,0 +1,197 @@
+package sqlancer.general;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import sqlancer.ConnectionLimit;
+import sqlancer.SQLConnection;
+import sqlancer.general.GeneralProvider.GeneralGlobalState;
+
+/**
+ * Keeps one physical JDBC connection per worker thread, so that the connection (and its TLS/authentication handshake)
+ * can be reused across the databases that the thread generates.
+ *
+ * A cached connection is handed out again only if it was opened with the same JDBC URL and is still valid. It is
+ * replaced by a new connection when validation fails or when the connection was marked as broken, i.e., when a
+ * statement on it failed with a connection exception (SQLState class 08) that indicates a crash of the DBMS, or its
+ * session could not be reset. The connection is closed when the thread stops generating databases. Resetting the session
+ * state between databases (USE, DROP, CREATE, ...) is left to
+ * {@link GeneralOptions.GeneralDatabaseEngineFactory#cleanOrSetUpDatabase}.
+ */
+public final class GeneralConnectionCache {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final ThreadLocal<CachedConnection> CACHE = new ThreadLocal<>();
+
+    private GeneralConnectionCache() {
+    }
+
+    private static final class CachedConnection {
+        private final String url;
+        private final Connection connection;
+        private volatile boolean broken;
+
+        CachedConnection(String url, Connection connection) {
+            this.url = url;
+            this.connection = connection;
+        }
+
+        boolean isReusableFor(String jdbcUrl) {
+            if (broken || !url.equals(jdbcUrl)) {
+                return false;
+            }
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // the connection is discarded anyway
+            }
+        }
+    }
+
+    /**
+     * A {@link SQLConnection} whose {@link #close()} keeps the physical connection open for the next database of the
+     * same thread. Its statements mark the connection as broken when they fail with a connection exception, so that
+     * every oracle and statement that runs on it hands no connection of a crashed DBMS to the next database.
+     */
+    public static final class ReusableSQLConnection extends SQLConnection {
+
+        private final CachedConnection cached;
+        private final Connection connection;
+
+        ReusableSQLConnection(CachedConnection cached) {
+            super(cached.connection);
+            this.cached = cached;
+            this.connection = cached.connection;
+        }
+
+        @Override
+        public Statement prepareStatement(String arg) throws SQLException {
+            return observe(connection.prepareStatement(arg), PreparedStatement.class);
+        }
+
+        @Override
+        public Statement createStatement() throws SQLException {
+            return observe(connection.createStatement(), Statement.class);
+        }
+
+        // wraps a statement or result set so that a connection exception thrown by it marks the connection as broken
+        private <T> T observe(T target, Class<T> type) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                    (proxy, method, args) -> {
+                        Object result;
+                        try {
+                            result = method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            if (e.getCause() instanceof SQLException
+                                    && isConnectionError((SQLException) e.getCause())) {
+                                cached.broken = true;
+                            }
+                            throw e.getCause();
+                        }
+                        if (result instanceof ResultSet) {
+                            return observe((ResultSet) result, ResultSet.class);
+                        }
+                        return result;
+                    }));
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (!connection.isClosed() && !connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                // the session is in an unknown state, so the next database should not reuse it
+                cached.broken = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the connection of the current thread for the given URL, opening a new one if there is no valid cached
+     * connection. If connection reuse is disabled, a new connection is opened that is not cached.
+     *
+     * @param globalState
+     *            the state of the database that is about to be set up
+     * @param jdbcUrl
+     *            the URL to connect to
+     *
+     * @return a connection to the DBMS
+     *
+     * @throws SQLException
+     *             if no connection could be opened
+     */
+    public static Connection getConnection(GeneralGlobalState globalState, String jdbcUrl) throws SQLException {
+        if (!globalState.getDbmsSpecificOptions().reuseConnections) {
+            return ConnectionLimit.getConnection(jdbcUrl);
+        }
+        CachedConnection cached = CACHE.get();
+        if (cached != null) {
+            if (cached.isReusableFor(jdbcUrl)) {
+                return cached.connection;
+            }
+            cached.closeQuietly();
+            CACHE.remove();
+        }
+        Connection connection = ConnectionLimit.getConnection(jdbcUrl);
+        CACHE.set(new CachedConnection(jdbcUrl, connection));
+        return connection;
+    }
+
+    /**
+     * Wraps a connection returned by {@link #getConnection} so that closing it does not close a cached physical
+     * connection.
+     *
+     * @param connection
+     *            the connection to wrap
+     *
+     * @return the wrapped connection
+     */
+    public static SQLConnection wrap(Connection connection) {
+        CachedConnection cached = CACHE.get();
+        if (cached != null && cached.connection == connection) {
+            return new ReusableSQLConnection(cached);
+        }
+        return new SQLConnection(connection);
+    }
+
+    /**
+     * Returns whether an exception is a connection exception (SQLState class 08), e.g., because the DBMS crashed.
+     *
+     * @param e
+     *            the exception
+     *
+     * @return whether the connection of the exception is lost
+     */
+    public static boolean isConnectionError(SQLException e) {
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    /**
+     * Closes the connection of the current thread, if any.
+     */
+    public static void closeConnection() {
+        CachedConnection cached = CACHE.get();
+        if (cached != null) {
+            cached.closeQuietly();
+            CACHE.remove();
+        }
+    }
+
+}
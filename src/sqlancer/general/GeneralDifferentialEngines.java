@@ -0,0 +1,297 @@
+package sqlancer.general;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import sqlancer.ResultSetFingerprint;
+import sqlancer.SQLConnection;
+import sqlancer.general.GeneralOptions.GeneralDatabaseEngineFactory;
+import sqlancer.general.GeneralProvider.GeneralGlobalState;
+
+/**
+ * The other engines of the differential mode, to which the statements that generate a database are replayed while
+ * they are executed on the main engine, so that the oracles can compare the results of a query across engines.
+ *
+ * Each engine gets its own connection to a database with the same name, i.e., an in-memory SQLite, DuckDB or H2
+ * database in the same JVM; server engines are not supported, as they share the connection cache of the thread and
+ * log their setup to the state of the main engine. A statement runs on all engines concurrently. If the engines
+ * disagree on whether a statement succeeds, their databases may differ from then on, so the database is marked as
+ * diverged and is no longer compared.
+ */
+public final class GeneralDifferentialEngines {
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "differential-engine");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final List<GeneralDatabaseEngineFactory> engines;
+    private final List<Connection> connections;
+    private volatile boolean diverged;
+
+    private GeneralDifferentialEngines(List<GeneralDatabaseEngineFactory> engines, List<Connection> connections) {
+        this.engines = engines;
+        this.connections = connections;
+    }
+
+    /**
+     * The executions of a statement on the other engines.
+     */
+    public final class Replay {
+        private final List<Future<String>> errors;
+
+        private Replay(List<Future<String>> errors) {
+            this.errors = errors;
+        }
+
+        /**
+         * Waits for the statement to finish on every engine.
+         *
+         * @param mainSuccess
+         *            whether the statement succeeded on the main engine
+         *
+         * @return the error of the first engine that rejected the statement, or null if every engine accepted it
+         */
+        public String await(boolean mainSuccess) {
+            String firstError = null;
+            for (int i = 0; i < errors.size(); i++) {
+                String error;
+                try {
+                    error = errors.get(i).get();
+                } catch (ExecutionException e) {
+                    error = String.valueOf(e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = "interrupted";
+                }
+                if (error != null && firstError == null) {
+                    firstError = engines.get(i) + ": " + error;
+                }
+                if (mainSuccess == (error != null)) {
+                    diverged = true;
+                }
+            }
+            return firstError;
+        }
+    }
+
+    /**
+     * Connects to the database of a state on each engine of --differential-engines other than the main engine, see
+     * {@link GeneralDatabaseEngineFactory#openDifferentialConnection}.
+     *
+     * @param globalState
+     *            the state of the database on the main engine
+     *
+     * @return the engines, or null if there are no other engines
+     *
+     * @throws SQLException
+     *             if an engine cannot set up the database
+     */
+    public static GeneralDifferentialEngines open(GeneralGlobalState globalState) throws SQLException {
+        GeneralDatabaseEngineFactory mainEngine = globalState.getDbmsSpecificOptions().getDatabaseEngineFactory();
+        List<GeneralDatabaseEngineFactory> engines = new ArrayList<>();
+        for (GeneralDatabaseEngineFactory engine : globalState.getDbmsSpecificOptions().differentialEngines) {
+            if (engine != mainEngine && !engines.contains(engine)) {
+                engines.add(engine);
+            }
+        }
+        if (engines.isEmpty()) {
+            return null;
+        }
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (GeneralDatabaseEngineFactory engine : engines) {
+                Connection connection = engine.openDifferentialConnection(globalState);
+                if (connection == null) {
+                    closeQuietly(connections);
+                    throw new AssertionError("--differential-engines only supports the embedded engines SQLITE, "
+                            + "DUCKDB and H2, but got " + engine);
+                }
+                connections.add(connection);
+            }
+        } catch (SQLException e) {
+            closeQuietly(connections);
+            throw e;
+        }
+        return new GeneralDifferentialEngines(engines, connections);
+    }
+
+    public List<GeneralDatabaseEngineFactory> getEngines() {
+        return engines;
+    }
+
+    public boolean isDiverged() {
+        return diverged;
+    }
+
+    /**
+     * Starts to execute a statement on every engine; the caller executes it on the main engine meanwhile.
+     *
+     * @param queryString
+     *            the statement
+     * @param fills
+     *            the statement to prepare and its parameters, if any, as passed to
+     *            {@link GeneralGlobalState#executeStatement}
+     *
+     * @return the executions, to wait for with {@link Replay#await}
+     */
+    public Replay replay(String queryString, String... fills) {
+        List<Future<String>> errors = new ArrayList<>();
+        for (Connection connection : connections) {
+            errors.add(executor.submit(() -> {
+                try {
+                    execute(connection, queryString, fills);
+                    return null;
+                } catch (SQLException e) {
+                    return String.valueOf(e.getMessage());
+                }
+            }));
+        }
+        return new Replay(errors);
+    }
+
+    private static void execute(Connection connection, String queryString, String... fills) throws SQLException {
+        if (fills.length == 0) {
+            try (Statement s = connection.createStatement()) {
+                s.execute(queryString);
+            }
+            return;
+        }
+        try (PreparedStatement s = connection.prepareStatement(fills[0])) {
+            for (int i = 1; i < fills.length; i++) {
+                s.setString(i, fills[i]);
+            }
+            s.execute();
+        }
+    }
+
+    /**
+     * Fingerprints the rows of a query on the main engine and, concurrently, on every other engine.
+     *
+     * @param mainConnection
+     *            the connection of the main engine
+     * @param queryString
+     *            the query
+     *
+     * @return the fingerprint of the main engine, followed by the ones of the engines of {@link #getEngines}
+     *
+     * @throws SQLException
+     *             the error of the first engine that could not execute the query
+     */
+    public List<ResultSetFingerprint> getFingerprints(SQLConnection mainConnection, String queryString)
+            throws SQLException {
+        List<Future<ResultSetFingerprint>> futures = new ArrayList<>();
+        for (Connection connection : connections) {
+            futures.add(executor.submit(() -> {
+                try (Statement s = connection.createStatement()) {
+                    return getFingerprint(s, queryString);
+                }
+            }));
+        }
+        List<ResultSetFingerprint> fingerprints = new ArrayList<>();
+        SQLException firstError = null;
+        try (Statement s = mainConnection.createStatement()) {
+            fingerprints.add(getFingerprint(s, queryString));
+        } catch (SQLException e) {
+            firstError = e;
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                fingerprints.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                if (firstError == null) {
+                    firstError = new SQLException(engines.get(i) + ": " + e.getCause().getMessage(), e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            }
+        }
+        if (firstError != null) {
+            throw firstError;
+        }
+        return fingerprints;
+    }
+
+    // fingerprints the rows, each of which is hashed with its columns in order; booleans are compared as 1 and 0, as
+    // engines return them either way
+    private static ResultSetFingerprint getFingerprint(Statement s, String queryString) throws SQLException {
+        ResultSetFingerprint fingerprint = new ResultSetFingerprint();
+        try (ResultSet rs = s.executeQuery(queryString)) {
+            int nrColumns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= nrColumns; i++) {
+                    String value = rs.getString(i);
+                    if ("true".equalsIgnoreCase(value)) {
+                        value = "1";
+                    } else if ("false".equalsIgnoreCase(value)) {
+                        value = "0";
+                    }
+                    fingerprint.addRowValue(value);
+                }
+                fingerprint.endRow();
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Wraps the connection of the main engine so that closing it closes the connections of the other engines too.
+     *
+     * @param connection
+     *            the connection of the main engine
+     *
+     * @return the wrapped connection
+     */
+    public SQLConnection wrap(SQLConnection connection) {
+        return new SQLConnection(null) {
+            @Override
+            public String getDatabaseVersion() throws SQLException {
+                return connection.getDatabaseVersion();
+            }
+
+            @Override
+            public void close() throws SQLException {
+                closeQuietly(connections);
+                connection.close();
+            }
+
+            @Override
+            public Statement prepareStatement(String arg) throws SQLException {
+                return connection.prepareStatement(arg);
+            }
+
+            @Override
+            public Statement createStatement() throws SQLException {
+                return connection.createStatement();
+            }
+
+            @Override
+            public DatabaseMetaData getMetaData() throws SQLException {
+                return connection.getMetaData();
+            }
+        };
+    }
+
+    private static void closeQuietly(List<Connection> connections) {
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // the connection is discarded anyway
+            }
+        }
+    }
+
+}
@@ -2,13 +2,17 @@ package sqlancer.general;
 
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 import com.opencsv.CSVParser;
@@ -18,6 +22,11 @@ import com.opencsv.CSVReaderHeaderAwareBuilder;
 
 import sqlancer.ErrorHandler;
 import sqlancer.IgnoreMeException;
+import sqlancer.general.GeneralBugSignatures.Match;
+import sqlancer.general.GeneralBugSignatures.Signature;
+import sqlancer.general.GeneralCompositeKeys.Kind;
+import sqlancer.general.GeneralFeatureStatistics.Batch;
+import sqlancer.general.GeneralFeatureStatistics.FeatureCount;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
 import sqlancer.general.GeneralSchema.GeneralCompositeDataType;
 import sqlancer.general.ast.GeneralBinaryArithmeticOperator;
@@ -32,88 +41,105 @@ import sqlancer.general.learner.GeneralFragments.GeneralFragmentChoice;
 
 public class GeneralErrorHandler implements ErrorHandler {
 
-    // volatile
-    private static Map<String, Integer> curDepth = new HashMap<>();
-    private static volatile int execDatabaseNum;
-    private static volatile Map<String, GeneratorInfo> assertionGeneratorHistory = new HashMap<>();
-    private static volatile Map<GeneratorNode, Boolean> generatorOptions = new HashMap<>();
-    private static volatile Map<String, Boolean> compositeGeneratorOptions = new HashMap<>();
-    private static volatile Map<GeneralFragmentChoice, Boolean> fragmentOptions = new HashMap<>();
-    private static volatile List<String> disabledFragments = new ArrayList<>();
-
-    private static volatile Map<String, Integer> allCompositeSuccess = new HashMap<>();
-    private static volatile Map<String, Integer> allCompositeCount = new HashMap<>();
-    private static volatile Map<GeneralFragmentChoice, Integer> allFragmentSuccess = new HashMap<>();
-    private static volatile Map<GeneralFragmentChoice, Integer> allFragmentCount = new HashMap<>();
-    private static volatile Map<GeneratorNode, Integer> allNodeSuccess = new HashMap<>();
-    private static volatile Map<GeneratorNode, Integer> allNodeCount = new HashMap<>();
-
-    private static volatile Map<GeneratorNode, Double> generatorAverage = new HashMap<>();
-    private static volatile Map<String, Double> compositeAverage = new HashMap<>();
-    private static volatile Map<GeneralFragmentChoice, Double> fragmentAverage = new HashMap<>();
-
-    private static volatile Map<GeneratorNode, String> generatorExample = new HashMap<>();
-    private static volatile Map<String, String> compositeExample = new HashMap<>();
-    private static volatile Map<GeneralFragmentChoice, String> fragmentExample = new HashMap<>();
-
-    private static volatile Map<GeneratorNode, String> generatorErrorExample = new HashMap<>();
-    private static volatile Map<String, String> compositeErrorExample = new HashMap<>();
-    private static volatile Map<GeneralFragmentChoice, String> fragmentErrorExample = new HashMap<>();
-
-    private static volatile Map<GeneratorNode, String> generatorErrorMessage = new HashMap<>();
-    private static volatile Map<String, String> compositeErrorMessage = new HashMap<>();
-    private static volatile Map<GeneralFragmentChoice, String> fragmentErrorMessage = new HashMap<>();
+    // shared by all threads
+    private static final Map<String, Integer> curDepth = new ConcurrentHashMap<>();
+    private static final AtomicInteger execDatabaseNum = new AtomicInteger();
+    // incremented whenever an option may have changed, see GeneralOptionSampler
+    private static final AtomicInteger optionsVersion = new AtomicInteger();
+    private static final Map<String, GeneratorInfo> assertionGeneratorHistory = new ConcurrentHashMap<>();
+    private static final GeneralBugSignatures bugSignatures = new GeneralBugSignatures();
+    private static final Map<GeneratorNode, Boolean> generatorOptions = new ConcurrentHashMap<>();
+    private static final GeneralFeatureOptions compositeGeneratorOptions = new GeneralFeatureOptions();
+    private static final Map<GeneralFragmentChoice, Boolean> fragmentOptions = new ConcurrentHashMap<>();
+    private static final List<String> disabledFragments = new CopyOnWriteArrayList<>();
+    // the version of the engine under test, known once the first database is created
+    private static String engineVersion;
+
+    private static final GeneralFeatureStatistics<GeneratorNode> nodeStatistics = new GeneralFeatureStatistics<>();
+    private static final GeneralFeatureStatistics<String> compositeStatistics = new GeneralFeatureStatistics<>();
+    private static final GeneralFeatureStatistics<GeneralFragmentChoice> fragmentStatistics =
+            new GeneralFeatureStatistics<>();
+
+    private static volatile Map<GeneratorNode, Double> generatorAverage = Collections.emptyMap();
+    private static volatile Map<String, Double> compositeAverage = Collections.emptyMap();
+    private static volatile Map<GeneralFragmentChoice, Double> fragmentAverage = Collections.emptyMap();
+
+    private static final Map<GeneratorNode, String> generatorExample = new ConcurrentHashMap<>();
+    private static final Map<String, String> compositeExample = new ConcurrentHashMap<>();
+    private static final Map<GeneralFragmentChoice, String> fragmentExample = new ConcurrentHashMap<>();
+
+    private static final Map<GeneratorNode, String> generatorErrorExample = new ConcurrentHashMap<>();
+    private static final Map<String, String> compositeErrorExample = new ConcurrentHashMap<>();
+    private static final Map<GeneralFragmentChoice, String> fragmentErrorExample = new ConcurrentHashMap<>();
+
+    private static final Map<GeneratorNode, String> generatorErrorMessage = new ConcurrentHashMap<>();
+    private static final Map<String, String> compositeErrorMessage = new ConcurrentHashMap<>();
+    private static final Map<GeneralFragmentChoice, String> fragmentErrorMessage = new ConcurrentHashMap<>();
 
     private double nodeNum = GeneratorNode.values().length;
 
     private final GeneratorInfoTable generatorTable;
     private GeneratorInfo generatorInfo;
 
+    private static final GeneratorNode[] generatorNodes = GeneratorNode.values();
+    private static final GeneralFeatureIndex<GeneralFragmentChoice> fragmentIndex = new GeneralFeatureIndex<>();
+
     // expression depth for each DATABASE --> it is thread unique parameter
-    // TODO concurrent
+    // generator nodes are indexed by their ordinal, composites and fragments by their interned ID
     public class GeneratorInfo {
-        private final Map<GeneratorNode, Integer> generatorScore;
-        private final Map<String, Integer> compositeGeneratorScore;
-        private final Map<GeneralFragmentChoice, Integer> fragmentScore;
+        private final GeneralFeatureScore generatorScore;
+        private final GeneralFeatureScore compositeGeneratorScore;
+        private final GeneralFeatureScore fragmentScore;
         private boolean status;
         private boolean isQuery;
 
         public GeneratorInfo() {
-            this.generatorScore = new HashMap<>();
-            this.compositeGeneratorScore = new HashMap<>();
-            this.fragmentScore = new HashMap<>();
+            this.generatorScore = new GeneralFeatureScore(generatorNodes.length);
+            this.compositeGeneratorScore = new GeneralFeatureScore(64);
+            this.fragmentScore = new GeneralFeatureScore(16);
             this.status = false;
             this.isQuery = false;
         }
 
+        public GeneratorInfo(GeneratorInfo other) {
+            this.generatorScore = new GeneralFeatureScore(other.generatorScore);
+            this.compositeGeneratorScore = new GeneralFeatureScore(other.compositeGeneratorScore);
+            this.fragmentScore = new GeneralFeatureScore(other.fragmentScore);
+            this.status = other.status;
+            this.isQuery = other.isQuery;
+        }
+
         public Map<GeneratorNode, Integer> getGeneratorScore() {
-            return generatorScore;
+            return toMap(generatorScore, id -> generatorNodes[id]);
         }
 
         public Map<String, Integer> getCompositeGeneratorScore() {
-            return compositeGeneratorScore;
+            return toMap(compositeGeneratorScore, GeneralCompositeKeys::getKey);
         }
 
         public Map<GeneralFragmentChoice, Integer> getFragmentScore() {
-            return fragmentScore;
-        }
-
-        public <N> void countSuccess(Map<N, Integer> success, Map<N, Integer> count, Map<N, Integer> score) {
-            // HashMap<N, Integer> generator = supplier.get();
-            int executionStatus = status ? 1 : 0;
-
-            // sum up all the successful generator options
-            for (Map.Entry<N, Integer> entry : score.entrySet()) {
-                N key = entry.getKey();
-                int value = entry.getValue();
-                if (success.containsKey(key)) {
-                    success.put(key, success.get(key) + value * executionStatus);
-                    count.put(key, count.get(key) + 1);
-                } else {
-                    success.put(key, value * executionStatus);
-                    count.put(key, 1);
-                }
+            return toMap(fragmentScore, fragmentIndex::getKey);
+        }
+
+        public GeneralFeatureScore getCompositeScore() {
+            return compositeGeneratorScore;
+        }
+
+        private <N> Map<N, Integer> toMap(GeneralFeatureScore score, IntFunction<N> keys) {
+            Map<N, Integer> map = new LinkedHashMap<>();
+            for (int i = 0; i < score.size(); i++) {
+                int id = score.getId(i);
+                map.put(keys.apply(id), score.get(id));
             }
+            return map;
+        }
+
+        private void clear() {
+            generatorScore.clear();
+            compositeGeneratorScore.clear();
+            fragmentScore.clear();
+            status = false;
+            isQuery = false;
         }
 
         public boolean getStatus() {
@@ -134,89 +160,48 @@ public class GeneralErrorHandler implements ErrorHandler {
 
         @Override
         public String toString() {
-            return "GeneratorInfo [generatorScore=" + generatorScore + ", status=" + status + "]";
+            return "GeneratorInfo [generatorScore=" + getGeneratorScore() + ", status=" + status + "]";
         }
     }
 
-    private class GeneratorInfoTable {
-        private final List<GeneratorInfo> generatorTable;
-
-        private final Map<GeneratorNode, Integer> nodeSuccess = new HashMap<>();
-        private final Map<GeneratorNode, Integer> nodeCount = new HashMap<>();
-        private final Map<String, Integer> compositeSuccess = new HashMap<>();
-        private final Map<String, Integer> compositeCount = new HashMap<>();
-        private final Map<GeneralFragmentChoice, Integer> fragmentSuccess = new HashMap<>();
-        private final Map<GeneralFragmentChoice, Integer> fragmentCount = new HashMap<>();
+    private static class GeneratorInfoTable {
+        private final Batch nodeBatch = new Batch();
+        private final Batch compositeBatch = new Batch();
+        private final Batch fragmentBatch = new Batch();
 
-        GeneratorInfoTable() {
-            this.generatorTable = new ArrayList<>();
-        }
+        private GeneratorInfo lastGeneratorInfo;
+        private int stmtNum;
+        private int queryNum;
+        private int ssuccess;
+        private int qsuccess;
 
-        public List<GeneratorInfo> getGeneratorTable() {
-            return generatorTable;
+        public int size() {
+            return stmtNum + queryNum;
         }
 
         public void add(GeneratorInfo generatorInfo) {
-            generatorTable.add(generatorInfo);
-        }
-
-        public GeneratorInfo getLastGeneratorScore() {
-            return generatorTable.get(generatorTable.size() - 1);
-        }
-
-        public void calcNodeSuccess() {
-            int stmtNum = 0;
-            int queryNum = 0;
-            int qsuccess = 0;
-            int ssuccess = 0;
-            for (GeneratorInfo info : generatorTable) {
-                info.countSuccess(nodeSuccess, nodeCount, info.getGeneratorScore());
-                // logging info
-                if (info.isQuery()) {
-                    qsuccess += info.getStatus() ? 1 : 0;
-                    queryNum++;
-                } else {
-                    ssuccess += info.getStatus() ? 1 : 0;
-                    stmtNum++;
-                }
-            }
-            System.out.println("Success rate for query pairs: " + (double) qsuccess / queryNum);
-            System.out.println("Success rate for statements: " + (double) ssuccess / stmtNum);
-        }
-
-        public void calcCompositeSuccess() {
-            for (GeneratorInfo info : generatorTable) {
-                info.countSuccess(compositeSuccess, compositeCount, info.getCompositeGeneratorScore());
+            boolean status = generatorInfo.getStatus();
+            nodeBatch.add(generatorInfo.generatorScore, status);
+            compositeBatch.add(generatorInfo.compositeGeneratorScore, status);
+            fragmentBatch.add(generatorInfo.fragmentScore, status);
+            // logging info
+            if (generatorInfo.isQuery()) {
+                qsuccess += status ? 1 : 0;
+                queryNum++;
+            } else {
+                ssuccess += status ? 1 : 0;
+                stmtNum++;
             }
+            lastGeneratorInfo = generatorInfo;
         }
 
-        public void calcFragmentSuccess() {
-            for (GeneratorInfo info : generatorTable) {
-                info.countSuccess(fragmentSuccess, fragmentCount, info.getFragmentScore());
-            }
+        public GeneratorInfo getLastGeneratorScore() {
+            return lastGeneratorInfo;
         }
 
-        public synchronized <N> Map<N, Double> calcAverageScore(Map<N, Integer> success, Map<N, Integer> count,
-                Map<N, Integer> allSuccess, Map<N, Integer> allCount, int minCnt, boolean quickStart) {
-            Map<N, Double> average = new HashMap<>();
-            // sum the success and count
-            for (Map.Entry<N, Integer> entry : success.entrySet()) {
-                N key = entry.getKey();
-                if (allSuccess.containsKey(key)) {
-                    allSuccess.put(key, allSuccess.get(key) + entry.getValue());
-                    allCount.put(key, allCount.get(key) + count.get(key));
-                } else {
-                    allSuccess.put(key, entry.getValue());
-                    allCount.put(key, count.get(key));
-                }
-            }
-            for (Map.Entry<N, Integer> entry : allSuccess.entrySet()) {
-                int cnt = allCount.get(entry.getKey());
-                if (cnt > minCnt || quickStart && entry.getValue() > 0) {
-                    average.put(entry.getKey(), (double) entry.getValue() / cnt);
-                }
-            }
-            return average;
+        public void printSuccessRate() {
+            System.out.println("Success rate for query pairs: " + (double) qsuccess / queryNum);
+            System.out.println("Success rate for statements: " + (double) ssuccess / stmtNum);
         }
 
     }
@@ -247,7 +232,9 @@ public class GeneralErrorHandler implements ErrorHandler {
         // Logical Operator nodes
         LOPAND, LOPOR,
         // Oracles
-        WHERE, NOREC, HAVING, FUZZING,;
+        WHERE, NOREC, HAVING, FUZZING,
+        // Aggregates that the oracles let the DBMS compute instead of transferring the rows
+        AGGREGATE_COUNT, AGGREGATE_CHECKSUM,;
     }
 
     public double getNodeNum() {
@@ -255,11 +242,19 @@ public class GeneralErrorHandler implements ErrorHandler {
     }
 
     public static void incrementExecDatabaseNum() {
-        execDatabaseNum++;
+        execDatabaseNum.incrementAndGet();
     }
 
     public int getExecDatabaseNum() {
-        return execDatabaseNum;
+        return execDatabaseNum.get();
+    }
+
+    public static int getOptionsVersion() {
+        return optionsVersion.get();
+    }
+
+    public static void markOptionsChanged() {
+        optionsVersion.incrementAndGet();
     }
 
     public GeneralErrorHandler() {
@@ -277,12 +272,8 @@ public class GeneralErrorHandler implements ErrorHandler {
 
     public int getCurDepth(String databaseName) {
         String dbKey = databaseName.split("_")[0]; // for experiment usage
-        if (curDepth.containsKey(dbKey)) {
-            return curDepth.get(dbKey);
-        } else {
-            // We currently don't explicitly initiate the depth of the database
-            return 1;
-        }
+        // We currently don't explicitly initiate the depth of the database
+        return curDepth.getOrDefault(dbKey, 1);
     }
 
     public void setCurDepth(String databaseName, int depth) {
@@ -292,27 +283,132 @@ public class GeneralErrorHandler implements ErrorHandler {
 
     public void incrementCurDepth(String databaseName) {
         String dbKey = databaseName.split("_")[0];
-        if (curDepth.containsKey(dbKey)) {
-            curDepth.put(dbKey, curDepth.get(dbKey) + 1);
-        } else {
-            // we initiate the depth of the database here.
-            curDepth.put(dbKey, 2);
-        }
+        // we initiate the depth of the database here.
+        curDepth.merge(dbKey, 2, (depth, initial) -> depth + 1);
     }
 
-    private synchronized <N> void updateByLeastOnce(Map<N, Double> score, Map<N, Boolean> options) {
-        for (Map.Entry<N, Double> entry : score.entrySet()) {
-            if (options.containsKey(entry.getKey()) && options.get(entry.getKey())) {
-                // If true, then continue, don't make available function unavailable
-                continue;
+    /**
+     * Loads the feedback snapshot given by --feedback-snapshot, if it exists and was taken for the same engine and
+     * engine version. Only the first call has an effect.
+     *
+     * @param globalState
+     *            the state of the database that is created
+     * @param version
+     *            the version of the engine under test
+     */
+    public static synchronized void loadSnapshot(GeneralGlobalState globalState, String version) {
+        if (engineVersion != null) {
+            return;
+        }
+        engineVersion = version;
+        String fileName = globalState.getDbmsSpecificOptions().feedbackSnapshot;
+        if (fileName.isEmpty() || !new File(fileName).exists()) {
+            return;
+        }
+        GeneralFeedbackSnapshot snapshot;
+        try {
+            snapshot = GeneralFeedbackSnapshot.load(new File(fileName));
+        } catch (IOException e) {
+            System.out.println("Error reading feedback snapshot: " + e.getMessage());
+            return;
+        }
+        String engine = globalState.getProviderName();
+        if (!snapshot.getEngine().equals(engine) || !snapshot.getEngineVersion().equals(version)) {
+            System.out.println(String.format("Ignoring feedback snapshot of %s %s (testing %s %s)",
+                    snapshot.getEngine(), snapshot.getEngineVersion(), engine, version));
+            return;
+        }
+        for (Map.Entry<String, long[]> entry : snapshot.getNodeCounts().entrySet()) {
+            GeneratorNode node = getGeneratorNode(entry.getKey());
+            if (node != null) {
+                nodeStatistics.add(node, entry.getValue()[0], entry.getValue()[1]);
             }
-            if (entry.getValue() > 0) {
-                options.put(entry.getKey(), true);
-            } else {
-                options.put(entry.getKey(), false);
+        }
+        for (Map.Entry<String, long[]> entry : snapshot.getCompositeCounts().entrySet()) {
+            compositeStatistics.add(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+        for (Map.Entry<String, Boolean> entry : snapshot.getNodeOptions().entrySet()) {
+            GeneratorNode node = getGeneratorNode(entry.getKey());
+            if (node != null) {
+                generatorOptions.put(node, entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Boolean> entry : snapshot.getCompositeOptions().entrySet()) {
+            compositeGeneratorOptions.set(GeneralCompositeKeys.getId(entry.getKey()), entry.getValue());
+        }
+        for (String fragment : snapshot.getDisabledFragments()) {
+            if (!disabledFragments.contains(fragment)) {
+                disabledFragments.add(fragment);
             }
         }
+        curDepth.putAll(snapshot.getDepths());
+        markOptionsChanged();
+        System.out.println(String.format("Loaded feedback snapshot %s (%d nodes, %d composites)", fileName,
+                snapshot.getNodeCounts().size(), snapshot.getCompositeCounts().size()));
+    }
+
+    private static GeneratorNode getGeneratorNode(String name) {
+        try {
+            return GeneratorNode.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            // the node was removed since the snapshot was taken
+            return null;
+        }
+    }
+
+    public void saveSnapshot(GeneralGlobalState globalState) {
+        String fileName = globalState.getDbmsSpecificOptions().feedbackSnapshot;
+        String version;
+        synchronized (GeneralErrorHandler.class) {
+            version = engineVersion;
+        }
+        if (fileName.isEmpty() || version == null) {
+            return;
+        }
+        String engine = globalState.getProviderName();
+        GeneralReportWriter.submitBinary(new File(fileName), () -> takeSnapshot(engine, version).toBytes(),
+                globalState.getDbmsSpecificOptions().reportInterval);
+    }
+
+    private GeneralFeedbackSnapshot takeSnapshot(String engine, String version) {
+        GeneralFeedbackSnapshot snapshot = new GeneralFeedbackSnapshot(engine, version);
+        for (Map.Entry<GeneratorNode, FeatureCount> entry : nodeStatistics.snapshot().entrySet()) {
+            FeatureCount count = entry.getValue();
+            snapshot.getNodeCounts().put(entry.getKey().name(), new long[] { count.getSuccess(), count.getCount() });
+        }
+        for (Map.Entry<String, FeatureCount> entry : compositeStatistics.snapshot().entrySet()) {
+            FeatureCount count = entry.getValue();
+            snapshot.getCompositeCounts().put(entry.getKey(), new long[] { count.getSuccess(), count.getCount() });
+        }
+        for (Map.Entry<GeneratorNode, Boolean> entry : generatorOptions.entrySet()) {
+            snapshot.getNodeOptions().put(entry.getKey().name(), entry.getValue());
+        }
+        snapshot.getCompositeOptions().putAll(getCompositeOptions());
+        snapshot.getDisabledFragments().addAll(disabledFragments);
+        for (Map.Entry<GeneralFragmentChoice, Boolean> entry : fragmentOptions.entrySet()) {
+            String name = entry.getKey().getFragmentName();
+            if (!entry.getValue() && !snapshot.getDisabledFragments().contains(name)) {
+                snapshot.getDisabledFragments().add(name);
+            }
+        }
+        snapshot.getDepths().putAll(curDepth);
+        return snapshot;
+    }
 
+    // returns whether an option changed
+    private <N> boolean updateByLeastOnce(Map<N, Double> score, Map<N, Boolean> options) {
+        boolean changed = false;
+        for (Map.Entry<N, Double> entry : score.entrySet()) {
+            boolean value = entry.getValue() > 0;
+            Boolean previous = options.putIfAbsent(entry.getKey(), value);
+            if (previous == null) {
+                changed = true;
+            } else if (value && !previous) {
+                // don't make available function unavailable
+                changed |= options.replace(entry.getKey(), false, true);
+            }
+        }
+        return changed;
     }
 
     public synchronized void updateFragments() {
@@ -322,49 +418,69 @@ public class GeneralErrorHandler implements ErrorHandler {
     }
 
     public void calcAverageScore() {
-        generatorTable.calcNodeSuccess();
-        generatorAverage = generatorTable.calcAverageScore(generatorTable.nodeSuccess, generatorTable.nodeCount,
-                allNodeSuccess, allNodeCount, 100, true);
-        // generatorTable.calcAverageCompositeScore();
-        generatorTable.calcCompositeSuccess();
-        compositeAverage = generatorTable.calcAverageScore(generatorTable.compositeSuccess,
-                generatorTable.compositeCount, allCompositeSuccess, allCompositeCount, 200, false);
+        generatorTable.printSuccessRate();
+        publishScores();
+        generatorAverage = nodeStatistics.getAverage(100, true);
+        compositeAverage = compositeStatistics.getAverage(200, false);
+        fragmentAverage = fragmentStatistics.getAverage(10, true);
+    }
 
-        generatorTable.calcFragmentSuccess();
-        fragmentAverage = generatorTable.calcAverageScore(generatorTable.fragmentSuccess, generatorTable.fragmentCount,
-                allFragmentSuccess, allFragmentCount, 10, true);
+    /**
+     * Publishes the scores of the statements executed since the last publication, without recomputing the averages,
+     * e.g., for an oracle worker whose feedback is taken into account with the next database.
+     */
+    public void publishScores() {
+        nodeStatistics.addAll(generatorTable.nodeBatch, id -> generatorNodes[id]);
+        compositeStatistics.addAll(generatorTable.compositeBatch, GeneralCompositeKeys::getKey);
+        fragmentStatistics.addAll(generatorTable.fragmentBatch, fragmentIndex::getKey);
     }
 
     @Override
     public void updateGeneratorOptions() {
 
         // if not zero then the option is true
-        updateByLeastOnce(generatorAverage, generatorOptions);
-        updateByLeastOnce(compositeAverage, compositeGeneratorOptions);
-        postUpdateFunctionOptions();
-        updateByLeastOnce(fragmentAverage, fragmentOptions);
+        boolean changed = updateByLeastOnce(generatorAverage, generatorOptions);
+        for (Map.Entry<String, Double> entry : compositeAverage.entrySet()) {
+            changed |= compositeGeneratorOptions.enableIfSucceeded(GeneralCompositeKeys.getId(entry.getKey()),
+                    entry.getValue() > 0);
+        }
+        changed |= postUpdateFunctionOptions();
+        changed |= updateByLeastOnce(fragmentAverage, fragmentOptions);
 
         // Special handling for the untype_expr option
-        if (generatorOptions.get(GeneratorNode.UNTYPE_EXPR)) {
+        Double untypeAverage = generatorAverage.get(GeneratorNode.UNTYPE_EXPR);
+        if (getOption(GeneratorNode.UNTYPE_EXPR) && untypeAverage != null) {
             // TODO make it super parameter
-            generatorOptions.put(GeneratorNode.UNTYPE_EXPR, generatorAverage.get(GeneratorNode.UNTYPE_EXPR) > 0.5);
+            boolean value = untypeAverage > 0.5;
+            Boolean previous = generatorOptions.put(GeneratorNode.UNTYPE_EXPR, value);
+            changed |= previous == null || previous != value;
+        }
+        // the samplers and type caches are only rebuilt if an option changed
+        if (changed) {
+            markOptionsChanged();
         }
     }
 
-    private synchronized void postUpdateFunctionOptions() {
+    // returns whether an option changed
+    private boolean postUpdateFunctionOptions() {
+        boolean changed = false;
         // iterate funtions
         for (Map.Entry<String, Integer> entry : GeneralFunction.getFunctions().entrySet()) {
             String funcName = entry.getKey();
             for (int i = 0; i < entry.getValue(); i++) {
                 final int ind = i;
                 List<GeneralCompositeDataType> availTypes = GeneralCompositeDataType.getSupportedTypes().stream()
-                        .filter(t -> getCompositeOption(funcName, ind + t.toString())).collect(Collectors.toList());
+                        .filter(t -> getCompositeOption(
+                                GeneralCompositeKeys.getId(Kind.FUNCTION_ARG, funcName, ind, t)))
+                        .collect(Collectors.toList());
                 if (availTypes.isEmpty()) {
                     System.out.println("Function " + funcName + " with " + i + " arguments is not available");
-                    setCompositeOption("FUNCTION-" + funcName, false);
+                    int id = GeneralCompositeKeys.getId(Kind.FUNCTION, funcName);
+                    changed |= compositeGeneratorOptions.set(id, false);
                 }
             }
         }
+        return changed;
     }
 
     public void initGeneratorOptions() {
@@ -434,43 +550,31 @@ public class GeneralErrorHandler implements ErrorHandler {
     // }
 
     public void addScore(GeneratorNode generatorName) {
-        Map<GeneratorNode, Integer> score = generatorInfo.getGeneratorScore();
-        if (score.containsKey(generatorName)) {
-            score.put(generatorName, score.get(generatorName) + 1);
-        } else {
-            score.put(generatorName, 1);
-        }
+        generatorInfo.generatorScore.add(generatorName.ordinal());
     }
 
     public void addScore(String generatorName) {
-        Map<String, Integer> score = generatorInfo.getCompositeGeneratorScore();
-        if (score.containsKey(generatorName)) {
-            score.put(generatorName, score.get(generatorName) + 1);
-        } else {
-            score.put(generatorName, 1);
-        }
+        addCompositeScore(GeneralCompositeKeys.getId(generatorName));
+    }
+
+    public void addCompositeScore(int compositeId) {
+        generatorInfo.compositeGeneratorScore.add(compositeId);
     }
 
     public void addScore(GeneralFragmentChoice fragment) {
-        Map<GeneralFragmentChoice, Integer> score = generatorInfo.getFragmentScore();
-        if (score.containsKey(fragment)) {
-            score.put(fragment, score.get(fragment) + 1);
-        } else {
-            score.put(fragment, 1);
-        }
+        generatorInfo.fragmentScore.add(fragmentIndex.getId(fragment));
     }
 
     public void setScore(GeneratorNode generatorName, Integer score) {
-        generatorInfo.getGeneratorScore().put(generatorName, score);
+        generatorInfo.generatorScore.set(generatorName.ordinal(), score);
     }
 
     public void setScore(String generatorName, Integer score) {
-        generatorInfo.getCompositeGeneratorScore().put(generatorName, score);
+        generatorInfo.compositeGeneratorScore.set(GeneralCompositeKeys.getId(generatorName), score);
     }
 
-    public void loadCompositeScore(Map<String, Integer> compositeScore) {
-        generatorInfo.getCompositeGeneratorScore().clear();
-        generatorInfo.getCompositeGeneratorScore().putAll(compositeScore);
+    public void loadCompositeScore(GeneralFeatureScore compositeScore) {
+        generatorInfo.compositeGeneratorScore.load(compositeScore);
     }
 
     public void setExecutionStatus(boolean status) {
@@ -483,7 +587,9 @@ public class GeneralErrorHandler implements ErrorHandler {
 
     public void appendScoreToTable(boolean status, boolean isQuery, String sql, String errorMessage) {
         if (status) {
-            setExample(generatorInfo, sql);
+            if (sql != null) {
+                setExample(generatorInfo, sql);
+            }
         } else {
             if (sql != null) {
                 setErrorExample(generatorInfo, sql);
@@ -502,16 +608,25 @@ public class GeneralErrorHandler implements ErrorHandler {
     public void appendScoreToTable(boolean status, boolean isQuery) {
         setExecutionStatus(status);
         generatorInfo.setQuery(isQuery);
+        // reuse the info of the previous statement, only the last one is kept
+        GeneratorInfo previous = generatorTable.getLastGeneratorScore();
         generatorTable.add(generatorInfo);
-        generatorInfo = new GeneratorInfo();
+        if (previous != null) {
+            previous.clear();
+            generatorInfo = previous;
+        } else {
+            generatorInfo = new GeneratorInfo();
+        }
     }
 
     public void appendHistory(String databaseName) {
-        assertionGeneratorHistory.put(databaseName, getLastGeneratorScore());
+        GeneratorInfo info = new GeneratorInfo(getLastGeneratorScore());
+        assertionGeneratorHistory.put(databaseName, info);
+        bugSignatures.put(databaseName, getSignature(info));
     }
 
     public void printStatistics() {
-        System.out.println("Executed Databases: " + execDatabaseNum);
+        System.out.println("Executed Databases: " + execDatabaseNum.get());
         // System.out.println("Generator Score: " + generatorInfo);
         // System.out.println("Generator Table: " + generatorTable);
         // System.out.println("Generator Options: " + generatorOptions);
@@ -524,7 +639,7 @@ public class GeneralErrorHandler implements ErrorHandler {
         // get the average value for each key for all the hashmap in the
         // successGeneratorTable
         // HashMap<GeneratorNode, Double> average = getAverageScore(generatorTable);
-        System.out.println("Total queries: " + generatorTable.getGeneratorTable().size());
+        System.out.println("Total queries: " + generatorTable.size());
         // System.out.println("Average: " + average);
 
         // HashMap<String, Double> compositeAverage =
@@ -536,144 +651,118 @@ public class GeneralErrorHandler implements ErrorHandler {
     }
 
     public boolean checkIfDuplicate() {
-        // iterate assertionGeneratorHistory values
-        boolean duplicate = false;
-
-        boolean isError = !getLastGeneratorScore().getStatus();
-        Set<GeneratorNode> nodes = new HashSet<>(getLastGeneratorScore().getGeneratorScore().keySet());
-        Set<GeneralFragmentChoice> fragments = new HashSet<>(getLastGeneratorScore().getFragmentScore().keySet());
-        Set<String> composites = new HashSet<>(getLastGeneratorScore().getCompositeGeneratorScore().keySet());
-        Set<String> functions = composites.stream().filter(s -> s.startsWith("FUNCTION")).collect(Collectors.toSet());
-        ArrayList<GeneratorInfo> history = new ArrayList<>(assertionGeneratorHistory.values());
+        GeneratorInfo last = getLastGeneratorScore();
+        Signature signature = getSignature(last);
+        Match match = bugSignatures.match(signature);
+        if (match == Match.NONE) {
+            return false;
+        }
+        System.out.println("Duplicated bug found, ignore it.");
+        if (match == Match.FEATURE && signature.isError()) {
+            System.out.println("Skip the rest of the current test");
+            throw new IgnoreMeException();
+        }
+        return true;
+    }
 
+    private static Signature getSignature(GeneratorInfo info) {
+        BitSet nodes = new BitSet(generatorNodes.length);
+        for (int i = 0; i < info.generatorScore.size(); i++) {
+            nodes.set(info.generatorScore.getId(i));
+        }
         // remove meta nodes
-        nodes.remove(GeneratorNode.UNTYPE_EXPR);
-        // System.out.println("General Features: " + nodes);
-        // System.out.println("General Fragments: " + fragments);
-        // System.out.println("Function Features: " + functions);
-        // System.out.println("History: " + history);
-
-        for (GeneratorInfo generator : history) {
-            // 0. If the error status is different, then it is not a duplicate bug
-            if (isError != !generator.getStatus()) {
-                continue;
-            }
-            Set<GeneratorNode> generatorNodes = new HashSet<>(generator.getGeneratorScore().keySet());
-            generatorNodes.remove(GeneratorNode.UNTYPE_EXPR);
-            // 1. if it is empty, then it's a expression with only constant. Probably a
-            // String comment false alarm
-            if (generatorNodes.isEmpty()) {
-                if (nodes.isEmpty()) {
-                    duplicate = true;
-                    System.out.println("Duplicated bug found, ignore it.");
-                    break;
-                } else {
-                    continue;
-                }
-            }
-            // 2. if the potential bug contain all the nodes in one history bug, then it is
-            // a duplicated bug
-            if (nodes.containsAll(generatorNodes)) {
-                duplicate = true;
-                System.out.println("Duplicated bug found, ignore it.");
-                if (isError) {
-                    System.out.println("Skip the rest of the current test");
-                    throw new IgnoreMeException();
-                }
-                break;
-            }
-            Set<GeneralFragmentChoice> generatorFragments = new HashSet<>(generator.getFragmentScore().keySet());
-            // 3. if any of the fragments is in the generatorFragments, then it is a
-            // duplicated bug
-            // use disjoint to check if the two sets are disjoint
-            if (fragments.stream().anyMatch(generatorFragments::contains)) {
-                duplicate = true;
-                System.out.println("Duplicated bug found, ignore it.");
-                if (isError) {
-                    System.out.println("Skip the rest of the current test");
-                    throw new IgnoreMeException();
-                }
-                break;
-            }
-            Set<String> generatorComposites = new HashSet<>(generator.getCompositeGeneratorScore().keySet());
-            // 4. if any of the composite FUNCTION is in the generatorComposite, then it is
-            // a duplicated bug
-            if (functions.stream().anyMatch(generatorComposites::contains)) {
-                duplicate = true;
-                System.out.println("Duplicated bug found, ignore it.");
-                if (isError) {
-                    System.out.println("Skip the rest of the current test");
-                    throw new IgnoreMeException();
-                }
-                break;
+        nodes.clear(GeneratorNode.UNTYPE_EXPR.ordinal());
+        BitSet fragments = new BitSet();
+        for (int i = 0; i < info.fragmentScore.size(); i++) {
+            fragments.set(info.fragmentScore.getId(i));
+        }
+        BitSet functions = new BitSet();
+        for (int i = 0; i < info.compositeGeneratorScore.size(); i++) {
+            int id = info.compositeGeneratorScore.getId(i);
+            if (GeneralCompositeKeys.getKey(id).startsWith("FUNCTION")) {
+                functions.set(id);
             }
         }
-
-        return duplicate;
+        return new Signature(!info.getStatus(), nodes, fragments, functions);
     }
 
-    public synchronized void saveStatistics(GeneralGlobalState globalState) {
-        // TODO It is a quite ugly function
-        // TODO make it thread safe
-        try (FileWriter file = new FileWriter(
-                "logs/" + globalState.getDbmsSpecificOptions().getDatabaseEngineFactory().toString() + "Options.csv")) {
-            String delim = ";";
-            file.write("Type" + delim + "Key" + delim + "Name" + delim + "Value" + delim + "Success" + delim + "Count"
-                    + delim + "Example" + "\n");
-            for (Map.Entry<GeneratorNode, Boolean> entry : generatorOptions.entrySet()) {
-                file.write(String.format("NODE;;\"%s\";%s;%s;%s;\"%s\"\n", entry.getKey(), entry.getValue(),
-                        allNodeSuccess.get(entry.getKey()), allNodeCount.get(entry.getKey()),
-                        generatorExample.get(entry.getKey())));
-            }
-            for (Map.Entry<String, Boolean> entry : compositeGeneratorOptions.entrySet()) {
-                file.write(String.format("COMPOSITE;;\"%s\";%s;%s;%s;\"%s\"\n", entry.getKey(), entry.getValue(),
-                        allCompositeSuccess.get(entry.getKey()), allCompositeCount.get(entry.getKey()),
-                        compositeExample.get(entry.getKey())));
-            }
-            for (Map.Entry<GeneralFragmentChoice, Boolean> entry : fragmentOptions.entrySet()) {
-                GeneralFragmentChoice fragmentChoice = entry.getKey();
-                file.write(String.format("%s;%s;\"%s\";%s;%s;%s;\"%s\"\n", fragmentChoice.getType(),
-                        fragmentChoice.getKey(), fragmentChoice.getFragmentName(), entry.getValue(),
-                        allFragmentSuccess.get(entry.getKey()), allFragmentCount.get(entry.getKey()),
-                        fragmentExample.get(entry.getKey())));
-            }
-        } catch (Exception e) {
-            // TODO: handle exception
-            e.printStackTrace();
-        }
+    public void saveStatistics(GeneralGlobalState globalState) {
+        long interval = globalState.getDbmsSpecificOptions().reportInterval;
+        GeneralReportWriter.submit(
+                new File("logs/" + globalState.getDbmsSpecificOptions().getDatabaseEngineFactory().toString()
+                        + "Options.csv"),
+                this::renderStatistics, interval);
 
         // write each generator score to a file
         // file: logs/general/generator/database*.txt
-        File historyFileDir = new File("logs/general/generator");
-        if (!historyFileDir.exists()) {
-            historyFileDir.mkdirs();
-        }
         for (Map.Entry<String, GeneratorInfo> entry : assertionGeneratorHistory.entrySet()) {
-            String databaseName = entry.getKey();
-            Map<GeneratorNode, Integer> generatorScore = entry.getValue().getGeneratorScore();
-            try (FileWriter file = new FileWriter("logs/general/generator/" + databaseName + "Options.txt")) {
-                for (Map.Entry<GeneratorNode, Integer> generator : generatorScore.entrySet()) {
-                    file.write(generator.getKey() + " : " + generator.getValue() + "\n");
-                }
-            } catch (Exception e) {
+            GeneratorInfo info = entry.getValue();
+            GeneralReportWriter.submit(new File("logs/general/generator/" + entry.getKey() + "Options.txt"),
+                    () -> renderGeneratorScore(info), interval);
+        }
+    }
 
-            }
+    private String renderStatistics() {
+        // TODO It is a quite ugly function
+        StringBuilder sb = new StringBuilder();
+        String delim = ";";
+        sb.append("Type" + delim + "Key" + delim + "Name" + delim + "Value" + delim + "Success" + delim + "Count"
+                + delim + "Example" + "\n");
+        Map<GeneratorNode, FeatureCount> nodeCounts = nodeStatistics.snapshot();
+        for (Map.Entry<GeneratorNode, Boolean> entry : generatorOptions.entrySet()) {
+            FeatureCount count = nodeCounts.get(entry.getKey());
+            sb.append(String.format("NODE;;\"%s\";%s;%s;%s;\"%s\"\n", entry.getKey(), entry.getValue(),
+                    getSuccess(count), getCount(count), generatorExample.get(entry.getKey())));
+        }
+        Map<String, FeatureCount> compositeCounts = compositeStatistics.snapshot();
+        for (Map.Entry<String, Boolean> entry : getCompositeOptions().entrySet()) {
+            FeatureCount count = compositeCounts.get(entry.getKey());
+            sb.append(String.format("COMPOSITE;;\"%s\";%s;%s;%s;\"%s\"\n", entry.getKey(), entry.getValue(),
+                    getSuccess(count), getCount(count), compositeExample.get(entry.getKey())));
         }
+        Map<GeneralFragmentChoice, FeatureCount> fragmentCounts = fragmentStatistics.snapshot();
+        for (Map.Entry<GeneralFragmentChoice, Boolean> entry : fragmentOptions.entrySet()) {
+            GeneralFragmentChoice fragmentChoice = entry.getKey();
+            FeatureCount count = fragmentCounts.get(entry.getKey());
+            sb.append(String.format("%s;%s;\"%s\";%s;%s;%s;\"%s\"\n", fragmentChoice.getType(),
+                    fragmentChoice.getKey(), fragmentChoice.getFragmentName(), entry.getValue(), getSuccess(count),
+                    getCount(count), fragmentExample.get(entry.getKey())));
+        }
+        return sb.toString();
+    }
+
+    private static String renderGeneratorScore(GeneratorInfo info) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<GeneratorNode, Integer> generator : info.getGeneratorScore().entrySet()) {
+            sb.append(generator.getKey() + " : " + generator.getValue() + "\n");
+        }
+        return sb.toString();
+    }
+
+    private static Long getSuccess(FeatureCount count) {
+        return count == null ? null : count.getSuccess();
+    }
+
+    private static Long getCount(FeatureCount count) {
+        return count == null ? null : count.getCount();
     }
 
     public void setOption(GeneratorNode option, boolean value) {
-        generatorOptions.put(option, value);
+        Boolean previous = generatorOptions.put(option, value);
+        if (previous == null || previous != value) {
+            markOptionsChanged();
+        }
     }
 
     public void setOptionIfNonExist(GeneratorNode option, boolean value) {
-        if (!generatorOptions.containsKey(option)) {
-            setOption(option, value);
+        if (generatorOptions.putIfAbsent(option, value) == null) {
+            markOptionsChanged();
         }
     }
 
     public void setCompositeOptionIfNonExist(String option, boolean value) {
-        if (!compositeGeneratorOptions.containsKey(option)) {
-            setCompositeOption(option, value);
+        if (compositeGeneratorOptions.setIfAbsent(GeneralCompositeKeys.getId(option), value)) {
+            markOptionsChanged();
         }
     }
 
@@ -683,275 +772,273 @@ public class GeneralErrorHandler implements ErrorHandler {
     }
 
     public void setCompositeOption(String option, boolean value) {
-        compositeGeneratorOptions.put(option, value);
+        if (compositeGeneratorOptions.set(GeneralCompositeKeys.getId(option), value)) {
+            markOptionsChanged();
+        }
     }
 
     public void setExample(GeneratorInfo info, String sql) {
-        for (Map.Entry<GeneratorNode, Integer> entry : info.getGeneratorScore().entrySet()) {
-            if (!generatorExample.containsKey(entry.getKey())) {
-                generatorExample.put(entry.getKey(), sql);
-            }
-        }
-        for (Map.Entry<String, Integer> entry : info.getCompositeGeneratorScore().entrySet()) {
-            // compositeExample.put(entry.getKey(), sql);
-            if (!compositeExample.containsKey(entry.getKey())) {
-                compositeExample.put(entry.getKey(), sql);
-            }
-        }
-        for (Map.Entry<GeneralFragmentChoice, Integer> entry : info.getFragmentScore().entrySet()) {
-            if (!fragmentExample.containsKey(entry.getKey())) {
-                fragmentExample.put(entry.getKey(), sql);
-            }
-        }
+        putEach(info.generatorScore, id -> generatorNodes[id], generatorExample, sql, false);
+        putEach(info.compositeGeneratorScore, GeneralCompositeKeys::getKey, compositeExample, sql, false);
+        putEach(info.fragmentScore, id -> fragmentIndex.getKey(id), fragmentExample, sql, false);
     }
 
     public void setErrorExample(GeneratorInfo info, String sql) {
-        for (Map.Entry<GeneratorNode, Integer> entry : info.getGeneratorScore().entrySet()) {
-            generatorErrorExample.put(entry.getKey(), sql);
-        }
-        for (Map.Entry<String, Integer> entry : info.getCompositeGeneratorScore().entrySet()) {
-            compositeErrorExample.put(entry.getKey(), sql);
-        }
-        for (Map.Entry<GeneralFragmentChoice, Integer> entry : info.getFragmentScore().entrySet()) {
-            fragmentErrorExample.put(entry.getKey(), sql);
-        }
+        putEach(info.generatorScore, id -> generatorNodes[id], generatorErrorExample, sql, true);
+        putEach(info.compositeGeneratorScore, GeneralCompositeKeys::getKey, compositeErrorExample, sql, true);
+        putEach(info.fragmentScore, id -> fragmentIndex.getKey(id), fragmentErrorExample, sql, true);
     }
 
     public void setErrorMessage(GeneratorInfo info, String message) {
-        for (Map.Entry<GeneratorNode, Integer> entry : info.getGeneratorScore().entrySet()) {
-            generatorErrorMessage.put(entry.getKey(), message);
-        }
-        for (Map.Entry<String, Integer> entry : info.getCompositeGeneratorScore().entrySet()) {
-            compositeErrorMessage.put(entry.getKey(), message);
-        }
-        for (Map.Entry<GeneralFragmentChoice, Integer> entry : info.getFragmentScore().entrySet()) {
-            fragmentErrorMessage.put(entry.getKey(), message);
+        putEach(info.generatorScore, id -> generatorNodes[id], generatorErrorMessage, message, true);
+        putEach(info.compositeGeneratorScore, GeneralCompositeKeys::getKey, compositeErrorMessage, message, true);
+        putEach(info.fragmentScore, id -> fragmentIndex.getKey(id), fragmentErrorMessage, message, true);
+    }
+
+    // runs for every statement, so the IDs of the score are visited directly instead of building its map
+    private static <N> void putEach(GeneralFeatureScore score, IntFunction<N> keys, Map<N, String> map, String value,
+            boolean replace) {
+        for (int i = 0; i < score.size(); i++) {
+            N key = keys.apply(score.getId(i));
+            if (replace) {
+                map.put(key, value);
+            } else {
+                map.putIfAbsent(key, value);
+            }
         }
     }
 
-    public synchronized void dumpFeatureStatistics(GeneralGlobalState globalState) {
+    public void dumpFeatureStatistics(GeneralGlobalState globalState) {
         String engineName = globalState.getDbmsSpecificOptions().getDatabaseEngineFactory().toString();
-        String filePath = "logs/" + engineName + "-feature-stats.log";
-
-        try (FileWriter writer = new FileWriter(filePath)) {
-            writer.write("=".repeat(80) + "\n");
-            writer.write(String.format("Feature Statistics Report — %s (Iteration #%d)\n", engineName, execDatabaseNum));
-            writer.write("=".repeat(80) + "\n\n");
-
-            // Summary
-            int totalNodes = allNodeCount.values().stream().mapToInt(Integer::intValue).sum();
-            int totalNodeSuccess = allNodeSuccess.values().stream().mapToInt(Integer::intValue).sum();
-            int enabledNodes = (int) generatorOptions.values().stream().filter(v -> v).count();
-            int totalGeneratorOptions = generatorOptions.size();
-            writer.write("--- Summary ---\n");
-            writer.write(String.format("  Total executions tracked:    %d\n", totalNodes));
-            writer.write(String.format("  Total successful:            %d\n", totalNodeSuccess));
-            writer.write(String.format("  Generator nodes enabled:     %d / %d\n", enabledNodes, totalGeneratorOptions));
-
-            int enabledComposites = (int) compositeGeneratorOptions.values().stream().filter(v -> v).count();
-            int totalComposites = compositeGeneratorOptions.size();
-            writer.write(String.format("  Composite features enabled:  %d / %d\n", enabledComposites, totalComposites));
-
-            int enabledFragments = (int) fragmentOptions.values().stream().filter(v -> v).count();
-            int totalFragments = fragmentOptions.size();
-            writer.write(String.format("  Fragment features enabled:   %d / %d\n", enabledFragments, totalFragments));
-            writer.write("\n");
-
-            // Node features
-            writer.write("--- Generator Node Features ---\n");
-            writer.write(String.format("  %-25s  %7s  %7s  %8s  %7s\n", "Feature", "Success", "Count", "Rate", "Status"));
-            writer.write("  " + "-".repeat(65) + "\n");
-            for (GeneratorNode node : GeneratorNode.values()) {
-                Integer success = allNodeSuccess.get(node);
-                Integer count = allNodeCount.get(node);
-                if (count == null || count == 0) {
-                    continue;
-                }
-                boolean enabled = getOption(node);
-                double rate = (double) success / count;
-                writer.write(String.format("  %-25s  %7d  %7d  %7.1f%%  %7s\n",
-                        node, success, count, rate * 100, enabled ? "ON" : "OFF"));
+        GeneralReportWriter.submit(new File("logs/" + engineName + "-feature-stats.log"),
+                () -> renderFeatureStatistics(engineName), globalState.getDbmsSpecificOptions().reportInterval);
+    }
+
+    private String renderFeatureStatistics(String engineName) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=".repeat(80) + "\n");
+        sb.append(String.format("Feature Statistics Report — %s (Iteration #%d)\n", engineName,
+                execDatabaseNum.get()));
+        sb.append("=".repeat(80) + "\n\n");
+
+        Map<GeneratorNode, FeatureCount> nodeCounts = nodeStatistics.snapshot();
+        Map<String, FeatureCount> compositeCounts = compositeStatistics.snapshot();
+        Map<GeneralFragmentChoice, FeatureCount> fragmentCounts = fragmentStatistics.snapshot();
+
+        // Summary
+        long totalNodes = nodeCounts.values().stream().mapToLong(FeatureCount::getCount).sum();
+        long totalNodeSuccess = nodeCounts.values().stream().mapToLong(FeatureCount::getSuccess).sum();
+        int enabledNodes = (int) generatorOptions.values().stream().filter(v -> v).count();
+        int totalGeneratorOptions = generatorOptions.size();
+        sb.append("--- Summary ---\n");
+        sb.append(String.format("  Total executions tracked:    %d\n", totalNodes));
+        sb.append(String.format("  Total successful:            %d\n", totalNodeSuccess));
+        sb.append(String.format("  Generator nodes enabled:     %d / %d\n", enabledNodes, totalGeneratorOptions));
+
+        Map<String, Boolean> compositeOptions = getCompositeOptions();
+        int enabledComposites = (int) compositeOptions.values().stream().filter(v -> v).count();
+        int totalComposites = compositeOptions.size();
+        sb.append(String.format("  Composite features enabled:  %d / %d\n", enabledComposites, totalComposites));
+
+        int enabledFragments = (int) fragmentOptions.values().stream().filter(v -> v).count();
+        int totalFragments = fragmentOptions.size();
+        sb.append(String.format("  Fragment features enabled:   %d / %d\n", enabledFragments, totalFragments));
+        sb.append("\n");
+
+        // Node features
+        sb.append("--- Generator Node Features ---\n");
+        sb.append(String.format("  %-25s  %7s  %7s  %8s  %7s\n", "Feature", "Success", "Count", "Rate", "Status"));
+        sb.append("  " + "-".repeat(65) + "\n");
+        for (GeneratorNode node : GeneratorNode.values()) {
+            FeatureCount count = nodeCounts.get(node);
+            if (count == null || count.getCount() == 0) {
+                continue;
             }
-            // Also show nodes that are OFF with no data
-            for (GeneratorNode node : GeneratorNode.values()) {
-                if (generatorOptions.containsKey(node) && !generatorOptions.get(node)
-                        && (allNodeCount.get(node) == null || allNodeCount.get(node) == 0)) {
-                    writer.write(String.format("  %-25s  %7s  %7s  %8s  %7s\n", node, "-", "-", "-", "OFF"));
-                }
+            boolean enabled = getOption(node);
+            sb.append(String.format("  %-25s  %7d  %7d  %7.1f%%  %7s\n",
+                    node, count.getSuccess(), count.getCount(), count.getRate() * 100, enabled ? "ON" : "OFF"));
+        }
+        // Also show nodes that are OFF with no data
+        for (GeneratorNode node : GeneratorNode.values()) {
+            if (generatorOptions.containsKey(node) && !generatorOptions.get(node)
+                    && (nodeCounts.get(node) == null || nodeCounts.get(node).getCount() == 0)) {
+                sb.append(String.format("  %-25s  %7s  %7s  %8s  %7s\n", node, "-", "-", "-", "OFF"));
             }
-            writer.write("\n");
+        }
+        sb.append("\n");
 
-            // Node examples
-            writer.write("--- Generator Node Examples (success) ---\n");
-            for (Map.Entry<GeneratorNode, String> entry : generatorExample.entrySet()) {
-                if (entry.getValue() != null) {
-                    writer.write(String.format("  [%s]\n    %s\n", entry.getKey(), entry.getValue()));
-                }
+        // Node examples
+        sb.append("--- Generator Node Examples (success) ---\n");
+        for (Map.Entry<GeneratorNode, String> entry : generatorExample.entrySet()) {
+            if (entry.getValue() != null) {
+                sb.append(String.format("  [%s]\n    %s\n", entry.getKey(), entry.getValue()));
             }
-            writer.write("\n");
-
-            // Node error examples
-            if (!generatorErrorExample.isEmpty()) {
-                writer.write("--- Generator Node Examples (error) ---\n");
-                for (Map.Entry<GeneratorNode, String> entry : generatorErrorExample.entrySet()) {
-                    if (entry.getValue() != null) {
-                        writer.write(String.format("  [%s]\n    %s\n", entry.getKey(), entry.getValue()));
-                        String msg = generatorErrorMessage.get(entry.getKey());
-                        if (msg != null) {
-                            writer.write(String.format("    >> %s\n", msg));
-                        }
+        }
+        sb.append("\n");
+
+        // Node error examples
+        if (!generatorErrorExample.isEmpty()) {
+            sb.append("--- Generator Node Examples (error) ---\n");
+            for (Map.Entry<GeneratorNode, String> entry : generatorErrorExample.entrySet()) {
+                if (entry.getValue() != null) {
+                    sb.append(String.format("  [%s]\n    %s\n", entry.getKey(), entry.getValue()));
+                    String msg = generatorErrorMessage.get(entry.getKey());
+                    if (msg != null) {
+                        sb.append(String.format("    >> %s\n", msg));
                     }
                 }
-                writer.write("\n");
             }
+            sb.append("\n");
+        }
 
-            // Composite features (functions, etc.)
-            if (!allCompositeCount.isEmpty()) {
-                writer.write("--- Composite Features (Functions/Casts/Operators) ---\n");
-                writer.write(String.format("  %-40s  %7s  %7s  %8s  %7s\n", "Feature", "Success", "Count", "Rate", "Status"));
-                writer.write("  " + "-".repeat(75) + "\n");
-                List<String> sortedKeys = new ArrayList<>(allCompositeCount.keySet());
-                sortedKeys.sort(String::compareTo);
-                for (String key : sortedKeys) {
-                    Integer success = allCompositeSuccess.get(key);
-                    Integer count = allCompositeCount.get(key);
-                    if (count == null || count == 0) {
-                        continue;
-                    }
-                    boolean enabled = getCompositeOption(key);
-                    double rate = (double) success / count;
-                    String displayKey = key.length() > 40 ? key.substring(0, 37) + "..." : key;
-                    writer.write(String.format("  %-40s  %7d  %7d  %7.1f%%  %7s\n",
-                            displayKey, success, count, rate * 100, enabled ? "ON" : "OFF"));
+        // Composite features (functions, etc.)
+        if (!compositeCounts.isEmpty()) {
+            sb.append("--- Composite Features (Functions/Casts/Operators) ---\n");
+            sb.append(String.format("  %-40s  %7s  %7s  %8s  %7s\n", "Feature", "Success", "Count", "Rate", "Status"));
+            sb.append("  " + "-".repeat(75) + "\n");
+            List<String> sortedKeys = new ArrayList<>(compositeCounts.keySet());
+            sortedKeys.sort(String::compareTo);
+            for (String key : sortedKeys) {
+                FeatureCount count = compositeCounts.get(key);
+                if (count.getCount() == 0) {
+                    continue;
                 }
-                writer.write("\n");
-
-                writer.write(String.format("  (Full composite examples with SQL: see %s-composite-examples.log)\n",
-                        engineName));
-                writer.write("\n");
+                boolean enabled = getCompositeOption(key);
+                String displayKey = key.length() > 40 ? key.substring(0, 37) + "..." : key;
+                sb.append(String.format("  %-40s  %7d  %7d  %7.1f%%  %7s\n",
+                        displayKey, count.getSuccess(), count.getCount(), count.getRate() * 100,
+                        enabled ? "ON" : "OFF"));
             }
+            sb.append("\n");
 
-            // Fragment features
-            if (!allFragmentCount.isEmpty()) {
-                writer.write("--- Fragment Features ---\n");
-                writer.write(String.format("  %-40s  %7s  %7s  %8s  %7s\n", "Fragment", "Success", "Count", "Rate", "Status"));
-                writer.write("  " + "-".repeat(75) + "\n");
-                for (Map.Entry<GeneralFragmentChoice, Integer> entry : allFragmentCount.entrySet()) {
-                    GeneralFragmentChoice fragment = entry.getKey();
-                    Integer count = entry.getValue();
-                    if (count == null || count == 0) {
-                        continue;
-                    }
-                    Integer success = allFragmentSuccess.getOrDefault(fragment, 0);
-                    boolean enabled = getFragmentOption(fragment);
-                    double rate = (double) success / count;
-                    String name = fragment.getFragmentName();
-                    String displayName = name.length() > 40 ? name.substring(0, 37) + "..." : name;
-                    writer.write(String.format("  %-40s  %7d  %7d  %7.1f%%  %7s\n",
-                            displayName, success, count, rate * 100, enabled ? "ON" : "OFF"));
+            sb.append(String.format("  (Full composite examples with SQL: see %s-composite-examples.log)\n",
+                    engineName));
+            sb.append("\n");
+        }
+
+        // Fragment features
+        if (!fragmentCounts.isEmpty()) {
+            sb.append("--- Fragment Features ---\n");
+            sb.append(String.format("  %-40s  %7s  %7s  %8s  %7s\n", "Fragment", "Success", "Count", "Rate", "Status"));
+            sb.append("  " + "-".repeat(75) + "\n");
+            for (Map.Entry<GeneralFragmentChoice, FeatureCount> entry : fragmentCounts.entrySet()) {
+                GeneralFragmentChoice fragment = entry.getKey();
+                FeatureCount count = entry.getValue();
+                if (count.getCount() == 0) {
+                    continue;
                 }
-                writer.write("\n");
-
-                // Fragment error examples
-                if (!fragmentErrorExample.isEmpty()) {
-                    writer.write("--- Fragment Feature Examples (error) ---\n");
-                    int fragmentErrorCount = 0;
-                    for (Map.Entry<GeneralFragmentChoice, String> entry : fragmentErrorExample.entrySet()) {
-                        if (entry.getValue() != null && fragmentErrorCount < 20) {
-                            writer.write(String.format("  [%s]\n    %s\n", entry.getKey().getFragmentName(), entry.getValue()));
-                            String msg = fragmentErrorMessage.get(entry.getKey());
-                            if (msg != null) {
-                                writer.write(String.format("    >> %s\n", msg));
-                            }
-                            fragmentErrorCount++;
+                boolean enabled = getFragmentOption(fragment);
+                String name = fragment.getFragmentName();
+                String displayName = name.length() > 40 ? name.substring(0, 37) + "..." : name;
+                sb.append(String.format("  %-40s  %7d  %7d  %7.1f%%  %7s\n",
+                        displayName, count.getSuccess(), count.getCount(), count.getRate() * 100,
+                        enabled ? "ON" : "OFF"));
+            }
+            sb.append("\n");
+
+            // Fragment error examples
+            if (!fragmentErrorExample.isEmpty()) {
+                sb.append("--- Fragment Feature Examples (error) ---\n");
+                int fragmentErrorCount = 0;
+                for (Map.Entry<GeneralFragmentChoice, String> entry : fragmentErrorExample.entrySet()) {
+                    if (entry.getValue() != null && fragmentErrorCount < 20) {
+                        sb.append(String.format("  [%s]\n    %s\n", entry.getKey().getFragmentName(),
+                                entry.getValue()));
+                        String msg = fragmentErrorMessage.get(entry.getKey());
+                        if (msg != null) {
+                            sb.append(String.format("    >> %s\n", msg));
                         }
+                        fragmentErrorCount++;
                     }
-                    writer.write("\n");
                 }
+                sb.append("\n");
             }
+        }
 
-            // Assertion history
-            if (!assertionGeneratorHistory.isEmpty()) {
-                writer.write("--- Error/Assertion History ---\n");
-                for (Map.Entry<String, GeneratorInfo> entry : assertionGeneratorHistory.entrySet()) {
-                    writer.write(String.format("  Database: %s\n", entry.getKey()));
-                    GeneratorInfo info = entry.getValue();
-                    writer.write(String.format("    Nodes:      %s\n", info.getGeneratorScore().keySet()));
-                    if (!info.getCompositeGeneratorScore().isEmpty()) {
-                        writer.write(String.format("    Composites: %s\n", info.getCompositeGeneratorScore().keySet()));
-                    }
-                    if (!info.getFragmentScore().isEmpty()) {
-                        writer.write(String.format("    Fragments:  %s\n", info.getFragmentScore().keySet()));
-                    }
+        // Assertion history
+        if (!assertionGeneratorHistory.isEmpty()) {
+            sb.append("--- Error/Assertion History ---\n");
+            for (Map.Entry<String, GeneratorInfo> entry : assertionGeneratorHistory.entrySet()) {
+                sb.append(String.format("  Database: %s\n", entry.getKey()));
+                GeneratorInfo info = entry.getValue();
+                sb.append(String.format("    Nodes:      %s\n", info.getGeneratorScore().keySet()));
+                if (!info.getCompositeGeneratorScore().isEmpty()) {
+                    sb.append(String.format("    Composites: %s\n", info.getCompositeGeneratorScore().keySet()));
+                }
+                if (!info.getFragmentScore().isEmpty()) {
+                    sb.append(String.format("    Fragments:  %s\n", info.getFragmentScore().keySet()));
                 }
-                writer.write("\n");
             }
-
-            writer.write("=".repeat(80) + "\n");
-        } catch (Exception e) {
-            System.err.println("Error writing feature statistics: " + e.getMessage());
+            sb.append("\n");
         }
+
+        sb.append("=".repeat(80) + "\n");
+        return sb.toString();
     }
 
-    public synchronized void dumpCompositeExamples(GeneralGlobalState globalState) {
+    public void dumpCompositeExamples(GeneralGlobalState globalState) {
         String engineName = globalState.getDbmsSpecificOptions().getDatabaseEngineFactory().toString();
-        String filePath = "logs/" + engineName + "-composite-examples.log";
-
-        try (FileWriter writer = new FileWriter(filePath)) {
-            writer.write("=".repeat(80) + "\n");
-            writer.write(String.format("Composite Feature Examples — %s (Iteration #%d)\n", engineName, execDatabaseNum));
-            writer.write("=".repeat(80) + "\n\n");
-
-            // Sort keys for consistent output
-            List<String> sortedKeys = new ArrayList<>(allCompositeCount.keySet());
-            sortedKeys.sort(String::compareTo);
-
-            // Per-feature: stats + success example + error example
-            for (String key : sortedKeys) {
-                Integer success = allCompositeSuccess.get(key);
-                Integer count = allCompositeCount.get(key);
-                if (count == null || count == 0) {
-                    continue;
-                }
-                boolean enabled = getCompositeOption(key);
-                double rate = (double) success / count;
-
-                writer.write(String.format("[%s]  success=%d  count=%d  rate=%.1f%%  status=%s\n",
-                        key, success, count, rate * 100, enabled ? "ON" : "OFF"));
+        GeneralReportWriter.submit(new File("logs/" + engineName + "-composite-examples.log"),
+                () -> renderCompositeExamples(engineName), globalState.getDbmsSpecificOptions().reportInterval);
+    }
 
-                String successSql = compositeExample.get(key);
-                if (successSql != null) {
-                    writer.write("  SUCCESS: " + successSql + "\n");
-                }
+    private String renderCompositeExamples(String engineName) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=".repeat(80) + "\n");
+        sb.append(String.format("Composite Feature Examples — %s (Iteration #%d)\n", engineName,
+                execDatabaseNum.get()));
+        sb.append("=".repeat(80) + "\n\n");
+
+        // Sort keys for consistent output
+        Map<String, FeatureCount> compositeCounts = compositeStatistics.snapshot();
+        List<String> sortedKeys = new ArrayList<>(compositeCounts.keySet());
+        sortedKeys.sort(String::compareTo);
+
+        // Per-feature: stats + success example + error example
+        for (String key : sortedKeys) {
+            FeatureCount count = compositeCounts.get(key);
+            if (count.getCount() == 0) {
+                continue;
+            }
+            boolean enabled = getCompositeOption(key);
 
-                String errorSql = compositeErrorExample.get(key);
-                if (errorSql != null) {
-                    writer.write("  ERROR:   " + errorSql + "\n");
-                    String msg = compositeErrorMessage.get(key);
-                    if (msg != null) {
-                        writer.write("  >> " + msg + "\n");
-                    }
-                }
+            sb.append(String.format("[%s]  success=%d  count=%d  rate=%.1f%%  status=%s\n",
+                    key, count.getSuccess(), count.getCount(), count.getRate() * 100, enabled ? "ON" : "OFF"));
 
-                writer.write("\n");
+            String successSql = compositeExample.get(key);
+            if (successSql != null) {
+                sb.append("  SUCCESS: " + successSql + "\n");
             }
 
-            // Also dump composites that are OFF but have no count data
-            for (Map.Entry<String, Boolean> entry : compositeGeneratorOptions.entrySet()) {
-                if (!entry.getValue() && !allCompositeCount.containsKey(entry.getKey())) {
-                    writer.write(String.format("[%s]  success=-  count=-  rate=-  status=OFF\n\n", entry.getKey()));
+            String errorSql = compositeErrorExample.get(key);
+            if (errorSql != null) {
+                sb.append("  ERROR:   " + errorSql + "\n");
+                String msg = compositeErrorMessage.get(key);
+                if (msg != null) {
+                    sb.append("  >> " + msg + "\n");
                 }
             }
 
-            writer.write("=".repeat(80) + "\n");
-        } catch (Exception e) {
-            System.err.println("Error writing composite examples: " + e.getMessage());
+            sb.append("\n");
         }
+
+        // Also dump composites that are OFF but have no count data
+        for (Map.Entry<String, Boolean> entry : getCompositeOptions().entrySet()) {
+            if (!entry.getValue() && !compositeCounts.containsKey(entry.getKey())) {
+                sb.append(String.format("[%s]  success=-  count=-  rate=-  status=OFF\n\n", entry.getKey()));
+            }
+        }
+
+        sb.append("=".repeat(80) + "\n");
+        return sb.toString();
     }
 
     public boolean getCompositeOption(String option) {
-        // TODO: make it simplifier
-        Boolean value = compositeGeneratorOptions.get(option);
+        return getCompositeOption(GeneralCompositeKeys.getId(option));
+    }
+
+    public boolean getCompositeOption(int compositeId) {
+        Boolean value = compositeGeneratorOptions.get(compositeId);
         return value == null || value;
         // if (compositeGeneratorOptions.containsKey(option)) {
         // return compositeGeneratorOptions.get(option);
@@ -961,10 +1048,25 @@ public class GeneralErrorHandler implements ErrorHandler {
     }
 
     public boolean getCompositeOptionNullAsFalse(String option) {
-        Boolean value = compositeGeneratorOptions.get(option);
+        return getCompositeOptionNullAsFalse(GeneralCompositeKeys.getId(option));
+    }
+
+    public boolean getCompositeOptionNullAsFalse(int compositeId) {
+        Boolean value = compositeGeneratorOptions.get(compositeId);
         return value != null && value;
     }
 
+    private Map<String, Boolean> getCompositeOptions() {
+        Map<String, Boolean> options = new LinkedHashMap<>();
+        for (int id = 0; id < compositeGeneratorOptions.capacity(); id++) {
+            Boolean value = compositeGeneratorOptions.get(id);
+            if (value != null) {
+                options.put(GeneralCompositeKeys.getKey(id), value);
+            }
+        }
+        return options;
+    }
+
     public boolean getFragmentOption(GeneralFragmentChoice option) {
         Boolean value = fragmentOptions.get(option);
         return value == null || value;
@@ -0,0 +1,45 @@
+package sqlancer.general;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns dense int IDs to generator features (composite keys or fragments), so that per-statement scores can be
+ * kept in int arrays. IDs are never reused and are shared by all threads.
+ *
+ * @param <K>
+ *            the feature key
+ */
+public final class GeneralFeatureIndex<K> {
+
+    private final Map<K, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Object[] keys = new Object[64];
+    private int size;
+
+    public int getId(K key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(key);
+            if (id == null) {
+                id = size;
+                if (id == keys.length) {
+                    keys = Arrays.copyOf(keys, id * 2);
+                }
+                keys[id] = key;
+                ids.put(key, id);
+                size++;
+            }
+            return id;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public K getKey(int id) {
+        return (K) keys[id];
+    }
+
+}
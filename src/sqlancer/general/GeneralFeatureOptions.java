@@ -0,0 +1,116 @@
+package sqlancer.general;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Whether each feature, indexed by its ID, is enabled. Lookups read an array without locking; the rare updates after
+ * a database are serialized so that growing the array does not lose a concurrent update.
+ */
+public final class GeneralFeatureOptions {
+
+    private static final int UNSET = 0;
+    private static final int ENABLED = 1;
+    private static final int DISABLED = 2;
+
+    private volatile AtomicIntegerArray values = new AtomicIntegerArray(256);
+
+    /**
+     * Returns whether a feature is enabled, or {@code null} if no option was set for it.
+     *
+     * @param id
+     *            the feature ID
+     *
+     * @return the option of the feature
+     */
+    public Boolean get(int id) {
+        AtomicIntegerArray current = values;
+        if (id >= current.length()) {
+            return null;
+        }
+        switch (current.get(id)) {
+        case ENABLED:
+            return true;
+        case DISABLED:
+            return false;
+        default:
+            return null;
+        }
+    }
+
+    public boolean contains(int id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Returns an upper bound of the IDs that have an option.
+     *
+     * @return the number of IDs to visit when iterating over the options
+     */
+    public int capacity() {
+        return values.length();
+    }
+
+    /**
+     * Sets a feature.
+     *
+     * @param id
+     *            the feature ID
+     * @param value
+     *            whether the feature is enabled
+     *
+     * @return whether the option of the feature changed
+     */
+    public synchronized boolean set(int id, boolean value) {
+        int option = value ? ENABLED : DISABLED;
+        return ensureCapacity(id).getAndSet(id, option) != option;
+    }
+
+    /**
+     * Sets a feature if it was not set before.
+     *
+     * @param id
+     *            the feature ID
+     * @param value
+     *            whether the feature is enabled
+     *
+     * @return whether the feature was set
+     */
+    public synchronized boolean setIfAbsent(int id, boolean value) {
+        return ensureCapacity(id).compareAndSet(id, UNSET, value ? ENABLED : DISABLED);
+    }
+
+    /**
+     * Enables a feature if it succeeded, or disables it if it failed and was not enabled before.
+     *
+     * @param id
+     *            the feature ID
+     * @param success
+     *            whether the feature succeeded at least once
+     *
+     * @return whether the option of the feature changed
+     */
+    public synchronized boolean enableIfSucceeded(int id, boolean success) {
+        AtomicIntegerArray current = ensureCapacity(id);
+        int previous = current.get(id);
+        if (previous == ENABLED) {
+            return false;
+        }
+        int option = success ? ENABLED : DISABLED;
+        current.set(id, option);
+        return previous != option;
+    }
+
+    private AtomicIntegerArray ensureCapacity(int id) {
+        AtomicIntegerArray current = values;
+        if (id >= current.length()) {
+            AtomicIntegerArray grown = new AtomicIntegerArray(Math.max(id + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            values = grown;
+            current = grown;
+        }
+        return current;
+    }
+
+}
@@ -0,0 +1,98 @@
+package sqlancer.general;
+
+import java.util.Arrays;
+
+/**
+ * The number of times each feature was used by one statement, indexed by feature ID. Only the IDs that were used are
+ * visited, so a score stays cheap to iterate and to clear even if the ID space is large.
+ *
+ * A score is confined to the thread that generates the statement.
+ */
+public final class GeneralFeatureScore {
+
+    private int[] counts;
+    private int[] used;
+    private int usedSize;
+
+    public GeneralFeatureScore(int capacity) {
+        this.counts = new int[Math.max(capacity, 1)];
+        this.used = new int[8];
+    }
+
+    public GeneralFeatureScore(GeneralFeatureScore other) {
+        this.counts = Arrays.copyOf(other.counts, other.counts.length);
+        this.used = Arrays.copyOf(other.used, other.used.length);
+        this.usedSize = other.usedSize;
+    }
+
+    public void add(int id) {
+        markUsed(id);
+        counts[id]++;
+    }
+
+    public void set(int id, int value) {
+        markUsed(id);
+        counts[id] = value;
+    }
+
+    public int get(int id) {
+        return id < counts.length ? counts[id] : 0;
+    }
+
+    public boolean contains(int id) {
+        for (int i = 0; i < usedSize; i++) {
+            if (used[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of features that were used.
+     *
+     * @return the number of used features
+     */
+    public int size() {
+        return usedSize;
+    }
+
+    /**
+     * Returns the ID of the i-th used feature, in the order of first use.
+     *
+     * @param i
+     *            an index smaller than {@link #size()}
+     *
+     * @return the feature ID
+     */
+    public int getId(int i) {
+        return used[i];
+    }
+
+    public void clear() {
+        for (int i = 0; i < usedSize; i++) {
+            counts[used[i]] = 0;
+        }
+        usedSize = 0;
+    }
+
+    public void load(GeneralFeatureScore other) {
+        clear();
+        for (int i = 0; i < other.usedSize; i++) {
+            set(other.used[i], other.counts[other.used[i]]);
+        }
+    }
+
+    private void markUsed(int id) {
+        if (id >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+        } else if (counts[id] != 0 || contains(id)) {
+            return;
+        }
+        if (usedSize == used.length) {
+            used = Arrays.copyOf(used, usedSize * 2);
+        }
+        used[usedSize++] = id;
+    }
+
+}
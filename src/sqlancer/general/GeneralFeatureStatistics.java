@@ -0,0 +1,172 @@
+package sqlancer.general;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Success and execution counts of generator features (nodes, composite keys or fragments), aggregated over all
+ * threads.
+ *
+ * Each key has its own pair of striped {@link LongAdder}s, so threads that publish the counts of their databases do
+ * not block each other. The count of a key is increased before its successes and read after them, so a reader never
+ * observes the successes of a publication without its count.
+ *
+ * @param <K>
+ *            the feature key
+ */
+public final class GeneralFeatureStatistics<K> {
+
+    private final Map<K, Counter> counters = new ConcurrentHashMap<>();
+
+    private static final class Counter {
+        private final LongAdder success = new LongAdder();
+        private final LongAdder count = new LongAdder();
+    }
+
+    /**
+     * The success and execution count of a feature at the time of the snapshot.
+     */
+    public static final class FeatureCount {
+        private final long success;
+        private final long count;
+
+        FeatureCount(long success, long count) {
+            this.success = success;
+            this.count = count;
+        }
+
+        public long getSuccess() {
+            return success;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getRate() {
+            return count == 0 ? 0 : (double) success / count;
+        }
+    }
+
+    public void add(K key, long success, long count) {
+        Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+        counter.count.add(count);
+        counter.success.add(success);
+    }
+
+    /**
+     * Publishes the counts of a batch and clears it.
+     *
+     * @param batch
+     *            the counts of one database
+     * @param keys
+     *            maps the feature IDs of the batch to their keys
+     */
+    public void addAll(Batch batch, IntFunction<? extends K> keys) {
+        for (int i = 0; i < batch.usedSize; i++) {
+            int id = batch.used[i];
+            add(keys.apply(id), batch.success[id], batch.count[id]);
+            batch.success[id] = 0;
+            batch.count[id] = 0;
+        }
+        batch.usedSize = 0;
+    }
+
+    /**
+     * Counts of the statements of one database, indexed by feature ID, accumulated while they are executed and
+     * published with {@link GeneralFeatureStatistics#addAll(Batch, IntFunction)}. A batch is confined to the thread
+     * that owns the database.
+     */
+    public static final class Batch {
+        private long[] success = new long[64];
+        private long[] count = new long[64];
+        private int[] used = new int[64];
+        private int usedSize;
+
+        /**
+         * Adds one executed statement. Each feature of the statement is counted once, and on success credited with
+         * the number of times it was used.
+         *
+         * @param score
+         *            the number of times each feature was used by the statement
+         * @param status
+         *            whether the statement executed successfully
+         */
+        public void add(GeneralFeatureScore score, boolean status) {
+            for (int i = 0; i < score.size(); i++) {
+                int id = score.getId(i);
+                if (id >= count.length) {
+                    int length = Math.max(id + 1, count.length * 2);
+                    success = Arrays.copyOf(success, length);
+                    count = Arrays.copyOf(count, length);
+                }
+                if (count[id] == 0) {
+                    if (usedSize == used.length) {
+                        used = Arrays.copyOf(used, usedSize * 2);
+                    }
+                    used[usedSize++] = id;
+                }
+                count[id]++;
+                if (status) {
+                    success[id] += score.get(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the counts of a feature, or {@code null} if it was never executed.
+     *
+     * @param key
+     *            the feature
+     *
+     * @return the counts of the feature
+     */
+    public FeatureCount get(K key) {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            return null;
+        }
+        long success = counter.success.sum();
+        return new FeatureCount(success, counter.count.sum());
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    public Map<K, FeatureCount> snapshot() {
+        Map<K, FeatureCount> snapshot = new HashMap<>();
+        for (K key : counters.keySet()) {
+            snapshot.put(key, get(key));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Computes the success rate of each feature that has been executed often enough to judge it.
+     *
+     * @param minCount
+     *            the number of executions after which the rate of a feature is considered
+     * @param quickStart
+     *            whether features that succeeded at least once are considered regardless of their count
+     *
+     * @return an immutable map from feature to success rate
+     */
+    public Map<K, Double> getAverage(int minCount, boolean quickStart) {
+        Map<K, Double> average = new HashMap<>();
+        for (Map.Entry<K, FeatureCount> entry : snapshot().entrySet()) {
+            FeatureCount featureCount = entry.getValue();
+            if (featureCount.getCount() > minCount || quickStart && featureCount.getSuccess() > 0) {
+                average.put(entry.getKey(), featureCount.getRate());
+            }
+        }
+        return Collections.unmodifiableMap(average);
+    }
+
+}
@@ -0,0 +1,189 @@
+package sqlancer.general;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The feedback state of a campaign, persisted so that a later campaign against the same engine can start from what
+ * was learned instead of rediscovering which generator nodes, composites and fragments the engine rejects.
+ *
+ * A snapshot is a binary file: a header with the format version, the engine and the engine version, followed by one
+ * section per kind of state. Strings are stored as their length and UTF-8 bytes, and the file is read through a
+ * memory-mapped buffer.
+ */
+public final class GeneralFeedbackSnapshot {
+
+    private static final int MAGIC = 0x53514c46; // "SQLF"
+    private static final int FORMAT_VERSION = 1;
+
+    private final String engine;
+    private final String engineVersion;
+    // success and count of each generator node and composite
+    private final Map<String, long[]> nodeCounts = new LinkedHashMap<>();
+    private final Map<String, long[]> compositeCounts = new LinkedHashMap<>();
+    private final Map<String, Boolean> nodeOptions = new LinkedHashMap<>();
+    private final Map<String, Boolean> compositeOptions = new LinkedHashMap<>();
+    private final List<String> disabledFragments = new ArrayList<>();
+    private final Map<String, Integer> depths = new LinkedHashMap<>();
+
+    public GeneralFeedbackSnapshot(String engine, String engineVersion) {
+        this.engine = engine;
+        this.engineVersion = engineVersion;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public String getEngineVersion() {
+        return engineVersion;
+    }
+
+    public Map<String, long[]> getNodeCounts() {
+        return nodeCounts;
+    }
+
+    public Map<String, long[]> getCompositeCounts() {
+        return compositeCounts;
+    }
+
+    public Map<String, Boolean> getNodeOptions() {
+        return nodeOptions;
+    }
+
+    public Map<String, Boolean> getCompositeOptions() {
+        return compositeOptions;
+    }
+
+    public List<String> getDisabledFragments() {
+        return disabledFragments;
+    }
+
+    public Map<String, Integer> getDepths() {
+        return depths;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, engine);
+            writeString(out, engineVersion);
+            writeCounts(out, nodeCounts);
+            writeCounts(out, compositeCounts);
+            writeOptions(out, nodeOptions);
+            writeOptions(out, compositeOptions);
+            out.writeInt(disabledFragments.size());
+            for (String fragment : disabledFragments) {
+                writeString(out, fragment);
+            }
+            out.writeInt(depths.size());
+            for (Map.Entry<String, Integer> entry : depths.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a snapshot.
+     *
+     * @param file
+     *            the snapshot file
+     *
+     * @return the snapshot
+     *
+     * @throws IOException
+     *             if the file cannot be read or is not a snapshot of this format version
+     */
+    public static GeneralFeedbackSnapshot load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("not a feedback snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("unsupported feedback snapshot version " + version + ": " + file);
+            }
+            GeneralFeedbackSnapshot snapshot = new GeneralFeedbackSnapshot(readString(buffer), readString(buffer));
+            readCounts(buffer, snapshot.nodeCounts);
+            readCounts(buffer, snapshot.compositeCounts);
+            readOptions(buffer, snapshot.nodeOptions);
+            readOptions(buffer, snapshot.compositeOptions);
+            int nrFragments = buffer.getInt();
+            for (int i = 0; i < nrFragments; i++) {
+                snapshot.disabledFragments.add(readString(buffer));
+            }
+            int nrDepths = buffer.getInt();
+            for (int i = 0; i < nrDepths; i++) {
+                snapshot.depths.put(readString(buffer), buffer.getInt());
+            }
+            return snapshot;
+        } catch (RuntimeException e) {
+            // a truncated or corrupted file
+            throw new IOException("invalid feedback snapshot: " + file, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeCounts(DataOutputStream out, Map<String, long[]> counts) throws IOException {
+        out.writeInt(counts.size());
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeLong(entry.getValue()[0]);
+            out.writeLong(entry.getValue()[1]);
+        }
+    }
+
+    private static void readCounts(ByteBuffer buffer, Map<String, long[]> counts) {
+        int size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            String key = readString(buffer);
+            counts.put(key, new long[] { buffer.getLong(), buffer.getLong() });
+        }
+    }
+
+    private static void writeOptions(DataOutputStream out, Map<String, Boolean> options) throws IOException {
+        out.writeInt(options.size());
+        for (Map.Entry<String, Boolean> entry : options.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeBoolean(entry.getValue());
+        }
+    }
+
+    private static void readOptions(ByteBuffer buffer, Map<String, Boolean> options) {
+        int size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            String key = readString(buffer);
+            options.put(key, buffer.get() != 0);
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package sqlancer.general;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import sqlancer.Randomly;
+
+/**
+ * Picks one of the enabled options of a generator with a probability proportional to its weight.
+ *
+ * The enabled options are sampled with Walker's alias method, so a selection is O(1) and does not allocate. The alias
+ * table is rebuilt lazily whenever the options of the {@link GeneralErrorHandler} change.
+ *
+ * @param <T>
+ *            the option
+ */
+public final class GeneralOptionSampler<T> {
+
+    private final Supplier<? extends Collection<T>> candidates;
+    private final ToIntFunction<T> weight;
+    private final BiPredicate<GeneralErrorHandler, T> enabled;
+    private volatile AliasTable<T> table;
+
+    private static final class AliasTable<T> {
+        private final int version;
+        private final List<T> items;
+        private final double[] probability;
+        private final int[] alias;
+
+        AliasTable(int version, List<T> items, double[] probability, int[] alias) {
+            this.version = version;
+            this.items = items;
+            this.probability = probability;
+            this.alias = alias;
+        }
+    }
+
+    /**
+     * Creates a sampler.
+     *
+     * @param candidates
+     *            all options, read again whenever the table is rebuilt
+     * @param weight
+     *            the relative weight of an option
+     * @param enabled
+     *            whether an option is currently enabled
+     */
+    public GeneralOptionSampler(Supplier<? extends Collection<T>> candidates, ToIntFunction<T> weight,
+            BiPredicate<GeneralErrorHandler, T> enabled) {
+        this.candidates = candidates;
+        this.weight = weight;
+        this.enabled = enabled;
+    }
+
+    public GeneralOptionSampler(Supplier<? extends Collection<T>> candidates,
+            BiPredicate<GeneralErrorHandler, T> enabled) {
+        this(candidates, t -> 1, enabled);
+    }
+
+    /**
+     * Returns a random enabled option.
+     *
+     * @param handler
+     *            the handler that holds the options
+     *
+     * @return the option, or {@code null} if no option is enabled
+     */
+    public T next(GeneralErrorHandler handler) {
+        AliasTable<T> current = getTable(handler);
+        int n = current.items.size();
+        if (n == 0) {
+            return null;
+        }
+        double u = Randomly.getUncachedDouble() * n;
+        int column = Math.min((int) u, n - 1);
+        if (u - column >= current.probability[column]) {
+            column = current.alias[column];
+        }
+        return current.items.get(column);
+    }
+
+    private AliasTable<T> getTable(GeneralErrorHandler handler) {
+        int version = GeneralErrorHandler.getOptionsVersion();
+        AliasTable<T> current = table;
+        if (current == null || current.version != version) {
+            current = build(handler, version);
+            table = current;
+        }
+        return current;
+    }
+
+    private AliasTable<T> build(GeneralErrorHandler handler, int version) {
+        List<T> items = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        long total = 0;
+        for (T candidate : candidates.get()) {
+            int w = weight.applyAsInt(candidate);
+            if (w > 0 && enabled.test(handler, candidate)) {
+                items.add(candidate);
+                weights.add(w);
+                total += w;
+            }
+        }
+        int n = items.size();
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int nrSmall = 0;
+        int nrLarge = 0;
+        double[] scaled = new double[n];
+        for (int i = 0; i < n; i++) {
+            scaled[i] = (double) weights.get(i) * n / total;
+            if (scaled[i] < 1) {
+                small[nrSmall++] = i;
+            } else {
+                large[nrLarge++] = i;
+            }
+        }
+        while (nrSmall > 0 && nrLarge > 0) {
+            int less = small[--nrSmall];
+            int more = large[--nrLarge];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[nrSmall++] = more;
+            } else {
+                large[nrLarge++] = more;
+            }
+        }
+        // the remaining columns are full, up to rounding errors
+        while (nrLarge > 0) {
+            probability[large[--nrLarge]] = 1;
+        }
+        while (nrSmall > 0) {
+            probability[small[--nrSmall]] = 1;
+        }
+        return new AliasTable<>(version, items, probability, alias);
+    }
+
+}
@@ -1,16 +1,19 @@
 package sqlancer.general;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 
+import sqlancer.ConnectionLimit;
 import sqlancer.DBMSSpecificOptions;
 import sqlancer.DatabaseEngineFactory;
 import sqlancer.OracleFactory;
@@ -18,8 +21,11 @@ import sqlancer.common.oracle.CompositeTestOracle;
 import sqlancer.common.oracle.TestOracle;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
 import sqlancer.general.GeneralSchema.GeneralTable;
+import sqlancer.general.oracle.GeneralCERTOracle;
+import sqlancer.general.oracle.GeneralDifferentialOracle;
 import sqlancer.general.oracle.GeneralFuzzingOracle;
 import sqlancer.general.oracle.GeneralNoRECOracle;
+import sqlancer.general.oracle.GeneralPerformanceOracle;
 import sqlancer.general.oracle.GeneralQueryPartitioningWhere;
 
 @Parameters(commandDescription = "General")
@@ -73,6 +79,42 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
     @Parameter(names = "--use-retrieval-augmentation", description = "Enable The retrieval augmentation", arity = 1)
     public boolean useRetrievalAugmentation = true;
 
+    @Parameter(names = "--reuse-connections", description = "Reuse the connection of a thread across the databases it generates, instead of connecting for each database", arity = 1)
+    public boolean reuseConnections = true;
+
+    @Parameter(names = "--report-interval", description = "The interval in milliseconds at which the statistics and report files are written in the background (0 to write them synchronously)", arity = 1)
+    public long reportInterval = 1000;
+
+    @Parameter(names = "--feedback-snapshot", description = "A file to load the feedback state of a previous campaign against the same engine version from, and to save the feedback state to", arity = 1)
+    public String feedbackSnapshot = "";
+
+    @Parameter(names = "--server-side-aggregates", description = "Let the DBMS compute counts for the NoREC oracle and hash checksums for the TLP oracle instead of transferring the rows, which are only transferred on a mismatch; TLP transfers the rows on engines without a hash function", arity = 1)
+    public boolean serverSideAggregates;
+
+    @Parameter(names = "--oracle-read-connections", description = "The number of additional connections of each thread on which the oracles run the queries of a check concurrently; the queries are run on the main connection again if their results differ (0 to only use the main connection)", arity = 1)
+    public int oracleReadConnections;
+
+    @Parameter(names = "--oracle-read-timeout", description = "The number of seconds after which the queries on the additional connections of --oracle-read-connections are cancelled, and the check is run on the main connection instead", arity = 1)
+    public int oracleReadTimeout = 30; // NOPMD
+
+    @Parameter(names = "--oracle-workers", description = "The number of additional oracle workers that check each generated database concurrently with the main connection, each on its own connection and with its own feedback (0 to run all checks on the main connection)", arity = 1)
+    public int oracleWorkers;
+
+    @Parameter(names = "--performance-slowdown-factor", description = "The factor by which an equivalent query needs to be consistently slower for the PERFORMANCE oracle to report it", arity = 1)
+    public double performanceSlowdownFactor = 10;
+
+    @Parameter(names = "--performance-runs", description = "The number of measured runs of each query of the PERFORMANCE oracle", arity = 1)
+    public int performanceRuns = 5;
+
+    @Parameter(names = "--performance-warmup-runs", description = "The number of runs of each query of the PERFORMANCE oracle before the measured runs", arity = 1)
+    public int performanceWarmupRuns = 1;
+
+    @Parameter(names = "--performance-min-latency", description = "The median latency in milliseconds below which the PERFORMANCE oracle does not report a slowdown, as it could be noise", arity = 1)
+    public long performanceMinLatency = 10;
+
+    @Parameter(names = "--differential-engines", description = "Other embedded engines, i.e., SQLITE, DUCKDB or H2, to which the statements of each database are replayed, so that the DIFFERENTIAL oracle compares the results of queries across the engines")
+    public List<GeneralDatabaseEngineFactory> differentialEngines = new ArrayList<>();
+
     @Parameter(names = "--enable-direct-validation", description = "Enable direct validation", arity = 1)
     public boolean enableDirectValidation;
 
@@ -104,6 +146,24 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
             public TestOracle<GeneralGlobalState> create(GeneralGlobalState globalState) throws SQLException {
                 return new GeneralFuzzingOracle(globalState);
             }
+        },
+        CERT {
+            @Override
+            public TestOracle<GeneralGlobalState> create(GeneralGlobalState globalState) throws SQLException {
+                return new GeneralCERTOracle(globalState);
+            }
+        },
+        PERFORMANCE {
+            @Override
+            public TestOracle<GeneralGlobalState> create(GeneralGlobalState globalState) throws SQLException {
+                return new GeneralPerformanceOracle(globalState);
+            }
+        },
+        DIFFERENTIAL {
+            @Override
+            public TestOracle<GeneralGlobalState> create(GeneralGlobalState globalState) throws SQLException {
+                return new GeneralDifferentialOracle(globalState);
+            }
         };
 
     };
@@ -132,27 +192,21 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = openConnection(globalState);
                 setIsNewSchema(false);
-                for (int i = 0; i < 100; i++) {
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP TABLE %s_t%d", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                    globalState.getState().logStatement(String.format("DROP TABLE %s_t%d", databaseName, i));
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP VIEW %s_v%d", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                    globalState.getState().logStatement(String.format("DROP VIEW %s_v%d", databaseName, i));
-                }
+                dropExistingObjects(globalState, conn, databaseName, "", true);
                 try (Statement s = conn.createStatement()) {
-                    s.execute("set query_mode to local;");
-                    globalState.getState().logStatement("set query_mode to local;");
+                    s.execute(getSessionSetUp());
+                    globalState.getState().logStatement(getSessionSetUp());
                 }
                 return conn;
             }
 
+            @Override
+            protected String getSessionSetUp() {
+                return "set query_mode to local;";
+            }
+
             @Override
             public void syncData(GeneralGlobalState globalState) throws SQLException {
                 try (Statement s = globalState.getConnection().createStatement()) {
@@ -178,38 +232,44 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                return DriverManager.getConnection(getJDBCString(globalState));
+                return ConnectionLimit.getConnection(getJDBCString(globalState));
+            }
+
+            @Override
+            public Connection openReadConnection(GeneralGlobalState globalState) {
+                return null;
+            }
+
+            @Override
+            public Connection openDifferentialConnection(GeneralGlobalState globalState) throws SQLException {
+                return ConnectionLimit.getAdditionalConnection(getJDBCString(globalState));
             }
         },
         POSTGRESQL {
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = openConnection(globalState);
                 setIsNewSchema(false);
-                for (int i = 0; i < 100; i++) {
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP TABLE %s_t%d", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP VIEW %s_v%d", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                }
+                dropExistingObjects(globalState, conn, databaseName, "", false);
                 try (Statement s = conn.createStatement()) {
-                    s.execute("set statement_timeout to 5000;");
-                    globalState.getState().logStatement("set statement_timeout to 5000;");
+                    s.execute(getSessionSetUp());
+                    globalState.getState().logStatement(getSessionSetUp());
                 }
                 return conn;
             }
+
+            @Override
+            protected String getSessionSetUp() {
+                return "set statement_timeout to 5000;";
+            }
         },
         MATERIALIZE,
         COCKROACHDB {
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = openConnection(globalState);
                 Statement s = conn.createStatement();
                 s.execute("DROP DATABASE IF EXISTS " + databaseName);
                 globalState.getState().logStatement("DROP DATABASE IF EXISTS " + databaseName);
@@ -240,31 +300,37 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                return DriverManager.getConnection(getJDBCString(globalState));
+                return ConnectionLimit.getConnection(getJDBCString(globalState));
+            }
+
+            @Override
+            public Connection openReadConnection(GeneralGlobalState globalState) {
+                return null;
+            }
+
+            @Override
+            public Connection openDifferentialConnection(GeneralGlobalState globalState) throws SQLException {
+                return ConnectionLimit.getAdditionalConnection(getJDBCString(globalState));
             }
         },
         UMBRA {
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = openConnection(globalState);
                 setIsNewSchema(false);
-                for (int i = 0; i < 100; i++) {
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP TABLE %s_t%d", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP VIEW %s_v%d", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                }
+                dropExistingObjects(globalState, conn, databaseName, "", false);
                 try (Statement s = conn.createStatement()) {
-                    s.execute("set debug.storage = 'P';");
-                    globalState.getState().logStatement("set debug.storage = 'P';");
+                    s.execute(getSessionSetUp());
+                    globalState.getState().logStatement(getSessionSetUp());
                 }
                 return conn;
             }
+
+            @Override
+            protected String getSessionSetUp() {
+                return "set debug.storage = 'P';";
+            }
         },
         MARIADB,
         IMMUDB,
@@ -275,18 +341,9 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = openConnection(globalState);
                 setIsNewSchema(false);
-                for (int i = 0; i < 100; i++) {
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP TABLE %s_t%d CASCADE", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP VIEW %s_v%d CASCADE", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                }
+                dropExistingObjects(globalState, conn, databaseName, " CASCADE", false);
                 return conn;
             }
         },
@@ -301,10 +358,27 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = ConnectionLimit.getConnection(getJDBCString(globalState));
                 conn.createStatement().execute("DROP ALL OBJECTS DELETE FILES");
                 conn.close();
-                conn = DriverManager.getConnection(getJDBCString(globalState));
+                conn = ConnectionLimit.getConnection(getJDBCString(globalState));
+                return conn;
+            }
+
+            @Override
+            public Connection openReadConnection(GeneralGlobalState globalState) {
+                return null;
+            }
+
+            @Override
+            public Connection openDifferentialConnection(GeneralGlobalState globalState) throws SQLException {
+                Connection conn = ConnectionLimit.getAdditionalConnection(getJDBCString(globalState));
+                try (Statement s = conn.createStatement()) {
+                    s.execute("DROP ALL OBJECTS DELETE FILES");
+                } catch (SQLException e) {
+                    conn.close();
+                    throw e;
+                }
                 return conn;
             }
         },
@@ -312,19 +386,9 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = openConnection(globalState);
                 setIsNewSchema(false);
-                String dbTableDelim = globalState.getDbmsSpecificOptions().dbTableDelim;
-                for (int i = 0; i < 100; i++) {
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP TABLE %s%st%d", databaseName, dbTableDelim, i));
-                    } catch (SQLException e1) {
-                    }
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP VIEW %s%sv%d", databaseName, dbTableDelim, i));
-                    } catch (SQLException e1) {
-                    }
-                }
+                dropExistingObjects(globalState, conn, databaseName, "", false);
                 return conn;
             }
         },
@@ -332,7 +396,7 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = openConnection(globalState);
                 setIsNewSchema(false);
                 // since vitess create database requires a lot of time
                 try (Statement s = conn.createStatement()) {
@@ -343,24 +407,22 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
                 } catch (Exception e) {
                     // TODO: handle exception
                 }
-                for (int i = 0; i < 100; i++) {
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP TABLE %s_t%d CASCADE", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP VIEW %s_v%d CASCADE", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                }
+                dropExistingObjects(globalState, conn, databaseName, " CASCADE", false);
                 return conn;
             }
+
+            @Override
+            public void useDatabase(GeneralGlobalState globalState, Connection conn) throws SQLException {
+                try (Statement s = conn.createStatement()) {
+                    s.execute("USE " + globalState.getDatabaseName());
+                }
+            }
         },
         PRESTO {
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = openConnection(globalState);
                 for (int i = 0; i < 100; i++) {
                     try (Statement s = conn.createStatement()) {
                         s.execute(String.format("DROP TABLE IF EXISTS MEMORY.%s.t%d", databaseName, i));
@@ -385,33 +447,40 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
                 }
                 return conn;
             }
+
+            @Override
+            public void useDatabase(GeneralGlobalState globalState, Connection conn) throws SQLException {
+                if (isNewSchema()) {
+                    try (Statement s = conn.createStatement()) {
+                        s.execute("USE MEMORY." + globalState.getDatabaseName());
+                    }
+                }
+            }
         },
         ORACLE,
         CEDARDB {
             @Override
             public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                     throws SQLException {
-                Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+                Connection conn = openConnection(globalState);
                 setIsNewSchema(false);
-                for (int i = 0; i < 100; i++) {
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP TABLE %s_t%d CASCADE", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP VIEW %s_v%d CASCADE", databaseName, i));
-                    } catch (SQLException e1) {
-                    }
-                }
+                dropExistingObjects(globalState, conn, databaseName, " CASCADE", false);
                 try (Statement s = conn.createStatement()) {
-                    s.execute("SET implicit_cross_products = ON;");
-                    globalState.getState().logStatement("SET implicit_cross_products = ON;");
+                    s.execute(getSessionSetUp());
+                    globalState.getState().logStatement(getSessionSetUp());
                 }
                 return conn;
             }
+
+            @Override
+            protected String getSessionSetUp() {
+                return "SET implicit_cross_products = ON;";
+            }
         },
         OCEANBASE;
 
+        private static final int MAX_BLIND_DROP_OBJECTS = 100;
+
         private boolean isNewSchema = true;
 
         /**
@@ -436,6 +505,176 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
             this.isNewSchema = isNewSchema;
         }
 
+        /**
+         * Opens the connection used for a new database. The connection of the current thread is reused if
+         * --reuse-connections is enabled, so only engines that reset the session state in
+         * {@link #cleanOrSetUpDatabase} should use this method.
+         */
+        protected Connection openConnection(GeneralGlobalState globalState) throws SQLException {
+            return GeneralConnectionCache.getConnection(globalState, getJDBCString(globalState));
+        }
+
+        /**
+         * The statement that sets up a session of the engine, or null if there is none. It is executed on the
+         * connections of {@link #openReadConnection} as well.
+         */
+        protected String getSessionSetUp() {
+            return null;
+        }
+
+        /**
+         * Opens an additional connection to the database of a global state, on which the oracles run read-only queries
+         * concurrently with the main connection. Engines whose database cannot be shared across connections return
+         * null.
+         */
+        public Connection openReadConnection(GeneralGlobalState globalState) throws SQLException {
+            Connection conn = ConnectionLimit.getAdditionalConnection(getJDBCString(globalState));
+            try {
+                if (getSessionSetUp() != null) {
+                    try (Statement s = conn.createStatement()) {
+                        s.execute(getSessionSetUp());
+                    }
+                }
+                useDatabase(globalState, conn);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
+            return conn;
+        }
+
+        /**
+         * Sets up the database of a global state on this engine as another engine of the differential mode, and opens
+         * the connection to it. Unlike {@link #cleanOrSetUpDatabase}, neither the connection cache of the thread nor
+         * the log of the state is used, as both belong to the main engine. Only the embedded engines, whose database
+         * is set up without either, support this; the others return null.
+         */
+        public Connection openDifferentialConnection(GeneralGlobalState globalState) throws SQLException {
+            return null;
+        }
+
+        /**
+         * An aggregate that sums a hash of the values of an expression, so that two multisets of values that differ
+         * most likely have different checksums. The sums are compared modulo 2^64, as the sum of the hashes may exceed
+         * a long. Engines without a hash function return null.
+         */
+        public String getChecksumAggregate(String expression) {
+            switch (this) {
+            case DUCKDB:
+                return "SUM(HASH(" + expression + "))";
+            case POSTGRESQL:
+                return "SUM(CAST(HASHTEXT(CAST(" + expression + " AS TEXT)) AS BIGINT))";
+            case COCKROACHDB:
+                return "SUM(FNV64A(CAST(" + expression + " AS STRING)))";
+            case MYSQL:
+            case MARIADB:
+            case PERCONA:
+            case TIDB:
+                return "SUM(CRC32(" + expression + "))";
+            case CLICKHOUSE:
+                return "sum(cityHash64(" + expression + "))";
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * Switches a connection of {@link #openReadConnection} to the database of a global state.
+         */
+        public void useDatabase(GeneralGlobalState globalState, Connection conn) throws SQLException {
+            if (isNewSchema()) {
+                try (Statement s = conn.createStatement()) {
+                    s.execute("USE " + globalState.getDatabaseName());
+                }
+            }
+        }
+
+        /**
+         * Drops the tables and views of a previous run on the same database name. The objects that exist are looked up
+         * in the catalog with a single {@link DatabaseMetaData#getTables} call and dropped in one batch, views first.
+         * If the driver cannot list its tables, we fall back to blindly dropping the first
+         * {@value #MAX_BLIND_DROP_OBJECTS} possible table and view names.
+         */
+        protected void dropExistingObjects(GeneralGlobalState globalState, Connection conn, String databaseName,
+                String dropSuffix, boolean logStatements) {
+            String prefix = databaseName + globalState.getDbmsSpecificOptions().dbTableDelim;
+            List<String> dropStatements = new ArrayList<>();
+            try {
+                List<String> tables = new ArrayList<>();
+                Pattern objectName = Pattern.compile(Pattern.quote(prefix) + "[tv][0-9]+", Pattern.CASE_INSENSITIVE);
+                DatabaseMetaData metaData = conn.getMetaData();
+                // only the objects of the database are listed, and the pattern filters them exactly
+                String tableNamePattern = getSearchPattern(metaData, prefix) + "%";
+                try (ResultSet rs = metaData.getTables(conn.getCatalog(), null, tableNamePattern,
+                        new String[] { "TABLE", "VIEW" })) {
+                    while (rs.next()) {
+                        String name = rs.getString("TABLE_NAME");
+                        if (name == null || !objectName.matcher(name).matches()) {
+                            continue;
+                        }
+                        if ("VIEW".equalsIgnoreCase(rs.getString("TABLE_TYPE"))) {
+                            dropStatements.add(String.format("DROP VIEW %s%s", name, dropSuffix));
+                        } else {
+                            tables.add(String.format("DROP TABLE %s%s", name, dropSuffix));
+                        }
+                    }
+                }
+                dropStatements.addAll(tables);
+            } catch (SQLException | UnsupportedOperationException e) {
+                dropStatements.clear();
+                for (int i = 0; i < MAX_BLIND_DROP_OBJECTS; i++) {
+                    dropStatements.add(String.format("DROP TABLE %st%d%s", prefix, i, dropSuffix));
+                    dropStatements.add(String.format("DROP VIEW %sv%d%s", prefix, i, dropSuffix));
+                }
+            }
+            if (dropStatements.isEmpty()) {
+                return;
+            }
+            try (Statement s = conn.createStatement()) {
+                for (String dropStatement : dropStatements) {
+                    s.addBatch(dropStatement);
+                }
+                s.executeBatch();
+            } catch (SQLException e) {
+                // some drivers abort the batch at the first failing statement, so retry them one by one
+                for (String dropStatement : dropStatements) {
+                    try (Statement s = conn.createStatement()) {
+                        s.execute(dropStatement);
+                    } catch (SQLException e1) {
+                    }
+                }
+            }
+            if (logStatements) {
+                for (String dropStatement : dropStatements) {
+                    globalState.getState().logStatement(dropStatement);
+                }
+            }
+        }
+
+        // escapes the wildcards of a name for a search pattern of the metadata, in the case in which the engine stores
+        // unquoted names; without an escape, a wildcard still matches itself, among others
+        private static String getSearchPattern(DatabaseMetaData metaData, String name) throws SQLException {
+            String pattern = name;
+            if (metaData.storesUpperCaseIdentifiers()) {
+                pattern = pattern.toUpperCase();
+            } else if (metaData.storesLowerCaseIdentifiers()) {
+                pattern = pattern.toLowerCase();
+            }
+            String escape = metaData.getSearchStringEscape();
+            if (escape == null || escape.isEmpty()) {
+                return pattern;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '_' || c == '%' || escape.indexOf(c) != -1) {
+                    sb.append(escape);
+                }
+                sb.append(c);
+            }
+            return sb.toString();
+        }
+
         public String getDropTableStatement(String tableName) {
             return String.format("DROP TABLE %s", tableName);
         }
@@ -443,7 +682,7 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
         @Override
         public Connection cleanOrSetUpDatabase(GeneralGlobalState globalState, String databaseName)
                 throws SQLException {
-            Connection conn = DriverManager.getConnection(getJDBCString(globalState));
+            Connection conn = openConnection(globalState);
             try (Statement s = conn.createStatement()) {
                 s.execute("DROP DATABASE IF EXISTS " + databaseName);
                 globalState.getState().logStatement("DROP DATABASE IF EXISTS " + databaseName);
@@ -454,17 +693,7 @@ public class GeneralOptions implements DBMSSpecificOptions<GeneralOptions.Genera
                 isNewSchema = true;
             } catch (SQLException e) {
                 isNewSchema = false;
-                String dbTableDelim = globalState.getDbmsSpecificOptions().dbTableDelim;
-                for (int i = 0; i < 100; i++) {
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP TABLE %s%st%d", databaseName, dbTableDelim, i));
-                    } catch (SQLException e1) {
-                    }
-                    try (Statement s = conn.createStatement()) {
-                        s.execute(String.format("DROP VIEW %s%sv%d", databaseName, dbTableDelim, i));
-                    } catch (SQLException e1) {
-                    }
-                }
+                dropExistingObjects(globalState, conn, databaseName, "", false);
             }
             return conn;
         }
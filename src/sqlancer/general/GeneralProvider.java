@@ -5,8 +5,8 @@ import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,6 +17,7 @@ import java.util.Map;
 import com.google.auto.service.AutoService;
 
 import sqlancer.AbstractAction;
+import sqlancer.ConnectionLimit;
 import sqlancer.DatabaseEngineFactory;
 import sqlancer.DatabaseProvider;
 import sqlancer.ExecutionTimer;
@@ -34,6 +35,7 @@ import sqlancer.common.query.SQLQueryProvider;
 import sqlancer.common.query.SQLancerResultSet;
 import sqlancer.general.GeneralErrorHandler.GeneratorNode;
 import sqlancer.general.GeneralOptions.GeneralDatabaseEngineFactory;
+import sqlancer.general.GeneralOptions.GeneralOracleFactory;
 import sqlancer.general.GeneralSchema.GeneralTable;
 import sqlancer.general.ast.GeneralBinaryOperator;
 import sqlancer.general.ast.GeneralFunction;
@@ -134,6 +136,7 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
         private final GeneralLearningManager manager = new GeneralLearningManager();
         private GeneralTable updateTable;
         private boolean creatingDatabase; // is currently creating database
+        private GeneralDifferentialEngines differentialEngines;
 
         private final Map<String, String> testObjectMap = new HashMap<>();
 
@@ -157,6 +160,10 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
             }
         }
 
+        public boolean hasTestObjects() {
+            return !testObjectMap.isEmpty();
+        }
+
         public void setTestObject(String key, String value) {
             testObjectMap.put(key, value);
         }
@@ -189,6 +196,14 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
             return updateTable;
         }
 
+        public GeneralDifferentialEngines getDifferentialEngines() {
+            return differentialEngines;
+        }
+
+        public void setDifferentialEngines(GeneralDifferentialEngines differentialEngines) {
+            this.differentialEngines = differentialEngines;
+        }
+
         public boolean getCreatingDatabase() {
             return creatingDatabase;
         }
@@ -242,18 +257,29 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
         @Override
         public boolean executeStatement(Query<SQLConnection> q, String... fills) throws Exception {
             boolean success = false;
+            // the other engines of the differential mode execute the statement meanwhile
+            GeneralDifferentialEngines.Replay replay = differentialEngines == null ? null
+                    : differentialEngines.replay(q.getQueryString(), fills);
             try {
                 success = super.executeStatement(q, fills);
             } catch (Exception e) {
+                if (replay != null) {
+                    replay.await(false);
+                }
                 handler.appendScoreToTable(false, false, q.getUnterminatedQueryString(), e.getMessage());
                 getLogger().writeCurrent(" -- " + e.getMessage());
                 throw e;
             }
+            // a feature only counts as supported if every engine accepts it
+            String replayError = replay == null ? null : replay.await(success);
             if (!success) {
                 // The error was an expected error caught inside SQLQueryAdapter.execute().
                 String errorMsg = (q instanceof SQLQueryAdapter)
                         ? ((SQLQueryAdapter) q).getLastErrorMessage() : null;
                 handler.appendScoreToTable(false, false, q.getUnterminatedQueryString(), errorMsg);
+            } else if (replayError != null) {
+                handler.appendScoreToTable(false, false, q.getUnterminatedQueryString(), replayError);
+                getLogger().writeCurrent(" -- " + replayError);
             } else {
                 handler.appendScoreToTable(true, false, q.getUnterminatedQueryString());
             }
@@ -299,6 +325,7 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
                     handler.printStatistics();
                 }
                 handler.saveStatistics(this);
+                handler.saveSnapshot(this);
                 handler.dumpFeatureStatistics(this);
                 handler.dumpCompositeExamples(this);
                 if (handler.getCurDepth(databaseName) < getOptions().getMaxExpressionDepth()) {
@@ -337,7 +364,8 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
                 String databaseName) {
             GeneralDatabaseEngineFactory databaseEngine = globalState.getDbmsSpecificOptions()
                     .getDatabaseEngineFactory();
-            try (Connection conn = DriverManager.getConnection(databaseEngine.getJDBCString(globalState))) {
+            String url = databaseEngine.getJDBCString(globalState);
+            try (Connection conn = ConnectionLimit.getAdditionalConnection(url)) {
                 try (Statement s = conn.createStatement()) {
                     s.execute("DROP TABLE " + databaseName);
                 } catch (SQLException e) {
@@ -358,6 +386,82 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
 
     }
 
+    @Override
+    protected List<GeneralGlobalState> createOracleWorkers(GeneralGlobalState globalState) throws Exception {
+        GeneralDatabaseEngineFactory engine = globalState.getDbmsSpecificOptions().getDatabaseEngineFactory();
+        List<GeneralGlobalState> workers = new ArrayList<>();
+        try {
+            for (int i = 1; i <= globalState.getDbmsSpecificOptions().oracleWorkers; i++) {
+                Connection connection = engine.openReadConnection(globalState);
+                if (connection == null) {
+                    // the database cannot be shared across connections
+                    break;
+                }
+                GeneralGlobalState worker = createOracleWorkerState(globalState, new SQLConnection(connection), i);
+                worker.setSchema(globalState.getSchema().getDatabaseTables());
+                workers.add(worker);
+            }
+        } catch (SQLException e) {
+            // run the checks with the workers that could connect
+            if (globalState.getOptions().debugLogs()) {
+                System.out.println("Could not open a connection for an oracle worker: " + e.getMessage());
+            }
+        }
+        return workers;
+    }
+
+    @Override
+    protected void closeOracleWorker(GeneralGlobalState globalState, GeneralGlobalState worker) throws Exception {
+        worker.getHandler().publishScores();
+        super.closeOracleWorker(globalState, worker);
+    }
+
+    @Override
+    protected double[] initializeWeightedAverageReward() {
+        // one mutator for each action
+        return new double[Action.values().length];
+    }
+
+    @Override
+    protected Long getQueryPlanFingerprint(String selectStr, GeneralGlobalState globalState) throws Exception {
+        return GeneralQueryPlan.getFingerprint(globalState, selectStr);
+    }
+
+    @Override
+    protected List<Long> getQueryPlanFingerprints(List<String> selectStrs, GeneralGlobalState globalState)
+            throws Exception {
+        // the sampled plans are spread over the additional connections, if there are any
+        List<Long> fingerprints = GeneralQueryPlan.getFingerprints(globalState, selectStrs);
+        return fingerprints == null ? super.getQueryPlanFingerprints(selectStrs, globalState) : fingerprints;
+    }
+
+    @Override
+    protected void executeMutator(int index, GeneralGlobalState globalState) throws Exception {
+        Action action = Action.values()[index];
+        if (!globalState.getHandler().getOption(GeneratorNode.valueOf(action.toString()))
+                || action == Action.CREATE_INDEX && !globalState.getDbmsSpecificOptions().testIndexes) {
+            throw new IgnoreMeException();
+        }
+        SQLQueryAdapter query = action.getQuery(globalState);
+        if (globalState.executeStatement(query) && query.couldAffectSchema()) {
+            globalState.updateSchema();
+        }
+        for (GeneralTable table : globalState.getSchema().getDatabaseTables()) {
+            table.recomputeCount();
+        }
+    }
+
+    @Override
+    protected boolean addRowsToAllTables(GeneralGlobalState globalState) throws Exception {
+        for (GeneralTable table : globalState.getSchema().getDatabaseTables()) {
+            if (!table.isView() && table.getNrRows(globalState) == 0) {
+                globalState.executeStatement(GeneralInsertGenerator.getQuery(globalState, table));
+                table.recomputeCount();
+            }
+        }
+        return true;
+    }
+
     // TODO: we might need another method to check if there's any data in the table
     @Override
     protected void checkViewsAreValid(GeneralGlobalState globalState) {
@@ -536,9 +640,32 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
 
         // Try CREATE DATABASE:
         Connection conn = databaseEngineFactory.cleanOrSetUpDatabase(globalState, databaseName);
+        GeneralErrorHandler.loadSnapshot(globalState, getEngineVersion(conn));
         globalState.getHandler().setOption(GeneratorNode.CREATE_DATABASE, databaseEngineFactory.isNewSchema());
 
-        return new SQLConnection(conn);
+        SQLConnection connection = GeneralConnectionCache.wrap(conn);
+        GeneralDifferentialEngines differentialEngines;
+        try {
+            differentialEngines = GeneralDifferentialEngines.open(globalState);
+        } catch (SQLTransientConnectionException e) {
+            // all --max-connections connections are in use, so skip this database
+            connection.close();
+            throw new IgnoreMeException();
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        globalState.setDifferentialEngines(differentialEngines);
+        return differentialEngines == null ? connection : differentialEngines.wrap(connection);
+    }
+
+    private static String getEngineVersion(Connection conn) {
+        try {
+            String version = conn.getMetaData().getDatabaseProductVersion();
+            return version == null ? "unknown" : version;
+        } catch (SQLException e) {
+            return "unknown";
+        }
     }
 
     @Override
@@ -546,6 +673,12 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
         return "general";
     }
 
+    @Override
+    public void closeThreadConnections() {
+        GeneralConnectionCache.closeConnection();
+        GeneralReadConnections.closeConnections();
+    }
+
     @Override
     public void initializeFeatures(GeneralGlobalState globalState) {
         GeneralSchema.getFragments().loadFragmentsFromFile(globalState);
@@ -555,6 +688,15 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
         GeneralFunction.loadFunctionsFromFile(globalState);
         GeneralBinaryOperator.getFragments().loadFragmentsFromFile(globalState);
         GeneralBinaryOperator.loadOperatorsFromFragments(globalState);
+        // the CERT oracle reads the estimated row counts from the plans
+        boolean testCert = globalState.getDbmsSpecificOptions().oracles.contains(GeneralOracleFactory.CERT);
+        boolean useQueryPlans = globalState.getOptions().enableQPG() || testCert;
+        if (useQueryPlans) {
+            GeneralQueryPlan.getFragments().loadFragmentsFromFile(globalState);
+        }
+        if (testCert) {
+            GeneralQueryPlan.getEstimateFragments().loadFragmentsFromFile(globalState);
+        }
 
         if (globalState.getOptions().enableLearning()) {
             GeneralStatementGenerator.getFragments().updateFragmentsFromLearner(globalState);
@@ -562,6 +704,12 @@ public class GeneralProvider extends SQLProviderAdapter<GeneralProvider.GeneralG
             GeneralFunction.getFragments().updateFragmentsFromLearner(globalState);
             GeneralIndexGenerator.getFragments().updateFragmentsFromLearner(globalState);
             GeneralTableGenerator.getFragments().updateFragmentsFromLearner(globalState);
+            if (useQueryPlans) {
+                GeneralQueryPlan.getFragments().updateFragmentsFromLearner(globalState);
+            }
+            if (testCert) {
+                GeneralQueryPlan.getEstimateFragments().updateFragmentsFromLearner(globalState);
+            }
         }
 
     }
@@ -0,0 +1,536 @@
+package sqlancer.general;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import sqlancer.IgnoreMeException;
+import sqlancer.Randomly;
+import sqlancer.general.GeneralErrorHandler.GeneratorNode;
+import sqlancer.general.GeneralLearningManager.SQLFeature;
+import sqlancer.general.GeneralProvider.GeneralGlobalState;
+import sqlancer.general.GeneralReadConnections.ReadTask;
+import sqlancer.general.GeneralSchema.GeneralTable;
+import sqlancer.general.learner.GeneralFragments;
+import sqlancer.general.learner.GeneralFragments.GeneralFragmentChoice;
+import sqlancer.general.learner.GeneralStringBuilder;
+
+/**
+ * The query plans of the selects of the oracles, used by Query Plan Guidance to prefer the mutations of the database
+ * that lead to new plans, and by the CERT oracle to compare the estimated number of rows of queries.
+ *
+ * The statement that shows the plan of a query differs between engines (e.g., EXPLAIN, EXPLAIN QUERY PLAN or EXPLAIN
+ * (FORMAT TEXT)), so it is learned like the other fragments and checked once against the database before it is used.
+ * A plan is reduced to a compact fingerprint: the numbers in it, e.g., costs, row estimates and the suffixes of the
+ * table names, and its whitespace are ignored, and the remaining text is hashed.
+ *
+ * The estimated number of rows is learned the same way, as the label that precedes it in the plan (e.g., rows= or
+ * estimated row count:) or the name of the column that contains it (e.g., estRows). Only the estimate of the root of
+ * the plan is taken, i.e., of the first row of a tabular plan, the first line of a text plan, the first node of a
+ * plan drawn as a tree of bullets, or the top box of a plan drawn with boxes; the estimates of the other operators
+ * are not comparable between a query and its mutation.
+ */
+public final class GeneralQueryPlan {
+
+    private static final String CONFIG_NAME = "explain.txt";
+    private static final String STATEMENT = "EXPLAIN";
+    private static final SQLFeature FEATURE = SQLFeature.COMMAND;
+    // tried after the learned prefixes, in this order
+    private static final String[] DEFAULT_PREFIXES = { "EXPLAIN QUERY PLAN", "EXPLAIN" };
+    private static final String ESTIMATE_CONFIG_NAME = "rowestimate.txt";
+    private static final String ESTIMATE_STATEMENT = "ROW_ESTIMATE";
+    // tried after the learned labels, in this order
+    private static final String[] DEFAULT_ESTIMATE_LABELS = { "rows=", "estRows", "estimated row count:", "EC:" };
+    // the corners that start and end a box of a plan drawn with boxes, e.g., by DuckDB
+    private static final char BOX_TOP_LEFT = '\u250c';
+    private static final char BOX_BOTTOM_LEFT = '\u2514';
+    // the bullet that starts a node of a plan drawn as a tree, e.g., by CockroachDB
+    private static final char NODE_BULLET = '\u2022';
+
+    private static final GeneralExplainFragments fragments = new GeneralExplainFragments();
+    private static final GeneralRowEstimateFragments estimateFragments = new GeneralRowEstimateFragments();
+    // the prefix that showed a plan on this engine, determined with the first plan
+    private static volatile String explainPrefix;
+    // set if none of the prefixes showed a plan, so that the engine is not probed again
+    private static volatile boolean explainUnsupported;
+    // the label of the estimated number of rows on this engine, determined with the first plan
+    private static volatile String estimateLabel;
+    private static volatile boolean estimatesUnsupported;
+
+    private GeneralQueryPlan() {
+    }
+
+    private static final class GeneralExplainFragments extends GeneralFragments {
+        GeneralExplainFragments() {
+            super();
+        }
+
+        @Override
+        public synchronized String genLearnStatement(GeneralGlobalState globalState) {
+            setLearn(true);
+            GeneralStringBuilder<GeneralExplainFragments> sb = new GeneralStringBuilder<>(globalState, this);
+            sb.append("CREATE TABLE TEST_TABLE (TEST_COLUMN INT);\n");
+            sb.append("", 0);
+            sb.append(" SELECT * FROM TEST_TABLE WHERE TEST_COLUMN > 0;");
+            sb.append(" -- Hint: prefix that shows the query plan of the SELECT as a result set\n");
+            setLearn(false);
+            String stmt = sb.toString();
+            if (globalState.getOptions().debugLogs()) {
+                System.out.println(stmt);
+            }
+            return stmt;
+        }
+
+        @Override
+        public List<String> genValStatements(GeneralGlobalState globalState, String key, String choice,
+                String databaseName) {
+            return List.of(choice + " SELECT 1");
+        }
+
+        @Override
+        public String getConfigName() {
+            return CONFIG_NAME;
+        }
+
+        @Override
+        public String getStatementType() {
+            return STATEMENT;
+        }
+
+        @Override
+        public SQLFeature getFeature() {
+            return FEATURE;
+        }
+
+        @Override
+        protected String getVariables() {
+            return "";
+        }
+
+        @Override
+        protected String getExamples() {
+            return "0,EXPLAIN\n0,EXPLAIN QUERY PLAN\n0,EXPLAIN (FORMAT TEXT)\n";
+        }
+    }
+
+    private static final class GeneralRowEstimateFragments extends GeneralFragments {
+        GeneralRowEstimateFragments() {
+            super();
+        }
+
+        @Override
+        public synchronized String genLearnStatement(GeneralGlobalState globalState) {
+            setLearn(true);
+            GeneralStringBuilder<GeneralRowEstimateFragments> sb = new GeneralStringBuilder<>(globalState, this);
+            sb.append("CREATE TABLE TEST_TABLE (TEST_COLUMN INT);\n");
+            sb.append("EXPLAIN SELECT * FROM TEST_TABLE WHERE TEST_COLUMN > 0;\n");
+            sb.append("-- ", 0);
+            sb.append(" -- Hint: label that directly precedes the estimated number of rows in the plan above,");
+            sb.append(" or name of the plan column that contains it\n");
+            setLearn(false);
+            String stmt = sb.toString();
+            if (globalState.getOptions().debugLogs()) {
+                System.out.println(stmt);
+            }
+            return stmt;
+        }
+
+        @Override
+        public List<String> genValStatements(GeneralGlobalState globalState, String key, String choice,
+                String databaseName) {
+            return List.of();
+        }
+
+        @Override
+        public String getConfigName() {
+            return ESTIMATE_CONFIG_NAME;
+        }
+
+        @Override
+        public String getStatementType() {
+            return ESTIMATE_STATEMENT;
+        }
+
+        @Override
+        public SQLFeature getFeature() {
+            return FEATURE;
+        }
+
+        @Override
+        protected String getVariables() {
+            return "";
+        }
+
+        @Override
+        protected String getExamples() {
+            return "0,rows=\n0,estRows\n0,estimated row count:\n";
+        }
+    }
+
+    public static GeneralFragments getFragments() {
+        return fragments;
+    }
+
+    public static GeneralFragments getEstimateFragments() {
+        return estimateFragments;
+    }
+
+    /**
+     * Returns the estimated number of rows of a query.
+     *
+     * @param globalState
+     *            the state whose connection plans the query
+     * @param queryString
+     *            the query
+     *
+     * @return the estimate, or -1 if the query cannot be planned
+     *
+     * @throws IgnoreMeException
+     *             if the engine has no statement that shows query plans, if its plans contain no estimates that can be
+     *             found, or if the root of the plan of the query has no estimate
+     */
+    public static long getEstimatedRowCount(GeneralGlobalState globalState, String queryString) {
+        if (estimatesUnsupported) {
+            throw new IgnoreMeException();
+        }
+        String prefix = getExplainPrefix(globalState);
+        List<String[]> plan;
+        try (Statement s = globalState.getConnection().createStatement()) {
+            plan = readPlan(s, prefix, queryString);
+        } catch (SQLException e) {
+            return -1;
+        }
+        String label = estimateLabel;
+        if (label == null) {
+            synchronized (GeneralQueryPlan.class) {
+                if (estimateLabel == null) {
+                    estimateLabel = findEstimateLabel(globalState, plan);
+                }
+                label = estimateLabel;
+            }
+        }
+        long estimate = getRootEstimate(plan, label);
+        if (estimate == -1) {
+            throw new IgnoreMeException();
+        }
+        return estimate;
+    }
+
+    private static String findEstimateLabel(GeneralGlobalState globalState, List<String[]> plan) {
+        List<String> candidates = new ArrayList<>();
+        List<GeneralFragmentChoice> learned = estimateFragments.getFragments().get("0");
+        if (learned != null) {
+            for (GeneralFragmentChoice choice : learned) {
+                candidates.add(choice.toString(globalState));
+            }
+        }
+        candidates.addAll(List.of(DEFAULT_ESTIMATE_LABELS));
+        for (String candidate : candidates) {
+            if (!candidate.isEmpty() && containsEstimate(plan, candidate)) {
+                if (globalState.getOptions().debugLogs()) {
+                    System.out.println("Using " + candidate + " to obtain estimated row counts");
+                }
+                return candidate;
+            }
+        }
+        estimatesUnsupported = true;
+        throw new IgnoreMeException();
+    }
+
+    // the first row is the names of the columns
+    private static List<String[]> readPlan(Statement s, String prefix, String queryString) throws SQLException {
+        try (ResultSet rs = s.executeQuery(prefix + " " + removeSemicolon(queryString))) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int nrColumns = metaData.getColumnCount();
+            List<String[]> plan = new ArrayList<>();
+            String[] labels = new String[nrColumns];
+            for (int i = 0; i < nrColumns; i++) {
+                labels[i] = metaData.getColumnLabel(i + 1);
+            }
+            plan.add(labels);
+            while (rs.next()) {
+                String[] row = new String[nrColumns];
+                for (int i = 0; i < nrColumns; i++) {
+                    row[i] = rs.getString(i + 1);
+                }
+                plan.add(row);
+            }
+            return plan;
+        }
+    }
+
+    private static int getColumn(List<String[]> plan, String label) {
+        String[] labels = plan.get(0);
+        for (int i = 0; i < labels.length; i++) {
+            if (label.equalsIgnoreCase(labels[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // whether any operator of the plan has an estimate with the label, which identifies the label of the engine
+    private static boolean containsEstimate(List<String[]> plan, String label) {
+        int column = getColumn(plan, label);
+        for (String[] row : plan.subList(1, plan.size())) {
+            if (column != -1) {
+                if (parseEstimate(row[column], 0) != -1) {
+                    return true;
+                }
+                continue;
+            }
+            for (String value : row) {
+                if (getEstimate(value, label) != -1) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the estimated number of rows of the root of a plan.
+     *
+     * @param plan
+     *            the names of the columns of the plan, followed by its rows
+     * @param label
+     *            the label that precedes the estimate, or the name of the column that contains it
+     *
+     * @return the estimate, or -1 if the root has no estimate
+     */
+    static long getRootEstimate(List<String[]> plan, String label) {
+        if (plan.size() < 2) {
+            return -1;
+        }
+        int column = getColumn(plan, label);
+        if (column != -1) {
+            return parseEstimate(plan.get(1)[column], 0);
+        }
+        return getEstimate(getRootText(plan), label);
+    }
+
+    private static String getRootText(List<String[]> plan) {
+        List<String> lines = new ArrayList<>();
+        for (String[] row : plan.subList(1, plan.size())) {
+            StringBuilder sb = new StringBuilder();
+            for (String value : row) {
+                if (value == null) {
+                    continue;
+                }
+                int top = value.indexOf(BOX_TOP_LEFT);
+                if (top != -1) {
+                    // the top box ends at the first bottom corner, as no other box is drawn next to it
+                    int bottom = value.indexOf(BOX_BOTTOM_LEFT, top);
+                    return bottom == -1 ? value.substring(top) : value.substring(top, bottom);
+                }
+                sb.append(value).append(' ');
+            }
+            for (String line : sb.toString().split("\n")) {
+                if (!line.isBlank()) {
+                    lines.add(line);
+                }
+            }
+        }
+        int first = 0;
+        while (first < lines.size() && lines.get(first).indexOf(NODE_BULLET) == -1) {
+            first++;
+        }
+        if (first == lines.size()) {
+            return lines.isEmpty() ? "" : lines.get(0);
+        }
+        // the root node spans the lines up to the bullet of its first child
+        StringBuilder root = new StringBuilder(lines.get(first));
+        for (int i = first + 1; i < lines.size() && lines.get(i).indexOf(NODE_BULLET) == -1; i++) {
+            root.append('\n').append(lines.get(i));
+        }
+        return root.toString();
+    }
+
+    private static long getEstimate(String text, String label) {
+        int index = text == null ? -1 : text.indexOf(label);
+        while (index != -1) {
+            long estimate = parseEstimate(text, index + label.length());
+            if (estimate != -1) {
+                return estimate;
+            }
+            index = text.indexOf(label, index + 1);
+        }
+        return -1;
+    }
+
+    // parses the number at a position, which may be preceded by spaces and have a fraction or digit groups, e.g.,
+    // 33.33 or 1,000
+    private static long parseEstimate(String value, int start) {
+        if (value == null) {
+            return -1;
+        }
+        int i = start;
+        while (i < value.length() && value.charAt(i) == ' ') {
+            i++;
+        }
+        int end = i;
+        while (end < value.length() && (Character.isDigit(value.charAt(end)) || value.charAt(end) == '.'
+                || value.charAt(end) == ',' && end > i)) {
+            end++;
+        }
+        if (end == i) {
+            return -1;
+        }
+        try {
+            return Math.round(Double.parseDouble(value.substring(i, end).replace(",", "")));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the plan of a query.
+     *
+     * @param globalState
+     *            the state whose connection plans the query
+     * @param queryString
+     *            the query
+     *
+     * @return the fingerprint, or null if the query cannot be planned
+     *
+     * @throws IgnoreMeException
+     *             if the engine has no statement that shows query plans
+     */
+    public static Long getFingerprint(GeneralGlobalState globalState, String queryString) {
+        String prefix = getExplainPrefix(globalState);
+        try (Statement s = globalState.getConnection().createStatement()) {
+            return getFingerprint(s, prefix, queryString);
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the fingerprints of the plans of queries, obtained concurrently on the additional connections of
+     * {@link GeneralReadConnections}, each of which plans a share of the queries.
+     *
+     * @param globalState
+     *            the state of the database
+     * @param queryStrings
+     *            the queries
+     *
+     * @return the fingerprints in the order of the queries, each of which is null if its query cannot be planned, or
+     *         null if there are no additional connections
+     */
+    public static List<Long> getFingerprints(GeneralGlobalState globalState, List<String> queryStrings) {
+        if (queryStrings.isEmpty() || !GeneralReadConnections.isEnabled(globalState)) {
+            return null;
+        }
+        String prefix = getExplainPrefix(globalState);
+        int nrTasks = Math.min(globalState.getDbmsSpecificOptions().oracleReadConnections, queryStrings.size());
+        List<ReadTask<List<Long>>> tasks = new ArrayList<>();
+        for (int i = 0; i < nrTasks; i++) {
+            List<String> share = queryStrings.subList(i * queryStrings.size() / nrTasks,
+                    (i + 1) * queryStrings.size() / nrTasks);
+            tasks.add(s -> {
+                List<Long> fingerprints = new ArrayList<>();
+                for (String queryString : share) {
+                    fingerprints.add(getFingerprint(s, prefix, queryString));
+                }
+                return fingerprints;
+            });
+        }
+        List<List<Long>> results = GeneralReadConnections.runConcurrently(globalState, tasks);
+        if (results == null) {
+            return null;
+        }
+        List<Long> fingerprints = new ArrayList<>();
+        results.forEach(fingerprints::addAll);
+        return fingerprints;
+    }
+
+    private static Long getFingerprint(Statement s, String prefix, String queryString) {
+        try (ResultSet rs = s.executeQuery(prefix + " " + removeSemicolon(queryString))) {
+            return hash(rs);
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static String removeSemicolon(String queryString) {
+        String query = queryString.trim();
+        if (query.endsWith(";")) {
+            query = query.substring(0, query.length() - 1);
+        }
+        return query;
+    }
+
+    private static String getExplainPrefix(GeneralGlobalState globalState) {
+        String prefix = explainPrefix;
+        if (prefix == null) {
+            synchronized (GeneralQueryPlan.class) {
+                if (explainUnsupported) {
+                    throw new IgnoreMeException();
+                }
+                if (explainPrefix == null) {
+                    explainPrefix = findExplainPrefix(globalState);
+                }
+                prefix = explainPrefix;
+            }
+        }
+        return prefix;
+    }
+
+    private static String findExplainPrefix(GeneralGlobalState globalState) {
+        List<String> candidates = new ArrayList<>();
+        List<GeneralFragmentChoice> learned = fragments.getFragments().get("0");
+        if (learned != null) {
+            for (GeneralFragmentChoice choice : learned) {
+                candidates.add(choice.toString(globalState));
+            }
+        }
+        candidates.addAll(List.of(DEFAULT_PREFIXES));
+        List<GeneralTable> tables = globalState.getSchema().getDatabaseTables();
+        String probe = tables.isEmpty() ? "SELECT 1" : "SELECT * FROM " + Randomly.fromList(tables).getName();
+        for (String candidate : candidates) {
+            try (Statement s = globalState.getConnection().createStatement();
+                    ResultSet rs = s.executeQuery(candidate + " " + probe)) {
+                if (rs.next()) {
+                    if (globalState.getOptions().debugLogs()) {
+                        System.out.println("Using " + candidate + " to obtain query plans");
+                    }
+                    return candidate;
+                }
+            } catch (SQLException e) {
+                // try the next one
+            }
+        }
+        // not a bug of the engine, so the queries whose plans are needed are skipped instead of reported
+        explainUnsupported = true;
+        globalState.getHandler().setOption(GeneratorNode.EXPLAIN, false);
+        System.out.println("WARNING: none of " + candidates + " shows query plans on "
+                + globalState.getProviderName() + ", so the plans of queries are not used");
+        throw new IgnoreMeException();
+    }
+
+    private static long hash(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int nrColumns = metaData.getColumnCount();
+        long hash = 0xcbf29ce484222325L;
+        while (rs.next()) {
+            for (int i = 1; i <= nrColumns; i++) {
+                String value = rs.getString(i);
+                if (value != null) {
+                    for (int j = 0; j < value.length(); j++) {
+                        char c = value.charAt(j);
+                        if (!Character.isDigit(c) && !Character.isWhitespace(c)) {
+                            hash = (hash ^ c) * 0x100000001b3L;
+                        }
+                    }
+                }
+                // separate the columns and the rows, which are not separated by whitespace
+                hash = (hash ^ (i == nrColumns ? '\n' : '\t')) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,215 @@
+package sqlancer.general;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import sqlancer.general.GeneralOptions.GeneralDatabaseEngineFactory;
+import sqlancer.general.GeneralProvider.GeneralGlobalState;
+
+/**
+ * Additional connections of a worker thread to the database it generated, on which the oracles run the variants of a
+ * read-only check concurrently instead of one after another on the main connection.
+ *
+ * The connections are kept per thread and reused across databases; a connection is switched to the current database
+ * when it is taken from the pool, and the pool is closed when the thread stops generating databases. A query that
+ * runs longer than --oracle-read-timeout is cancelled. Engines whose database cannot be shared across connections,
+ * e.g., embedded ones, return no connection, and the oracles run the variants on the main connection.
+ */
+public final class GeneralReadConnections {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "oracle-read-query");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ThreadLocal<Deque<PooledConnection>> POOL = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<Boolean> UNSUPPORTED = ThreadLocal.withInitial(() -> false);
+
+    private GeneralReadConnections() {
+    }
+
+    @FunctionalInterface
+    public interface ReadTask<T> {
+        T run(Statement statement) throws Exception;
+    }
+
+    private static final class PooledConnection {
+        private final Connection connection;
+        private String databaseName;
+
+        PooledConnection(Connection connection, String databaseName) {
+            this.connection = connection;
+            this.databaseName = databaseName;
+        }
+
+        void closeQuietly() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // the connection is discarded anyway
+            }
+        }
+    }
+
+    public static boolean isEnabled(GeneralGlobalState state) {
+        return state.getDbmsSpecificOptions().oracleReadConnections > 0 && !UNSUPPORTED.get();
+    }
+
+    /**
+     * Runs read-only tasks concurrently, each with a statement of its own additional connection to the database of the
+     * state.
+     *
+     * @param state
+     *            the state of the database
+     * @param tasks
+     *            the tasks
+     *
+     * @return the results in the order of the tasks, or null if there are not enough additional connections or a task
+     *         failed or timed out, in which case the caller runs the queries on the main connection
+     */
+    public static <T> List<T> runConcurrently(GeneralGlobalState state, List<ReadTask<T>> tasks) {
+        List<PooledConnection> connections = acquire(state, tasks.size());
+        if (connections == null) {
+            return null;
+        }
+        List<Statement> statements = new ArrayList<>();
+        try {
+            for (PooledConnection pooled : connections) {
+                statements.add(pooled.connection.createStatement());
+            }
+        } catch (SQLException e) {
+            statements.forEach(GeneralReadConnections::closeQuietly);
+            connections.forEach(PooledConnection::closeQuietly);
+            return null;
+        }
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            ReadTask<T> task = tasks.get(i);
+            Statement statement = statements.get(i);
+            futures.add(executor.submit(() -> task.run(statement)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(state.getDbmsSpecificOptions().oracleReadTimeout);
+        List<T> results = new ArrayList<>();
+        boolean failed = false;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (ExecutionException e) {
+                failed = true;
+            } catch (TimeoutException e) {
+                failed = true;
+                cancel(statements.get(i), futures.get(i));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = true;
+                cancel(statements.get(i), futures.get(i));
+            }
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            closeQuietly(statements.get(i));
+            if (futures.get(i).isDone()) {
+                release(connections.get(i));
+            } else {
+                // the query did not stop when it was cancelled, so the connection is still in use
+                futures.get(i).cancel(true);
+                connections.get(i).closeQuietly();
+            }
+        }
+        return failed ? null : results;
+    }
+
+    // cancels the query of a task and waits a moment for the task to stop, so that its connection can be reused
+    private static void cancel(Statement statement, Future<?> future) {
+        try {
+            statement.cancel();
+            future.get(VALIDATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (SQLException | ExecutionException | TimeoutException e) {
+            // the connection is closed below if the query does not stop
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // the statement is discarded anyway
+        }
+    }
+
+    /**
+     * Closes the additional connections of the current thread.
+     */
+    public static void closeConnections() {
+        Deque<PooledConnection> pool = POOL.get();
+        while (!pool.isEmpty()) {
+            pool.pop().closeQuietly();
+        }
+        POOL.remove();
+        UNSUPPORTED.remove();
+    }
+
+    private static void release(PooledConnection pooled) {
+        try {
+            if (pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                POOL.get().push(pooled);
+                return;
+            }
+        } catch (SQLException e) {
+            // closed below
+        }
+        pooled.closeQuietly();
+    }
+
+    private static List<PooledConnection> acquire(GeneralGlobalState state, int nrConnections) {
+        if (nrConnections > state.getDbmsSpecificOptions().oracleReadConnections || UNSUPPORTED.get()) {
+            return null;
+        }
+        GeneralDatabaseEngineFactory engine = state.getDbmsSpecificOptions().getDatabaseEngineFactory();
+        String databaseName = state.getDatabaseName();
+        Deque<PooledConnection> pool = POOL.get();
+        List<PooledConnection> connections = new ArrayList<>();
+        try {
+            while (connections.size() < nrConnections) {
+                PooledConnection pooled = pool.poll();
+                if (pooled == null) {
+                    Connection connection = engine.openReadConnection(state);
+                    if (connection == null) {
+                        UNSUPPORTED.set(true);
+                        break;
+                    }
+                    connections.add(new PooledConnection(connection, databaseName));
+                } else {
+                    connections.add(pooled);
+                    if (!pooled.databaseName.equals(databaseName)) {
+                        engine.useDatabase(state, pooled.connection);
+                        pooled.databaseName = databaseName;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            connections.forEach(PooledConnection::closeQuietly);
+            return null;
+        }
+        if (connections.size() < nrConnections) {
+            connections.forEach(pool::push);
+            return null;
+        }
+        return connections;
+    }
+
+}
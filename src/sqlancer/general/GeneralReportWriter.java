@@ -0,0 +1,117 @@
+package sqlancer.general;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Writes the statistics and report files of the feedback loop on a background thread.
+ *
+ * Workers only register a report for a file; the report is rendered and written by the reporter at most once per
+ * interval, so that a report submitted several times in an interval is written once. Each file is written to a
+ * temporary file first and then renamed, so readers never see a partially written report. The pending reports are
+ * written once more when the JVM shuts down.
+ */
+public final class GeneralReportWriter {
+
+    private static final Map<File, Supplier<byte[]>> pending = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService reporter;
+
+    private GeneralReportWriter() {
+    }
+
+    /**
+     * Registers a report to be written to a file, replacing any report that is still pending for that file.
+     *
+     * @param file
+     *            the file to write
+     * @param report
+     *            renders the content of the file; called on the reporter thread
+     * @param intervalMillis
+     *            the interval of the reporter in milliseconds; if it is not positive, the report is written by the
+     *            calling thread
+     */
+    public static void submit(File file, Supplier<String> report, long intervalMillis) {
+        submitBinary(file, () -> report.get().getBytes(StandardCharsets.UTF_8), intervalMillis);
+    }
+
+    /**
+     * Registers a binary report to be written to a file, see {@link #submit(File, Supplier, long)}.
+     *
+     * @param file
+     *            the file to write
+     * @param report
+     *            renders the content of the file; called on the reporter thread
+     * @param intervalMillis
+     *            the interval of the reporter in milliseconds
+     */
+    public static void submitBinary(File file, Supplier<byte[]> report, long intervalMillis) {
+        if (intervalMillis <= 0) {
+            write(file, report);
+            return;
+        }
+        pending.put(file, report);
+        start(intervalMillis);
+    }
+
+    private static synchronized void start(long intervalMillis) {
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "report-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleWithFixedDelay(GeneralReportWriter::flush, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(GeneralReportWriter::flush));
+    }
+
+    /**
+     * Writes all pending reports.
+     */
+    public static synchronized void flush() {
+        for (File file : pending.keySet()) {
+            Supplier<byte[]> report = pending.remove(file);
+            if (report != null) {
+                write(file, report);
+            }
+        }
+    }
+
+    private static void write(File file, Supplier<byte[]> report) {
+        Path target = file.toPath().toAbsolutePath();
+        Path tmp = null;
+        try {
+            byte[] content = report.get();
+            Files.createDirectories(target.getParent());
+            tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            Files.write(tmp, content);
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing " + file + ": " + e.getMessage());
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+}
@@ -2,11 +2,11 @@ package sqlancer.general;
 
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,10 +32,98 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
     private static final String STATEMENT = "DATATYPE";
     private static final SQLFeature FEATURE = SQLFeature.DATATYPE;
 
-    private static int typeCounter;
-    private static volatile Map<Integer, String> typeMap = new HashMap<>();
-    private static Map<String, Boolean> typeAvailabilityMap = new HashMap<>();
-    private static Map<String, List<String>> typeToFunction = new HashMap<>();
+    // replaced as a whole whenever a type is learned or updated, so readers never see a registry that is being
+    // modified
+    private static volatile TypeRegistry types = new TypeRegistry(new String[0], new HashMap<>(), new HashMap<>());
+
+    /**
+     * An immutable version of the learned data types (VARTYPE), their availability and the functions returning them.
+     */
+    private static final class TypeRegistry {
+        // the name of each type, indexed by its id
+        private final String[] names;
+        private final String[] upperNames;
+        private final List<Integer> ids;
+        private final Map<String, Integer> idsByName;
+        private final Map<String, Boolean> availability;
+        private final Map<String, List<String>> typeToFunction;
+        // the composite types of all data types, computed when they are first needed and shared by all generators
+        private volatile List<GeneralCompositeDataType> supportedTypes;
+
+        TypeRegistry(String[] names, Map<String, Boolean> availability, Map<String, List<String>> typeToFunction) {
+            this.names = names;
+            this.upperNames = new String[names.length];
+            List<Integer> ids = new ArrayList<>();
+            Map<String, Integer> idsByName = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                upperNames[i] = names[i].toUpperCase();
+                ids.add(i);
+                idsByName.put(names[i], i);
+            }
+            this.ids = Collections.unmodifiableList(ids);
+            this.idsByName = idsByName;
+            this.availability = availability;
+            this.typeToFunction = typeToFunction;
+        }
+
+        int size() {
+            return names.length;
+        }
+
+        List<GeneralCompositeDataType> getSupportedTypes() {
+            List<GeneralCompositeDataType> result = supportedTypes;
+            if (result == null) {
+                result = new ArrayList<>();
+                for (GeneralDataType dt : GeneralDataType.values()) {
+                    if (dt == GeneralDataType.NULL) {
+                        continue;
+                    }
+                    if (dt == GeneralDataType.VARTYPE) {
+                        for (int i = 0; i < names.length; i++) {
+                            result.add(new GeneralCompositeDataType(dt, i));
+                        }
+                        continue;
+                    }
+                    result.add(new GeneralCompositeDataType(dt, 0));
+                }
+                result = Collections.unmodifiableList(result);
+                supportedTypes = result;
+            }
+            return result;
+        }
+
+        String getName(int id) {
+            return id >= 0 && id < names.length ? names[id] : null;
+        }
+
+        TypeRegistry withType(String name) {
+            String[] newNames = Arrays.copyOf(names, names.length + 1);
+            newNames[names.length] = name;
+            Map<String, Boolean> newAvailability = new HashMap<>(availability);
+            newAvailability.put(name, true);
+            // TODO change uppercase
+            Map<String, List<String>> newTypeToFunction = new HashMap<>(typeToFunction);
+            newTypeToFunction.putIfAbsent(name.toUpperCase(), List.of());
+            return new TypeRegistry(newNames, newAvailability, newTypeToFunction);
+        }
+
+        TypeRegistry withAvailability(Map<String, Boolean> updates) {
+            Map<String, Boolean> newAvailability = new HashMap<>(availability);
+            newAvailability.putAll(updates);
+            return new TypeRegistry(names, newAvailability, typeToFunction);
+        }
+
+        TypeRegistry withFunctions(String type, List<String> functions, boolean overwrite) {
+            Map<String, List<String>> newTypeToFunction = new HashMap<>(typeToFunction);
+            List<String> newFunctions = new ArrayList<>();
+            if (!overwrite && typeToFunction.containsKey(type)) {
+                newFunctions.addAll(typeToFunction.get(type));
+            }
+            newFunctions.addAll(functions);
+            newTypeToFunction.put(type, Collections.unmodifiableList(newFunctions));
+            return new TypeRegistry(names, availability, newTypeToFunction);
+        }
+    }
 
     private static final class GeneralTypeFragments extends GeneralFragments {
         GeneralTypeFragments() {
@@ -111,28 +199,28 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
 
             addFragment(key, output.toString(), vars);
 
-            // if key is not in the typeMap, add it
-            if (!typeMap.containsValue(key)) {
-                typeMap.put(typeCounter, key);
-                // TODO change uppercase
-                updateTypeToFunction(key.toUpperCase(), new ArrayList<>(), false);
-                typeAvailabilityMap.put(key, true);
-                typeCounter++;
-            }
+            addType(key);
         }
 
         @Override
-        public String get(int index, GeneralGlobalState state) {
+        public void get(int index, GeneralGlobalState state, StringBuilder sb) {
             if (getLearn()) {
-                return super.get(index, state);
+                super.get(index, state, sb);
+                return;
             }
-            String key = typeMap.get(index);
-            return get(key, state);
+            String key = types.getName(index);
+            get(key, state, sb);
         }
 
         public String get(String key, GeneralGlobalState state) {
+            StringBuilder sb = new StringBuilder();
+            get(key, state, sb);
+            return sb.toString();
+        }
+
+        public void get(String key, GeneralGlobalState state, StringBuilder sb) {
             // actually, if typeMap contains the key, then fragments must contain the key
-            if (getFragments().containsKey(key) && typeAvailabilityMap.get(key)) {
+            if (getFragments().containsKey(key) && types.availability.getOrDefault(key, false)) {
                 GeneralFragmentChoice choice = Randomly.fromList(getFragments().get(key));
                 if (state.getCreatingDatabase()) {
                     // only consider feedback when creating the database
@@ -140,9 +228,9 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
                     // can't match data format with type
                     state.getHandler().addScore(choice);
                 }
-                return choice.toString(state);
+                choice.appendTo(sb, state);
             } else {
-                return "NULL";
+                sb.append("NULL");
             }
         }
 
@@ -150,14 +238,12 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
         public synchronized void updateFragmentByFeedback(GeneralErrorHandler handler) {
             super.updateFragmentByFeedback(handler);
             // iterate over the fragments, if the choices is empty
-            // then typeAvailabilityMap will be updated
+            // then the type availability will be updated
+            Map<String, Boolean> availability = new HashMap<>();
             for (String key : getFragments().keySet()) {
-                if (getFragments().get(key).isEmpty()) {
-                    typeAvailabilityMap.put(key, false);
-                } else {
-                    typeAvailabilityMap.put(key, true);
-                }
+                availability.put(key, !getFragments().get(key).isEmpty());
             }
+            updateTypeAvailability(availability);
 
         }
 
@@ -292,17 +378,24 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
     }
 
     public static List<String> getAvailFunctions(String type) {
-        return typeToFunction.get(type);
+        return types.typeToFunction.get(type);
+    }
+
+    public static synchronized void updateTypeToFunction(String type, List<String> functions, boolean overwrite) {
+        types = types.withFunctions(type, functions, overwrite);
     }
 
-    public static void updateTypeToFunction(String type, List<String> functions, boolean overwrite) {
-        if (!typeToFunction.containsKey(type) || overwrite) {
-            typeToFunction.put(type, functions);
-        } else {
-            typeToFunction.get(type).addAll(functions);
+    private static synchronized void addType(String type) {
+        // if the type is not known yet, add it
+        if (!types.idsByName.containsKey(type)) {
+            types = types.withType(type);
         }
     }
 
+    private static synchronized void updateTypeAvailability(Map<String, Boolean> availability) {
+        types = types.withAvailability(availability);
+    }
+
     public enum GeneralDataType {
 
         // INT, VARCHAR, BOOLEAN, FLOAT, DATE, TIMESTAMP, NULL;
@@ -327,7 +420,7 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
                     continue;
                 }
                 if (dt == GeneralDataType.VARTYPE) {
-                    for (int i = 0; i < typeCounter; i++) {
+                    for (int i = 0; i < GeneralSchema.types.size(); i++) {
                         types.add(dt);
                     }
                     continue;
@@ -369,7 +462,8 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
 
         @Override
         public int hashCode() {
-            return Objects.hash(dataType, id);
+            // used as a key of the composite feature symbols, so avoid allocating a varargs array
+            return 31 * dataType.hashCode() + id;
         }
 
         public GeneralDataType getPrimitiveDataType() {
@@ -395,32 +489,22 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
             } else if (type.equals("INT")) {
                 return GeneralDataType.INT.get();
             }
-            int firstKey = -1;
-            for (int key : typeMap.keySet()) {
-                if (typeMap.get(key).equals(type)) {
-                    firstKey = key;
-                    return new GeneralCompositeDataType(GeneralDataType.VARTYPE, firstKey);
-                }
+            Integer id = types.idsByName.get(type);
+            if (id != null) {
+                return new GeneralCompositeDataType(GeneralDataType.VARTYPE, id);
             }
             System.err.println("Type not found");
             return null;
         }
 
+        /**
+         * Returns the composite types of all data types. The list is cached with the learned data types, so it is only
+         * computed again when a data type is learned.
+         *
+         * @return the unmodifiable list of the types
+         */
         public static List<GeneralCompositeDataType> getSupportedTypes() {
-            List<GeneralCompositeDataType> types = new ArrayList<>();
-            for (GeneralDataType dt : GeneralDataType.values()) {
-                if (dt == GeneralDataType.NULL) {
-                    continue;
-                }
-                if (dt == GeneralDataType.VARTYPE) {
-                    for (int i = 0; i < typeCounter; i++) {
-                        types.add(new GeneralCompositeDataType(dt, i));
-                    }
-                    continue;
-                }
-                types.add(new GeneralCompositeDataType(dt, 0));
-            }
-            return types;
+            return types.getSupportedTypes();
         }
 
         public static GeneralCompositeDataType getRandomWithoutNull(GeneralGlobalState globalState) {
@@ -457,7 +541,7 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
             case VARTYPE:
                 // pick a random type id from the typeMap
                 // TODO an exception here
-                typeID = Randomly.fromList(List.copyOf(typeMap.keySet()));
+                typeID = Randomly.fromList(types.ids);
                 break;
             default:
                 throw new AssertionError(type);
@@ -483,7 +567,7 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
                 return "NULL";
             case VARTYPE:
                 // TODO catch exception here
-                return typeMap.get(id).toUpperCase();
+                return types.upperNames[id];
             default:
                 throw new AssertionError(getPrimitiveDataType());
             }
@@ -492,7 +576,7 @@ public class GeneralSchema extends AbstractSchema<GeneralGlobalState, GeneralTab
     }
 
     public static void setTypeAvailability(String type, boolean availability) {
-        typeAvailabilityMap.put(type, availability);
+        updateTypeAvailability(Map.of(type, availability));
     }
 
     public static class GeneralColumn extends AbstractTableColumn<GeneralTable, GeneralCompositeDataType> {
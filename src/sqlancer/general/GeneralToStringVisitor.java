@@ -12,6 +12,73 @@ import sqlancer.general.ast.GeneralSelect.GeneralSubquery;
 
 public class GeneralToStringVisitor extends NewToStringVisitor<GeneralExpression> {
 
+    // most statements fit into the initial buffer; larger buffers are not kept, so that a single large statement
+    // does not hold on to its memory
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+    // the buffer of the rendering calls of a thread, taken out while a call uses it so that nested calls allocate
+    private static final ThreadLocal<StringBuilder> buffer = new ThreadLocal<>();
+
+    // a subexpression that was already rendered, appended as is instead of being visited again
+    private Node<GeneralExpression> rendered;
+    private String renderedString;
+    // fetch columns rendered in place of the ones of a select, e.g., aggregates computed by the DBMS
+    private GeneralSelect fetchSelect;
+    private String fetchColumns;
+
+    /**
+     * A SELECT rendered once, with a slot for its WHERE clause, so that the variants of a query that only differ in
+     * their WHERE clause do not render the fetch columns, tables and joins again.
+     */
+    public static final class SelectTemplate {
+        private final String head;
+        private final String tail;
+
+        private SelectTemplate(String head, String tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+
+        public String getQuery() {
+            return head + tail;
+        }
+
+        public String getQuery(String whereClause) {
+            return head + " WHERE " + whereClause + tail;
+        }
+
+        /**
+         * Renders the clauses after the WHERE clause again, e.g., after ORDER BY terms were added.
+         *
+         * @param select
+         *            the select the template was created for
+         *
+         * @return a template with the same head
+         */
+        public SelectTemplate withTail(GeneralSelect select) {
+            StringBuilder sb = acquireBuffer();
+            new GeneralToStringVisitor(sb).visitSelectTail(select);
+            return new SelectTemplate(head, releaseBuffer(sb));
+        }
+    }
+
+    public GeneralToStringVisitor() {
+        super();
+    }
+
+    public GeneralToStringVisitor(StringBuilder sb) {
+        super(sb);
+    }
+
+    @Override
+    public void visit(Node<GeneralExpression> expr) {
+        if (expr == rendered && rendered != null) {
+            sb.append(renderedString);
+        } else {
+            super.visit(expr);
+        }
+    }
+
     @Override
     public void visitSpecific(Node<GeneralExpression> expr) {
         if (expr instanceof GeneralConstant) {
@@ -52,11 +119,24 @@ public class GeneralToStringVisitor extends NewToStringVisitor<GeneralExpression
     }
 
     private void visit(GeneralSelect select) {
+        visitSelectHead(select);
+        if (select.getWhereClause() != null) {
+            sb.append(" WHERE ");
+            visit(select.getWhereClause());
+        }
+        visitSelectTail(select);
+    }
+
+    private void visitSelectHead(GeneralSelect select) {
         sb.append("SELECT ");
         if (select.isDistinct()) {
             sb.append("DISTINCT ");
         }
-        visit(select.getFetchColumns());
+        if (select == fetchSelect) {
+            sb.append(fetchColumns);
+        } else {
+            visit(select.getFetchColumns());
+        }
         sb.append(" FROM ");
         visit(select.getFromList());
         if (!select.getFromList().isEmpty() && !select.getJoinList().isEmpty()) {
@@ -65,10 +145,9 @@ public class GeneralToStringVisitor extends NewToStringVisitor<GeneralExpression
         if (!select.getJoinList().isEmpty()) {
             visit(select.getJoinList());
         }
-        if (select.getWhereClause() != null) {
-            sb.append(" WHERE ");
-            visit(select.getWhereClause());
-        }
+    }
+
+    private void visitSelectTail(GeneralSelect select) {
         if (!select.getGroupByExpressions().isEmpty()) {
             sb.append(" GROUP BY ");
             visit(select.getGroupByExpressions());
@@ -124,10 +203,118 @@ public class GeneralToStringVisitor extends NewToStringVisitor<GeneralExpression
         sb.append(" ");
     }
 
+    private static StringBuilder acquireBuffer() {
+        StringBuilder sb = buffer.get();
+        if (sb == null) {
+            return new StringBuilder(INITIAL_CAPACITY);
+        }
+        buffer.set(null);
+        sb.setLength(0);
+        return sb;
+    }
+
+    private static String releaseBuffer(StringBuilder sb) {
+        String s = sb.toString();
+        if (sb.capacity() <= MAX_RETAINED_CAPACITY) {
+            buffer.set(sb);
+        }
+        return s;
+    }
+
+    /**
+     * Renders an expression at the end of a builder, without an intermediate string.
+     *
+     * @param sb
+     *            the builder, e.g., of the statement that is being generated
+     * @param expr
+     *            the expression to render
+     */
+    public static void appendTo(StringBuilder sb, Node<GeneralExpression> expr) {
+        new GeneralToStringVisitor(sb).visit(expr);
+    }
+
     public static String asString(Node<GeneralExpression> expr) {
-        GeneralToStringVisitor visitor = new GeneralToStringVisitor();
+        StringBuilder sb = acquireBuffer();
+        appendTo(sb, expr);
+        return releaseBuffer(sb);
+    }
+
+    /**
+     * Renders an expression that contains an already rendered subexpression, such as a negated predicate.
+     *
+     * @param expr
+     *            the expression to render
+     * @param subexpression
+     *            the subexpression, matched by identity
+     * @param subexpressionString
+     *            the rendering of the subexpression
+     *
+     * @return the rendering of the expression
+     */
+    public static String asString(Node<GeneralExpression> expr, Node<GeneralExpression> subexpression,
+            String subexpressionString) {
+        StringBuilder sb = acquireBuffer();
+        GeneralToStringVisitor visitor = new GeneralToStringVisitor(sb);
+        visitor.rendered = subexpression;
+        visitor.renderedString = subexpressionString;
         visitor.visit(expr);
-        return visitor.get();
+        return releaseBuffer(sb);
+    }
+
+    /**
+     * Renders a select with other fetch columns, such as aggregates that the DBMS computes instead of returning the
+     * rows.
+     *
+     * @param select
+     *            the select
+     * @param fetchColumns
+     *            the fetch columns to render
+     *
+     * @return the rendering of the select
+     */
+    public static String asString(GeneralSelect select, String fetchColumns) {
+        StringBuilder sb = acquireBuffer();
+        GeneralToStringVisitor visitor = new GeneralToStringVisitor(sb);
+        visitor.fetchSelect = select;
+        visitor.fetchColumns = fetchColumns;
+        visitor.visit(select);
+        return releaseBuffer(sb);
+    }
+
+    /**
+     * Renders a select without its WHERE clause into a template.
+     *
+     * @param select
+     *            the select
+     *
+     * @return the template
+     */
+    public static SelectTemplate asTemplate(GeneralSelect select) {
+        return asTemplate(select, null);
+    }
+
+    /**
+     * Renders a select without its WHERE clause into a template, see {@link #asString(GeneralSelect, String)}.
+     *
+     * @param select
+     *            the select
+     * @param fetchColumns
+     *            the fetch columns to render, or null to render the ones of the select
+     *
+     * @return the template
+     */
+    public static SelectTemplate asTemplate(GeneralSelect select, String fetchColumns) {
+        StringBuilder sb = acquireBuffer();
+        GeneralToStringVisitor visitor = new GeneralToStringVisitor(sb);
+        if (fetchColumns != null) {
+            visitor.fetchSelect = select;
+            visitor.fetchColumns = fetchColumns;
+        }
+        visitor.visitSelectHead(select);
+        String head = sb.toString();
+        sb.setLength(0);
+        new GeneralToStringVisitor(sb).visitSelectTail(select);
+        return new SelectTemplate(head, releaseBuffer(sb));
     }
 
 }
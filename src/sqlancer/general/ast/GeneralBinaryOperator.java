@@ -1,17 +1,22 @@
 package sqlancer.general.ast;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import sqlancer.Randomly;
+import sqlancer.IgnoreMeException;
 import sqlancer.common.ast.BinaryOperatorNode.Operator;
 import sqlancer.common.query.SQLQueryAdapter;
+import sqlancer.general.GeneralCompositeKeys;
+import sqlancer.general.GeneralCompositeKeys.Kind;
 import sqlancer.general.GeneralErrorHandler;
 import sqlancer.general.GeneralLearningManager.SQLFeature;
+import sqlancer.general.GeneralOptionSampler;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
 import sqlancer.general.GeneralSchema.GeneralCompositeDataType;
 import sqlancer.general.GeneralSchema.GeneralDataType;
@@ -26,8 +31,37 @@ public class GeneralBinaryOperator implements Operator {
     private static final String CONFIG_NAME = "operators.txt";
     private static final SQLFeature FEATURE = SQLFeature.OPERATOR;
 
-    private static Map<String, GeneralCompositeDataType> operators = initOperators();
+    // replaced as a whole whenever operators are added, so readers never see a registry that is being modified
+    private static volatile OperatorRegistry registry = new OperatorRegistry(initOperators());
     private static GeneralBinaryOperatorFragments fragments = new GeneralBinaryOperatorFragments();
+    private static final GeneralOptionSampler<String> sampler = new GeneralOptionSampler<>(() -> registry.names,
+            GeneralBinaryOperator::isEnabled);
+    private static final Map<GeneralCompositeDataType, GeneralOptionSampler<String>> typeSamplers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * An immutable version of the known operators, indexed by name and by return type.
+     */
+    private static final class OperatorRegistry {
+        private final Map<String, GeneralCompositeDataType> operators;
+        private final List<String> names;
+        private final Map<GeneralCompositeDataType, List<String>> namesByType;
+
+        OperatorRegistry(Map<String, GeneralCompositeDataType> operators) {
+            this.operators = Collections.unmodifiableMap(operators);
+            this.names = List.copyOf(operators.keySet());
+            Map<GeneralCompositeDataType, List<String>> byType = new HashMap<>();
+            for (Map.Entry<String, GeneralCompositeDataType> entry : operators.entrySet()) {
+                byType.computeIfAbsent(entry.getValue(), t -> new ArrayList<>()).add(entry.getKey());
+            }
+            byType.replaceAll((t, l) -> List.copyOf(l));
+            this.namesByType = byType;
+        }
+
+        List<String> getNames(GeneralCompositeDataType type) {
+            return namesByType.getOrDefault(type, Collections.emptyList());
+        }
+    }
 
     private static final class GeneralBinaryOperatorFragments extends GeneralFragments {
         GeneralBinaryOperatorFragments() {
@@ -105,45 +139,36 @@ public class GeneralBinaryOperator implements Operator {
         this.name = name;
     }
 
+    private static boolean isEnabled(GeneralErrorHandler handler, String opName) {
+        return handler.getCompositeOption(GeneralCompositeKeys.getId(Kind.BINOP, opName));
+    }
+
     public static Operator getRandomByOptions(GeneralErrorHandler handler) {
-        Operator op;
-        String node;
-        do {
-            // String opName = Randomly.fromList(operators.values());
-            String opName = Randomly.fromList(new ArrayList<>(operators.keySet()));
-            op = new GeneralBinaryOperator(opName);
-            node = "BINOP" + op.toString();
-        } while (!handler.getCompositeOption(node) || !Randomly.getBooleanWithSmallProbability());
-        handler.addScore(node);
-        return op;
+        String opName = sampler.next(handler);
+        if (opName == null) {
+            throw new IgnoreMeException();
+        }
+        handler.addCompositeScore(GeneralCompositeKeys.getId(Kind.BINOP, opName));
+        return new GeneralBinaryOperator(opName);
     }
 
     public static Operator getRandomByType(GeneralErrorHandler handler, GeneralCompositeDataType type) {
-        Operator op;
-        String node;
-        do {
-            // get all op from operators where key is type
-            List<String> availOp = new ArrayList<>();
-            for (String opName : operators.keySet()) {
-                if (operators.get(opName).equals(type)) {
-                    availOp.add(opName);
-                }
-            }
-            // if no op found, return null
-            if (availOp.isEmpty()) {
-                // System.out.println("No operator found for type: " + type);
-                return null;
-            }
-            // op = new GeneralBinaryOperator(opName);
-            op = new GeneralBinaryOperator(Randomly.fromList(availOp));
-            node = "BINOP" + op.toString();
-        } while (!handler.getCompositeOption(node) || !Randomly.getBooleanWithSmallProbability());
-        handler.addScore(node);
-        return op;
+        GeneralOptionSampler<String> typeSampler = typeSamplers.get(type);
+        if (typeSampler == null) {
+            typeSampler = typeSamplers.computeIfAbsent(type,
+                    t -> new GeneralOptionSampler<>(() -> registry.getNames(t), GeneralBinaryOperator::isEnabled));
+        }
+        // if no op found, return null
+        String opName = typeSampler.next(handler);
+        if (opName == null) {
+            return null;
+        }
+        handler.addCompositeScore(GeneralCompositeKeys.getId(Kind.BINOP, opName));
+        return new GeneralBinaryOperator(opName);
     }
 
     public static Map<String, GeneralCompositeDataType> getOperators() {
-        return operators;
+        return registry.operators;
     }
 
     public static GeneralFragments getFragments() {
@@ -178,7 +203,7 @@ public class GeneralBinaryOperator implements Operator {
         return ops;
     }
 
-    public static void loadOperatorsFromFragments(GeneralGlobalState globalState) {
+    public static synchronized void loadOperatorsFromFragments(GeneralGlobalState globalState) {
         // load operators from fragments
         HashMap<String, GeneralCompositeDataType> ops = new HashMap<>();
         if (globalState.getOptions().debugLogs()) {
@@ -198,6 +223,9 @@ public class GeneralBinaryOperator implements Operator {
                 }
             }
         }
+        Map<String, GeneralCompositeDataType> operators = new HashMap<>(registry.operators);
         operators.putAll(ops);
+        registry = new OperatorRegistry(operators);
+        GeneralErrorHandler.markOptionsChanged();
     }
 }
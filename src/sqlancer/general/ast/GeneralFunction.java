@@ -4,15 +4,20 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import sqlancer.IgnoreMeException;
 import sqlancer.Randomly;
 import sqlancer.common.query.SQLQueryAdapter;
+import sqlancer.general.GeneralCompositeKeys;
+import sqlancer.general.GeneralCompositeKeys.Kind;
 import sqlancer.general.GeneralErrorHandler;
 import sqlancer.general.GeneralLearningManager.SQLFeature;
+import sqlancer.general.GeneralOptionSampler;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
 import sqlancer.general.GeneralSchema;
 import sqlancer.general.GeneralSchema.GeneralCompositeDataType;
@@ -27,10 +32,33 @@ public class GeneralFunction {
     private int nrArgs;
     private boolean isVariadic;
     private String name;
-    // String: function name
-    // Integer: number of arguments, if negative then variadic
-    private static Map<String, Integer> functions = initFunctions();
+    // replaced as a whole whenever functions are added, so readers never see a registry that is being modified
+    private static volatile FunctionRegistry registry = new FunctionRegistry(initFunctions());
     private static GeneralFunctionFragments fragments = new GeneralFunctionFragments();
+    private static final GeneralOptionSampler<String> sampler = new GeneralOptionSampler<>(() -> registry.names,
+            (handler, f) -> handler.getCompositeOption(GeneralCompositeKeys.getId(Kind.FUNCTION, f)));
+
+    /**
+     * An immutable version of the known functions, indexed by name and by number of arguments.
+     */
+    private static final class FunctionRegistry {
+        // String: function name
+        // Integer: number of arguments, if negative then variadic
+        private final Map<String, Integer> functions;
+        private final List<String> names;
+        private final Map<Integer, String[]> namesByNrArgs;
+
+        FunctionRegistry(Map<String, Integer> functions) {
+            this.functions = Collections.unmodifiableMap(functions);
+            this.names = List.copyOf(functions.keySet());
+            this.namesByNrArgs = functions.keySet().stream().collect(Collectors.groupingBy(functions::get,
+                    Collectors.collectingAndThen(Collectors.toList(), l -> l.toArray(new String[0]))));
+        }
+
+        String[] getNames(int nrArgs) {
+            return namesByNrArgs.getOrDefault(nrArgs, new String[0]);
+        }
+    }
 
     private static final class GeneralFunctionFragments extends GeneralFragments {
         GeneralFunctionFragments() {
@@ -82,10 +110,9 @@ public class GeneralFunction {
         @Override
         protected String getExamples() {
             StringBuilder sb = new StringBuilder();
+            FunctionRegistry current = registry;
             for (int i = 0; i < 3; i++) {
-                final int ind = i;
-                String funcName = Randomly.fromList(
-                        functions.keySet().stream().filter(f -> functions.get(f) == ind).collect(Collectors.toList()));
+                String funcName = Randomly.fromOptions(current.getNames(i));
                 sb.append(String.format("%d,%s\n", i, funcName));
             }
             // sb.append(
@@ -103,7 +130,7 @@ public class GeneralFunction {
     }
 
     public static int getNrFunctionsNum() {
-        return functions.size();
+        return registry.functions.size();
     }
 
     public GeneralFunction(int nrArgs, boolean isVariadic, String name) {
@@ -176,39 +203,37 @@ public class GeneralFunction {
 
     public static List<String> getFuncNames() {
         // return all the keys in functions
-        return List.copyOf(functions.keySet());
+        return registry.names;
     }
 
     public static Map<String, Integer> getFunctions() {
-        return functions;
+        return registry.functions;
     }
 
     public static GeneralFunction getRandomByOptions(GeneralErrorHandler handler) {
-        GeneralFunction op;
-        String node;
-        if (functions.isEmpty()) {
+        if (registry.functions.isEmpty()) {
             return null;
         }
-        do {
-            // select a random string-integer pair from hashmap functions
-            // TODO: There's a concurrency issue here
-            String funcName = Randomly.fromList(List.copyOf(functions.keySet()));
-            int funcArgs = functions.get(funcName);
-            node = "FUNCTION" + "-" + funcName;
-            op = new GeneralFunction(funcArgs, funcName);
-        } while (!handler.getCompositeOption(node) || !Randomly.getBooleanWithSmallProbability());
-        handler.addScore(node);
-        return op;
+        String funcName = sampler.next(handler);
+        if (funcName == null) {
+            throw new IgnoreMeException();
+        }
+        handler.addCompositeScore(GeneralCompositeKeys.getId(Kind.FUNCTION, funcName));
+        // functions are never removed, so the current registry knows every function the sampler returns
+        return new GeneralFunction(registry.functions.get(funcName), funcName);
     }
 
     public static List<GeneralFunction> getRandomCompatibleFunctions(GeneralErrorHandler handler,
             GeneralCompositeDataType returnType) {
-        List<String> funcNames = functions.keySet().stream().filter(f -> handler.getCompositeOption("FUNCTION", f))
+        Map<String, Integer> functions = registry.functions;
+        List<String> funcNames = functions.keySet().stream()
+                .filter(f -> handler.getCompositeOption(GeneralCompositeKeys.getId(Kind.FUNCTION, f)))
                 // only get the functions that are compatible with the return type
                 // this is manually maintained
                 // .filter(f ->
                 // (GeneralSchema.getAvailFunctions(returnType.toString()).contains(f)))
-                .filter(f -> handler.getCompositeOption(returnType.toString(), f)).collect(Collectors.toList());
+                .filter(f -> handler.getCompositeOption(GeneralCompositeKeys.getId(Kind.FUNCTION_TYPE, f, returnType)))
+                .collect(Collectors.toList());
 
         return funcNames.stream().map(f -> new GeneralFunction(functions.get(f), f)).collect(Collectors.toList());
     }
@@ -259,8 +284,11 @@ public class GeneralFunction {
         mergeFunctions(newFuncsUpper);
     }
 
-    public static void mergeFunctions(Map<String, Integer> newFunctions) {
+    public static synchronized void mergeFunctions(Map<String, Integer> newFunctions) {
+        Map<String, Integer> functions = new HashMap<>(registry.functions);
         functions.putAll(newFunctions);
+        registry = new FunctionRegistry(functions);
+        GeneralErrorHandler.markOptionsChanged();
     }
 
     public static GeneralFragments getFragments() {
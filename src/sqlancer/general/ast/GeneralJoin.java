@@ -3,12 +3,14 @@ package sqlancer.general.ast;
 import java.util.ArrayList;
 import java.util.List;
 
+import sqlancer.IgnoreMeException;
 import sqlancer.Randomly;
 import sqlancer.common.ast.newast.Node;
 import sqlancer.common.ast.newast.TableReferenceNode;
 import sqlancer.common.gen.ExpressionGenerator;
 import sqlancer.general.GeneralErrorHandler;
 import sqlancer.general.GeneralErrorHandler.GeneratorNode;
+import sqlancer.general.GeneralOptionSampler;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
 import sqlancer.general.GeneralSchema.GeneralColumn;
 import sqlancer.general.GeneralSchema.GeneralTable;
@@ -28,31 +30,34 @@ public class GeneralJoin implements Node<GeneralExpression> {
         INNER, NATURAL, LEFT, RIGHT;
 
         private static final List<JoinType> VALUE_NOT_NJ = List.of(INNER, LEFT, RIGHT);
+        private static final GeneralOptionSampler<JoinType> SAMPLER = new GeneralOptionSampler<>(
+                () -> List.of(values()), (handler, joinType) -> handler.getOption(joinType.getNode()));
+        private static final GeneralOptionSampler<JoinType> SAMPLER_NOT_NJ = new GeneralOptionSampler<>(
+                () -> VALUE_NOT_NJ, (handler, joinType) -> handler.getOption(joinType.getNode()));
+
+        private GeneratorNode getNode() {
+            return GeneratorNode.valueOf(name() + "_JOIN");
+        }
 
         public static JoinType getRandom() {
             return Randomly.fromOptions(values());
         }
 
         public static JoinType getRandomByOptions(GeneralErrorHandler handler) {
-            // TODO refactor this function and also DBFunction one
-            JoinType joinType;
-            GeneratorNode node;
-            do {
-                joinType = getRandom();
-                node = GeneratorNode.valueOf(joinType.name() + "_JOIN");
-            } while (!handler.getOption(node) || !Randomly.getBooleanWithSmallProbability());
-            handler.addScore(node);
-            return joinType;
+            return getRandomBySampler(handler, SAMPLER);
         }
 
         public static JoinType getRandomByOptionsWithoutNJ(GeneralErrorHandler handler) {
-            JoinType joinType;
-            GeneratorNode node;
-            do {
-                joinType = Randomly.fromList(VALUE_NOT_NJ);
-                node = GeneratorNode.valueOf(joinType.name() + "_JOIN");
-            } while (!handler.getOption(node) || !Randomly.getBoolean());
-            handler.addScore(node);
+            return getRandomBySampler(handler, SAMPLER_NOT_NJ);
+        }
+
+        private static JoinType getRandomBySampler(GeneralErrorHandler handler,
+                GeneralOptionSampler<JoinType> sampler) {
+            JoinType joinType = sampler.next(handler);
+            if (joinType == null) {
+                throw new IgnoreMeException();
+            }
+            handler.addScore(joinType.getNode());
             return joinType;
         }
     }
@@ -60,19 +65,23 @@ public class GeneralJoin implements Node<GeneralExpression> {
     public enum OuterType {
         FULL, LEFT, RIGHT;
 
+        private static final GeneralOptionSampler<OuterType> SAMPLER = new GeneralOptionSampler<>(
+                () -> List.of(values()), (handler, outerType) -> handler.getOption(outerType.getNode()));
+
+        private GeneratorNode getNode() {
+            return GeneratorNode.valueOf(name() + "_NATURAL_JOIN");
+        }
+
         public static OuterType getRandom() {
             return Randomly.fromOptions(values());
         }
 
         public static OuterType getRandomByOptions(GeneralErrorHandler handler) {
-            // TODO refactor this function and also DBFunction one
-            OuterType outerType;
-            GeneratorNode node;
-            do {
-                outerType = getRandom();
-                node = GeneratorNode.valueOf(outerType.name() + "_NATURAL_JOIN");
-            } while (!handler.getOption(node) || !Randomly.getBooleanWithSmallProbability());
-            handler.addScore(node);
+            OuterType outerType = SAMPLER.next(handler);
+            if (outerType == null) {
+                throw new IgnoreMeException();
+            }
+            handler.addScore(outerType.getNode());
             return outerType;
         }
     }
@@ -2,6 +2,8 @@ package sqlancer.general.ast;
 
 import sqlancer.Randomly;
 import sqlancer.common.ast.BinaryOperatorNode.Operator;
+import sqlancer.general.GeneralCompositeKeys;
+import sqlancer.general.GeneralCompositeKeys.Kind;
 import sqlancer.general.GeneralErrorHandler;
 import sqlancer.general.GeneralErrorHandler.GeneratorNode;
 import sqlancer.general.GeneralSchema.GeneralCompositeDataType;
@@ -39,14 +41,15 @@ public enum GeneralUnaryPostfixOperator implements Operator {
     public static Operator getRandomByOptions(GeneralErrorHandler handler, GeneralCompositeDataType type) {
         Operator op;
         GeneratorNode node;
+        int compositeId;
         do {
             op = Randomly.fromOptions(values());
             node = GeneratorNode.valueOf(op.toString());
-        } while (!handler.getOption(node)
-                || !handler.getCompositeOption(node.toString(), type.getPrimitiveDataType().toString())
+            compositeId = GeneralCompositeKeys.getId(Kind.OPERATOR_TYPE, node, type.getPrimitiveDataType());
+        } while (!handler.getOption(node) || !handler.getCompositeOption(compositeId)
                 || !Randomly.getBooleanWithSmallProbability());
         handler.addScore(node);
-        handler.addScore(node.toString() + "-" + type.getPrimitiveDataType().toString());
+        handler.addCompositeScore(compositeId);
         return op;
     }
 
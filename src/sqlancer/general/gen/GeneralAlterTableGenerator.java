@@ -53,7 +53,7 @@ public final class GeneralAlterTableGenerator {
             sb.append(GeneralCompositeDataType.getRandomWithoutNull().toString());
             if (Randomly.getBoolean()) {
                 sb.append(" USING ");
-                sb.append(GeneralToStringVisitor.asString(gen.generateExpression()));
+                GeneralToStringVisitor.appendTo(sb, gen.generateExpression());
             }
             // no need to change the schema
             couldAffectSchema = false;
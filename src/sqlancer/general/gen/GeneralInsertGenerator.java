@@ -25,14 +25,18 @@ public class GeneralInsertGenerator extends AbstractInsertGenerator<GeneralColum
     }
 
     public static SQLQueryAdapter getQuery(GeneralGlobalState globalState) {
-        return new GeneralInsertGenerator(globalState).generate();
+        GeneralTable table = globalState.getSchema().getRandomTable(t -> !t.isView());
+        return new GeneralInsertGenerator(globalState).generate(table);
+    }
+
+    public static SQLQueryAdapter getQuery(GeneralGlobalState globalState, GeneralTable table) {
+        return new GeneralInsertGenerator(globalState).generate(table);
     }
 
-    private SQLQueryAdapter generate() {
+    private SQLQueryAdapter generate(GeneralTable table) {
         globalState.setCreatingDatabase(true);
         sb.append("INSERT INTO ");
         globalState.getHandler().addScore(GeneratorNode.INSERT);
-        GeneralTable table = globalState.getSchema().getRandomTable(t -> !t.isView());
         List<GeneralColumn> columns = table.getRandomNonEmptyColumnSubset();
         sb.append(table.getName());
         sb.append("(");
@@ -66,11 +70,11 @@ public class GeneralInsertGenerator extends AbstractInsertGenerator<GeneralColum
     protected void insertValue(GeneralColumn columnGeneral) {
         if (globalState.getHandler().getOption(GeneratorNode.UNTYPE_EXPR)
                 || Randomly.getBooleanWithSmallProbability()) {
-            sb.append(GeneralToStringVisitor.asString(new GeneralExpressionGenerator(globalState).generateConstant()));
+            GeneralToStringVisitor.appendTo(sb, new GeneralExpressionGenerator(globalState).generateConstant());
         } else {
             GeneralCompositeDataType columnType = columnGeneral.getType();
-            sb.append(GeneralToStringVisitor
-                    .asString(new GeneralTypedExpressionGenerator(globalState).generateConstant(columnType)));
+            GeneralToStringVisitor.appendTo(sb,
+                    new GeneralTypedExpressionGenerator(globalState).generateConstant(columnType));
         }
     }
 
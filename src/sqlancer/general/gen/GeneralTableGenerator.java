@@ -9,6 +9,8 @@ import java.util.stream.Collectors;
 import sqlancer.Randomly;
 import sqlancer.common.query.ExpectedErrors;
 import sqlancer.common.query.SQLQueryAdapter;
+import sqlancer.general.GeneralCompositeKeys;
+import sqlancer.general.GeneralCompositeKeys.Kind;
 import sqlancer.general.GeneralErrorHandler.GeneratorNode;
 import sqlancer.general.GeneralLearningManager.SQLFeature;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
@@ -172,7 +174,7 @@ public final class GeneralTableGenerator {
                 columnType = GeneralCompositeDataType.getRandomWithoutNull();
             }
             // TODO: make this as a feedback for the learner
-            globalState.getHandler().addScore("COLUMN-" + columnType.toString());
+            globalState.getHandler().addCompositeScore(GeneralCompositeKeys.getId(Kind.COLUMN, columnType));
             columns.add(new GeneralColumn(columnName, columnType, false, false));
         }
         return columns;
@@ -4,8 +4,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import sqlancer.IgnoreMeException;
 import sqlancer.Randomly;
 import sqlancer.common.ast.BinaryOperatorNode.Operator;
 import sqlancer.common.ast.newast.NewBetweenOperatorNode;
@@ -19,8 +21,12 @@ import sqlancer.common.ast.newast.NewUnaryPostfixOperatorNode;
 import sqlancer.common.ast.newast.NewUnaryPrefixOperatorNode;
 import sqlancer.common.ast.newast.Node;
 import sqlancer.common.gen.TypedExpressionGenerator;
+import sqlancer.general.GeneralCompositeKeys;
+import sqlancer.general.GeneralCompositeKeys.Kind;
 import sqlancer.general.GeneralErrorHandler;
 import sqlancer.general.GeneralErrorHandler.GeneratorNode;
+import sqlancer.general.GeneralFeatureScore;
+import sqlancer.general.GeneralOptionSampler;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
 import sqlancer.general.GeneralSchema;
 import sqlancer.general.GeneralSchema.GeneralColumn;
@@ -45,6 +51,15 @@ public class GeneralTypedExpressionGenerator
     private final GeneralGlobalState globalState;
     private boolean nullFlag;
 
+    // caches of the type candidates, valid for the options version, the supported types (which are replaced when a
+    // type is learned) and the columns they were built for
+    private int cacheVersion = -1;
+    private List<GeneralCompositeDataType> cacheTypes;
+    private final Map<String, Map<Integer, List<GeneralCompositeDataType>>> functionArgTypes = new HashMap<>();
+    private final Map<String, List<GeneralCompositeDataType>> binaryOperatorTypes = new HashMap<>();
+    private List<GeneralColumn> bucketColumns;
+    private final Map<GeneralCompositeDataType, List<GeneralColumn>> columnBuckets = new HashMap<>();
+
     public GeneralTypedExpressionGenerator(GeneralGlobalState globalState) {
         this.globalState = globalState;
     }
@@ -82,8 +97,8 @@ public class GeneralTypedExpressionGenerator
 
     @Override
     public List<Node<GeneralExpression>> generateOrderBys() {
-        HashMap<String, Integer> tmpCompositeScore = new HashMap<>(
-                globalState.getHandler().getGeneratorInfo().getCompositeGeneratorScore());
+        GeneralFeatureScore tmpCompositeScore = new GeneralFeatureScore(
+                globalState.getHandler().getGeneratorInfo().getCompositeScore());
         // globalState.getLogger().writeCurrent("-- " + tmpCompositeScore);
         List<Node<GeneralExpression>> expr = super.generateOrderBys();
         List<Node<GeneralExpression>> orderingTerms = new ArrayList<>(expr.size());
@@ -105,15 +120,48 @@ public class GeneralTypedExpressionGenerator
     // .collect(Collectors.toList());
     // }
 
+    private void validateTypeCaches() {
+        int version = GeneralErrorHandler.getOptionsVersion();
+        List<GeneralCompositeDataType> types = GeneralCompositeDataType.getSupportedTypes();
+        if (version != cacheVersion || types != cacheTypes) {
+            functionArgTypes.clear();
+            binaryOperatorTypes.clear();
+            cacheVersion = version;
+            cacheTypes = types;
+        }
+    }
+
+    private List<GeneralCompositeDataType> getFunctionArgTypes(GeneralFunction function, int ind,
+            GeneralErrorHandler handler) {
+        validateTypeCaches();
+        return functionArgTypes.computeIfAbsent(function.toString(), f -> new HashMap<>()).computeIfAbsent(ind,
+                i -> cacheTypes.stream().filter(t -> handler.getCompositeOptionNullAsFalse(
+                        GeneralCompositeKeys.getId(Kind.FUNCTION_ARG, function.toString(), ind, t)))
+                        .collect(Collectors.toList()));
+    }
+
+    private List<GeneralCompositeDataType> getBinaryOperatorTypes(Operator op, GeneralErrorHandler handler) {
+        validateTypeCaches();
+        return binaryOperatorTypes.computeIfAbsent(op.toString(),
+                o -> cacheTypes.stream().filter(t -> handler
+                        .getCompositeOptionNullAsFalse(GeneralCompositeKeys.getId(Kind.BINOP_TYPE, o, t)))
+                        .collect(Collectors.toList()));
+    }
+
+    private List<GeneralColumn> getCompatibleColumns(GeneralCompositeDataType type) {
+        if (bucketColumns != columns) {
+            columnBuckets.clear();
+            bucketColumns = columns;
+        }
+        return columnBuckets.computeIfAbsent(type, t -> columns.stream()
+                .filter(c -> isTypeCompatible(c.getType(), t)).collect(Collectors.toList()));
+    }
+
     private List<Node<GeneralExpression>> generateFunctionExpressions(GeneralFunction function, int depth,
             GeneralErrorHandler handler) {
         List<Node<GeneralExpression>> args = new ArrayList<>();
         for (int i = 0; i < function.getNrArgs(); i++) {
-            final int ind = i;
-            // TODO: looks like we could make this invarian out of the loop. Not sure if stronly needed.
-            List<GeneralCompositeDataType> availTypes = GeneralCompositeDataType.getSupportedTypes().stream()
-                    .filter(t -> handler.getCompositeOptionNullAsFalse(function.toString() + "-" + ind + t.toString()))
-                    .collect(Collectors.toList());
+            List<GeneralCompositeDataType> availTypes = getFunctionArgTypes(function, i, handler);
             GeneralCompositeDataType type;
             // TODO: make it fully controlled by the handler
             if (availTypes.isEmpty() || Randomly.getBooleanWithRatherLowProbability()) {
@@ -126,8 +174,8 @@ public class GeneralTypedExpressionGenerator
             args.add(newExpr);
             // check if newExpr is a
             if (!nullFlag) {
-                String key = function.toString() + "-" + ind + type.toString();
-                handler.addScore(key);
+                handler.addCompositeScore(
+                        GeneralCompositeKeys.getId(Kind.FUNCTION_ARG, function.toString(), i, type));
             }
             // nullFlag = false;
         }
@@ -160,9 +208,10 @@ public class GeneralTypedExpressionGenerator
                     nullFlag = false;
                     NewFunctionNode<GeneralExpression, GeneralFunction> functionNode = new NewFunctionNode<>(
                             generateFunctionExpressions(function, depth + 1, handler), function);
-                    handler.addScore("FUNCTION-" + function.toString());
+                    handler.addCompositeScore(GeneralCompositeKeys.getId(Kind.FUNCTION, function.toString()));
                     if (!nullFlag) {
-                        handler.addScore(type.toString() + "-" + function.toString());
+                        handler.addCompositeScore(
+                                GeneralCompositeKeys.getId(Kind.FUNCTION_TYPE, function.toString(), type));
                     }
                     nullFlag = false;
                     return functionNode;
@@ -194,10 +243,7 @@ public class GeneralTypedExpressionGenerator
                 handler.addScore(GeneratorNode.BINARY_OPERATOR);
                 Operator op = GeneralBinaryOperator.getRandomByType(globalState.getHandler(), type);
                 if (op != null) {
-                    List<GeneralCompositeDataType> availTypes = GeneralCompositeDataType.getSupportedTypes().stream()
-                            .filter(t -> handler
-                                    .getCompositeOptionNullAsFalse("BINOP" + op.toString() + "-" + t.toString()))
-                            .collect(Collectors.toList());
+                    List<GeneralCompositeDataType> availTypes = getBinaryOperatorTypes(op, handler);
                     GeneralCompositeDataType newType;
                     if (availTypes.isEmpty() || Randomly.getBooleanWithRatherLowProbability()) {
                         newType = getRandomType();
@@ -207,7 +253,8 @@ public class GeneralTypedExpressionGenerator
                     Node<GeneralExpression> left = generateExpression(newType, depth + 1);
                     Node<GeneralExpression> right = generateExpression(newType, depth + 1);
                     if (!nullFlag) {
-                        handler.addScore("BINOP" + op.toString() + "-" + newType.toString());
+                        handler.addCompositeScore(
+                                GeneralCompositeKeys.getId(Kind.BINOP_TYPE, op.toString(), newType));
                     }
                     return new NewBinaryOperatorNode<GeneralExpression>(left, right, op);
                 }
@@ -273,30 +320,22 @@ public class GeneralTypedExpressionGenerator
         BINARY_OPERATOR(GeneralBinaryOperator.getOperators().size()),
         UNARY_POSTFIX(GeneralUnaryPostfixOperator.values().length), IN(1), BETWEEN(1);
 
+        private static final GeneralOptionSampler<BooleanExpression> SAMPLER = new GeneralOptionSampler<>(
+                () -> List.of(values()), expr -> expr.proportion,
+                (handler, expr) -> handler.getOption(GeneratorNode.valueOf(expr.toString())));
+
         private final int proportion;
 
         BooleanExpression(int proportion) {
             this.proportion = proportion;
         }
 
-        private static List<BooleanExpression> getOptionsByProportions() {
-            List<BooleanExpression> options = new ArrayList<>();
-            for (BooleanExpression expr : values()) {
-                for (int i = 0; i < expr.proportion; i++) {
-                    options.add(expr);
-                }
-            }
-            return options;
-        }
-
         public static BooleanExpression getRandomByOptions(GeneralErrorHandler handler) {
-            BooleanExpression expr;
-            GeneratorNode node;
-            do {
-                expr = Randomly.fromList(getOptionsByProportions());
-                node = GeneratorNode.valueOf(expr.toString());
-            } while (!handler.getOption(node) || !Randomly.getBooleanWithSmallProbability());
-            handler.addScore(node);
+            BooleanExpression expr = SAMPLER.next(handler);
+            if (expr == null) {
+                throw new IgnoreMeException();
+            }
+            handler.addScore(GeneratorNode.valueOf(expr.toString()));
             return expr;
         }
     }
@@ -406,7 +445,7 @@ public class GeneralTypedExpressionGenerator
 
     @Override
     protected boolean canGenerateColumnOfType(GeneralCompositeDataType type) {
-        return columns.stream().anyMatch(c -> isTypeCompatible(c.getType(), type));
+        return !getCompatibleColumns(type).isEmpty();
     }
 
     @Override
@@ -454,8 +493,7 @@ public class GeneralTypedExpressionGenerator
 
     @Override
     protected Node<GeneralExpression> generateColumn(GeneralCompositeDataType type) {
-        GeneralColumn column = Randomly.fromList(
-                columns.stream().filter(c -> isTypeCompatible(c.getType(), type)).collect(Collectors.toList()));
+        GeneralColumn column = Randomly.fromList(getCompatibleColumns(type));
         // if (type.getPrimitiveDataType().equals(GeneralDataType.VARTYPE)) {
         // globalState.getLogger().writeCurrent("-- type " + type);
         // }
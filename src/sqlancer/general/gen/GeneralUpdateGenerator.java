@@ -39,7 +39,7 @@ public final class GeneralUpdateGenerator extends AbstractUpdateGenerator<Genera
         updateColumns(columns);
         if (globalState.getHandler().getOption(GeneratorNode.UPDATE_WHERE) && Randomly.getBoolean()) {
             sb.append(" WHERE ");
-            sb.append(GeneralToStringVisitor.asString(gen.generateExpression()));
+            GeneralToStringVisitor.appendTo(sb, gen.generateExpression());
             globalState.getHandler().addScore(GeneratorNode.UPDATE_WHERE);
         }
 
@@ -65,7 +65,7 @@ public final class GeneralUpdateGenerator extends AbstractUpdateGenerator<Genera
                 expr = gen.generateConstant();
             }
         }
-        sb.append(GeneralToStringVisitor.asString(expr));
+        GeneralToStringVisitor.appendTo(sb, expr);
     }
 
 }
@@ -1,13 +1,13 @@
 package sqlancer.general.gen;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 import sqlancer.Randomly;
 import sqlancer.common.query.ExpectedErrors;
 import sqlancer.common.query.SQLQueryAdapter;
 import sqlancer.general.GeneralErrorHandler.GeneratorNode;
+import sqlancer.general.GeneralFeatureScore;
 import sqlancer.general.GeneralErrors;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
 import sqlancer.general.GeneralSchema.GeneralColumn;
@@ -41,10 +41,10 @@ public final class GeneralViewGenerator {
             columns.add(new GeneralColumn("c" + i, GeneralCompositeDataType.getRandomWithoutNull(), false, false));
         }
         sb.append(") AS ");
-        HashMap<String, Integer> tmpCompositeScore = new HashMap<>(
-                globalState.getHandler().getGeneratorInfo().getCompositeGeneratorScore());
+        GeneralFeatureScore tmpCompositeScore = new GeneralFeatureScore(
+                globalState.getHandler().getGeneratorInfo().getCompositeScore());
         GeneralSelect select = GeneralRandomQuerySynthesizer.generateSelect(globalState, columns);
-        sb.append(GeneralToStringVisitor.asString(select));
+        GeneralToStringVisitor.appendTo(sb, select);
         GeneralTable newTable = new GeneralTable(viewName, columns, true);
         newTable.getColumns().forEach(c -> c.setTable(newTable));
         globalState.setUpdateTable(newTable);
@@ -3,7 +3,6 @@ package sqlancer.general.learner;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
@@ -24,6 +23,7 @@ import sqlancer.common.gen.ExpressionGenerator;
 import sqlancer.general.GeneralErrorHandler;
 import sqlancer.general.GeneralLearningManager.SQLFeature;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
+import sqlancer.general.GeneralReportWriter;
 import sqlancer.general.GeneralSchema.GeneralColumn;
 import sqlancer.general.GeneralSchema.GeneralTable;
 import sqlancer.general.GeneralToStringVisitor;
@@ -90,12 +90,11 @@ public abstract class GeneralFragments {
             return null;
         }) {
             @Override
-            public String toString() {
+            public String render(GeneralGlobalState state) {
                 return "";
             }
         };
 
-        private Node<GeneralExpression> node;
         private GeneralVariableGenerator<GeneralGlobalState> generator;
         private String description = "";
 
@@ -108,13 +107,9 @@ public abstract class GeneralFragments {
             this.description = description;
         }
 
-        public void genVariable(GeneralGlobalState state) {
-            node = generator.generate(state);
-        }
-
-        @Override
-        public String toString() {
-            return GeneralToStringVisitor.asString(node);
+        // the value is returned rather than stored, as the constants are shared by all threads
+        public String render(GeneralGlobalState state) {
+            return GeneralToStringVisitor.asString(generator.generate(state));
         }
 
         public String getDescription() {
@@ -127,18 +122,37 @@ public abstract class GeneralFragments {
         private final String fmtString;
         private final List<GeneralFragmentVariable> vars;
         private final String key;
+        // the literal text before each variable and after the last one, or null if the format string uses other
+        // conversions than %s, %% and %n
+        private final String[] literals;
 
         public GeneralFragmentChoice(String fmtString, List<GeneralFragmentVariable> vars, String key) {
             this.fmtString = fmtString;
             this.vars = vars;
             this.key = key;
+            this.literals = compile(fmtString, vars.size());
         }
 
         public String toString(GeneralGlobalState state) {
-            for (GeneralFragmentVariable var : vars) {
-                var.genVariable(state);
+            StringBuilder sb = new StringBuilder();
+            appendTo(sb, state);
+            return sb.toString();
+        }
+
+        public void appendTo(StringBuilder sb, GeneralGlobalState state) {
+            if (literals == null) {
+                Object[] values = new Object[vars.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = vars.get(i).render(state);
+                }
+                sb.append(String.format(fmtString, values));
+                return;
+            }
+            for (int i = 0; i < vars.size(); i++) {
+                sb.append(literals[i]);
+                sb.append(vars.get(i).render(state));
             }
-            return String.format(fmtString, vars.stream().map(var -> var.toString()).toArray());
+            sb.append(literals[vars.size()]);
         }
 
         @Override
@@ -181,6 +195,35 @@ public abstract class GeneralFragments {
         this.fragments = new HashMap<>();
     }
 
+    private static String[] compile(String fmtString, int nrVars) {
+        String[] literals = new String[nrVars + 1];
+        int nrLiterals = 0;
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < fmtString.length(); i++) {
+            char c = fmtString.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            char conversion = i + 1 < fmtString.length() ? fmtString.charAt(++i) : 0;
+            if (conversion == '%') {
+                literal.append('%');
+            } else if (conversion == 'n') {
+                literal.append(System.lineSeparator());
+            } else if (conversion == 's' && nrLiterals < nrVars) {
+                literals[nrLiterals++] = literal.toString();
+                literal.setLength(0);
+            } else {
+                return null;
+            }
+        }
+        if (nrLiterals != nrVars) {
+            return null;
+        }
+        literals[nrVars] = literal.toString();
+        return literals;
+    }
+
     public void setLearn(boolean learnFlag) {
         this.learnFlag = learnFlag;
     }
@@ -228,20 +271,22 @@ public abstract class GeneralFragments {
     }
 
     public String get(int index, GeneralGlobalState state) {
+        StringBuilder sb = new StringBuilder();
+        get(index, state, sb);
+        return sb.toString();
+    }
+
+    public void get(int index, GeneralGlobalState state, StringBuilder sb) {
         String key = String.valueOf(index);
         if (learnFlag) {
-            return getPlaceHolder(index);
+            sb.append(getPlaceHolder(index));
+            return;
         }
-        if (fragments.containsKey(key)) {
-            List<GeneralFragmentChoice> choices = fragments.get(key);
-            if (choices.isEmpty()) {
-                return "";
-            }
+        List<GeneralFragmentChoice> choices = fragments.get(key);
+        if (choices != null && !choices.isEmpty()) {
             GeneralFragmentChoice choice = Randomly.fromList(choices);
             state.getHandler().addScore(choice);
-            return choice.toString(state);
-        } else {
-            return "";
+            choice.appendTo(sb, state);
         }
     }
 
@@ -460,16 +505,17 @@ public abstract class GeneralFragments {
             System.out.println(String.format("Dumping fragments for %s", getStatementType()));
         }
         File dir = globalState.getLogger().getLearnerFileDir();
-        try (FileWriter writer = new FileWriter(
-                new File(dir, String.format("%s-%s-config.txt", globalState.getDatabaseName(), getStatementType())))) {
-            for (String key : fragments.keySet()) {
-                for (GeneralFragmentChoice choice : fragments.get(key)) {
-                    writer.write(String.format("%s,%s\n", key, choice.getFragmentName()));
-                }
+        // the fragments may still change, so render them before handing them to the reporter
+        StringBuilder sb = new StringBuilder();
+        for (String key : fragments.keySet()) {
+            for (GeneralFragmentChoice choice : fragments.get(key)) {
+                sb.append(String.format("%s,%s\n", key, choice.getFragmentName()));
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+        String content = sb.toString();
+        GeneralReportWriter.submit(
+                new File(dir, String.format("%s-%s-config.txt", globalState.getDatabaseName(), getStatementType())),
+                () -> content, globalState.getDbmsSpecificOptions().reportInterval);
     }
 
     protected String getVariables() {
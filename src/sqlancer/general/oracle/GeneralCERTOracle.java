@@ -0,0 +1,242 @@
+package sqlancer.general.oracle;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import sqlancer.IgnoreMeException;
+import sqlancer.Randomly;
+import sqlancer.Reproducer;
+import sqlancer.common.ast.newast.ColumnReferenceNode;
+import sqlancer.common.ast.newast.NewBinaryOperatorNode;
+import sqlancer.common.ast.newast.Node;
+import sqlancer.common.ast.newast.TableReferenceNode;
+import sqlancer.common.gen.ExpressionGenerator;
+import sqlancer.common.oracle.CERTOracleBase;
+import sqlancer.common.oracle.TestOracle;
+import sqlancer.general.GeneralErrorHandler.GeneratorNode;
+import sqlancer.general.GeneralErrors;
+import sqlancer.general.GeneralProvider.GeneralGlobalState;
+import sqlancer.general.GeneralQueryPlan;
+import sqlancer.general.GeneralSchema.GeneralColumn;
+import sqlancer.general.GeneralSchema.GeneralTable;
+import sqlancer.general.GeneralSchema.GeneralTables;
+import sqlancer.general.GeneralToStringVisitor;
+import sqlancer.general.ast.GeneralBinaryLogicalOperator;
+import sqlancer.general.ast.GeneralConstant;
+import sqlancer.general.ast.GeneralExpression;
+import sqlancer.general.ast.GeneralJoin;
+import sqlancer.general.ast.GeneralJoin.JoinType;
+import sqlancer.general.ast.GeneralSelect;
+import sqlancer.general.gen.GeneralRandomQuerySynthesizer;
+
+/**
+ * Cardinality Estimation Restriction Testing (CERT): a query is mutated so that it can only return fewer rows, e.g., by
+ * adding a conjunct to its WHERE clause or by turning an outer join into an inner join, or only more rows, and the
+ * estimated number of rows in the plans of both queries must change in the same direction. An inconsistent estimate
+ * is not a wrong result, but a performance issue of the optimizer.
+ *
+ * The estimates are read from the roots of the plans as learned by {@link GeneralQueryPlan}; on engines that cannot
+ * show plans or whose plans contain no estimates, every check is skipped, and so is a check whose plans have no
+ * estimate at their root.
+ */
+public class GeneralCERTOracle extends CERTOracleBase<GeneralGlobalState> implements TestOracle<GeneralGlobalState> {
+
+    private GeneralSelect select;
+    private ExpressionGenerator<Node<GeneralExpression>> gen;
+    private Reproducer<GeneralGlobalState> reproducer;
+    private String lastQueryString;
+
+    public GeneralCERTOracle(GeneralGlobalState globalState) {
+        super(globalState);
+        GeneralErrors.addExpressionErrors(errors);
+    }
+
+    private static class GeneralCERTReproducer implements Reproducer<GeneralGlobalState> {
+        private final String firstQueryString;
+        private final String secondQueryString;
+        private final boolean increase;
+        private String errorMessage;
+
+        GeneralCERTReproducer(String firstQueryString, String secondQueryString, boolean increase,
+                String errorMessage) {
+            this.firstQueryString = firstQueryString;
+            this.secondQueryString = secondQueryString;
+            this.increase = increase;
+            this.errorMessage = errorMessage;
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        @Override
+        public boolean bugStillTriggers(GeneralGlobalState globalState) {
+            try {
+                long firstEstimate = GeneralQueryPlan.getEstimatedRowCount(globalState, firstQueryString);
+                long secondEstimate = GeneralQueryPlan.getEstimatedRowCount(globalState, secondQueryString);
+                if (firstEstimate == -1 || secondEstimate == -1) {
+                    return false;
+                }
+                if (isInconsistent(increase, firstEstimate, secondEstimate)) {
+                    errorMessage = getInconsistencyMessage(firstQueryString, firstEstimate, secondQueryString,
+                            secondEstimate);
+                    return true;
+                }
+            } catch (IgnoreMeException e) {
+                // the estimates cannot be obtained
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void check() throws SQLException {
+        reproducer = null;
+        GeneralTables randomTables = state.getSchema().getRandomTableNonEmptyTables();
+        List<GeneralColumn> columns = randomTables.getColumns();
+        gen = GeneralRandomQuerySynthesizer.getExpressionGenerator(state, columns);
+        List<TableReferenceNode<GeneralExpression, GeneralTable>> tableList = randomTables.getTables().stream()
+                .map(t -> new TableReferenceNode<GeneralExpression, GeneralTable>(t)).collect(Collectors.toList());
+        List<Node<GeneralExpression>> joins = GeneralJoin.getJoins(tableList, state);
+
+        select = new GeneralSelect();
+        select.setFetchColumns(columns.stream().map(c -> new ColumnReferenceNode<GeneralExpression, GeneralColumn>(c))
+                .collect(Collectors.toList()));
+        select.setFromList(tableList.stream().collect(Collectors.toList()));
+        select.setJoinList(joins);
+        if (Randomly.getBoolean()) {
+            select.setWhereClause(gen.generateExpression());
+        }
+
+        String firstQueryString = GeneralToStringVisitor.asString(select);
+        lastQueryString = firstQueryString;
+        long firstEstimate = getEstimate(firstQueryString);
+        boolean increase = mutate(Mutator.GROUPBY, Mutator.HAVING);
+        String secondQueryString = GeneralToStringVisitor.asString(select);
+        lastQueryString = secondQueryString;
+        long secondEstimate = getEstimate(secondQueryString);
+
+        if (isInconsistent(increase, firstEstimate, secondEstimate)) {
+            state.getHandler().appendScoreToTable(true, true, secondQueryString);
+            String errorMessage = getInconsistencyMessage(firstQueryString, firstEstimate, secondQueryString,
+                    secondEstimate);
+            reproducer = new GeneralCERTReproducer(firstQueryString, secondQueryString, increase, errorMessage);
+            throw new AssertionError(errorMessage);
+        }
+        state.getHandler().appendScoreToTable(true, true, secondQueryString);
+    }
+
+    private long getEstimate(String queryString) {
+        if (state.getOptions().logEachSelect()) {
+            state.getLogger().writeCurrent(queryString);
+        }
+        state.getState().getLocalState().log(queryString);
+        // throws an IgnoreMeException if the engine cannot show plans or estimates, which is not a bug
+        long estimate = GeneralQueryPlan.getEstimatedRowCount(state, queryString);
+        if (estimate == -1) {
+            state.getHandler().appendScoreToTable(false, true, queryString);
+            throw new IgnoreMeException();
+        }
+        return estimate;
+    }
+
+    private static boolean isInconsistent(boolean increase, long firstEstimate, long secondEstimate) {
+        return increase && secondEstimate < firstEstimate || !increase && secondEstimate > firstEstimate;
+    }
+
+    private static String getInconsistencyMessage(String firstQueryString, long firstEstimate, String secondQueryString,
+            long secondEstimate) {
+        return "Inconsistent estimated row counts:\nEXPLAIN " + firstQueryString + "; -- " + firstEstimate
+                + "\nEXPLAIN " + secondQueryString + "; -- " + secondEstimate;
+    }
+
+    @Override
+    protected boolean mutateJoin() {
+        List<Node<GeneralExpression>> joins = new ArrayList<>(select.getJoinList());
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < joins.size(); i++) {
+            if (((GeneralJoin) joins.get(i)).getJoinType() != JoinType.NATURAL) {
+                candidates.add(i);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return mutateAnd();
+        }
+        int i = Randomly.fromList(candidates);
+        GeneralJoin join = (GeneralJoin) joins.get(i);
+        boolean increase = join.getJoinType() == JoinType.INNER;
+        if (increase && !state.getHandler().getOption(GeneratorNode.LEFT_JOIN)) {
+            return mutateAnd();
+        }
+        // an inner join returns a subset of the rows of the outer join on the same condition
+        JoinType joinType = increase ? JoinType.LEFT : JoinType.INNER;
+        joins.set(i, new GeneralJoin(join.getLeftTable(), join.getRightTable(), joinType, join.getOnCondition()));
+        select.setJoinList(joins);
+        return increase;
+    }
+
+    @Override
+    protected boolean mutateDistinct() {
+        boolean increase = select.isDistinct();
+        select.setDistinct(!increase);
+        return increase;
+    }
+
+    @Override
+    protected boolean mutateWhere() {
+        boolean increase = select.getWhereClause() != null;
+        if (increase) {
+            select.setWhereClause(null);
+        } else {
+            select.setWhereClause(gen.generateExpression());
+        }
+        return increase;
+    }
+
+    @Override
+    protected boolean mutateAnd() {
+        if (select.getWhereClause() == null) {
+            select.setWhereClause(gen.generateExpression());
+        } else {
+            select.setWhereClause(new NewBinaryOperatorNode<>(select.getWhereClause(), gen.generateExpression(),
+                    GeneralBinaryLogicalOperator.AND));
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean mutateOr() {
+        if (select.getWhereClause() == null) {
+            select.setWhereClause(gen.generateExpression());
+            return false;
+        }
+        select.setWhereClause(new NewBinaryOperatorNode<>(select.getWhereClause(), gen.generateExpression(),
+                GeneralBinaryLogicalOperator.OR));
+        return true;
+    }
+
+    @Override
+    protected boolean mutateLimit() {
+        boolean increase = select.getLimitClause() != null;
+        if (increase) {
+            select.setLimitClause(null);
+        } else {
+            select.setLimitClause(GeneralConstant.createIntConstant(Randomly.getNotCachedInteger(1, 10)));
+        }
+        return increase;
+    }
+
+    @Override
+    public String getLastQueryString() {
+        return lastQueryString;
+    }
+
+    @Override
+    public Reproducer<GeneralGlobalState> getLastReproducer() {
+        return reproducer;
+    }
+
+}
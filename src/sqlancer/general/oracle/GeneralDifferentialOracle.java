@@ -0,0 +1,158 @@
+package sqlancer.general.oracle;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import sqlancer.IgnoreMeException;
+import sqlancer.Randomly;
+import sqlancer.Reproducer;
+import sqlancer.ResultSetFingerprint;
+import sqlancer.common.ast.newast.ColumnReferenceNode;
+import sqlancer.common.ast.newast.Node;
+import sqlancer.common.ast.newast.TableReferenceNode;
+import sqlancer.common.oracle.TestOracle;
+import sqlancer.general.GeneralDifferentialEngines;
+import sqlancer.general.GeneralProvider.GeneralGlobalState;
+import sqlancer.general.GeneralSchema.GeneralColumn;
+import sqlancer.general.GeneralSchema.GeneralTable;
+import sqlancer.general.GeneralSchema.GeneralTables;
+import sqlancer.general.GeneralToStringVisitor;
+import sqlancer.general.ast.GeneralExpression;
+import sqlancer.general.ast.GeneralJoin;
+import sqlancer.general.ast.GeneralSelect;
+import sqlancer.general.gen.GeneralRandomQuerySynthesizer;
+
+/**
+ * Differential oracle: executes a random SELECT on the main engine and on the other engines of --differential-engines,
+ * which replayed the statements that generated the database, and reports a bug when the engines return different
+ * rows. The rows are compared by their order-independent fingerprints.
+ *
+ * A query that an engine rejects is not compared, and it counts as failed for the feedback, so that the generator
+ * prefers the features that every engine supports. The checks are skipped on a database on which the engines
+ * disagreed on whether a statement succeeded, and on the states of oracle workers, which have no other engines.
+ */
+public class GeneralDifferentialOracle implements TestOracle<GeneralGlobalState> {
+
+    private final GeneralGlobalState state;
+    private Reproducer<GeneralGlobalState> reproducer;
+    private String lastQueryString;
+
+    public GeneralDifferentialOracle(GeneralGlobalState state) {
+        if (state.getDbmsSpecificOptions().differentialEngines.isEmpty()) {
+            throw new AssertionError("The DIFFERENTIAL oracle requires --differential-engines");
+        }
+        this.state = state;
+    }
+
+    private static class GeneralDifferentialReproducer implements Reproducer<GeneralGlobalState> {
+        private final String queryString;
+        private String errorMessage;
+
+        GeneralDifferentialReproducer(String queryString, String errorMessage) {
+            this.queryString = queryString;
+            this.errorMessage = errorMessage;
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        @Override
+        public boolean bugStillTriggers(GeneralGlobalState globalState) {
+            GeneralDifferentialEngines engines = globalState.getDifferentialEngines();
+            if (engines == null || engines.isDiverged()) {
+                return false;
+            }
+            try {
+                String message = getMismatchMessage(globalState, engines, queryString,
+                        engines.getFingerprints(globalState.getConnection(), queryString));
+                if (message != null) {
+                    errorMessage = message;
+                    return true;
+                }
+            } catch (SQLException ignored) {
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void check() throws SQLException {
+        reproducer = null;
+        GeneralDifferentialEngines engines = state.getDifferentialEngines();
+        if (engines == null || engines.isDiverged()) {
+            throw new IgnoreMeException();
+        }
+        GeneralTables targetTables = state.getSchema().getRandomTableNonEmptyTables();
+        List<GeneralColumn> columns = targetTables.getColumns();
+        List<TableReferenceNode<GeneralExpression, GeneralTable>> tableList = targetTables.getTables().stream()
+                .map(t -> new TableReferenceNode<GeneralExpression, GeneralTable>(t)).collect(Collectors.toList());
+        List<Node<GeneralExpression>> joins = GeneralJoin.getJoins(tableList, state);
+
+        GeneralSelect select = new GeneralSelect();
+        // the columns are named, as the order of the columns of * could differ between the engines
+        select.setFetchColumns(Randomly.nonEmptySubset(columns).stream()
+                .map(c -> new ColumnReferenceNode<GeneralExpression, GeneralColumn>(c)).collect(Collectors.toList()));
+        select.setFromList(new ArrayList<>(tableList));
+        select.setJoinList(joins);
+        if (Randomly.getBoolean()) {
+            select.setWhereClause(GeneralRandomQuerySynthesizer.getExpressionGenerator(state, columns)
+                    .generateExpression());
+        }
+        String queryString = GeneralToStringVisitor.asString(select);
+        lastQueryString = queryString;
+        state.getState().getLocalState().log(queryString);
+        if (state.getOptions().logEachSelect()) {
+            state.getLogger().writeCurrent(queryString);
+        }
+
+        List<ResultSetFingerprint> fingerprints;
+        try {
+            fingerprints = engines.getFingerprints(state.getConnection(), queryString);
+        } catch (SQLException e) {
+            state.getHandler().appendScoreToTable(false, true, queryString, e.getMessage());
+            state.getLogger().writeCurrent("-- " + e.getMessage());
+            throw new IgnoreMeException();
+        }
+        state.getHandler().appendScoreToTable(true, true, queryString);
+        String errorMessage = getMismatchMessage(state, engines, queryString, fingerprints);
+        if (errorMessage != null) {
+            reproducer = new GeneralDifferentialReproducer(queryString, errorMessage);
+            throw new AssertionError(errorMessage);
+        }
+    }
+
+    // returns a description of the engines whose rows differ from the ones of the main engine, or null if there are
+    // none
+    private static String getMismatchMessage(GeneralGlobalState globalState, GeneralDifferentialEngines engines,
+            String queryString, List<ResultSetFingerprint> fingerprints) {
+        ResultSetFingerprint mainFingerprint = fingerprints.get(0);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < fingerprints.size(); i++) {
+            ResultSetFingerprint fingerprint = fingerprints.get(i);
+            if (!fingerprint.hasSameValues(mainFingerprint)) {
+                sb.append(String.format("\n%s: %d rows", engines.getEngines().get(i - 1), fingerprint.getCount()));
+            }
+        }
+        if (sb.length() == 0) {
+            return null;
+        }
+        return "The engines return different rows for:\n" + queryString + ";\n"
+                + globalState.getDbmsSpecificOptions().getDatabaseEngineFactory() + ": "
+                + mainFingerprint.getCount() + " rows" + sb;
+    }
+
+    @Override
+    public String getLastQueryString() {
+        return lastQueryString;
+    }
+
+    @Override
+    public Reproducer<GeneralGlobalState> getLastReproducer() {
+        return reproducer;
+    }
+
+}
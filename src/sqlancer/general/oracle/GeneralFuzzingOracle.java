@@ -16,6 +16,7 @@ import sqlancer.common.ast.newast.Node;
 import sqlancer.common.ast.newast.TableReferenceNode;
 import sqlancer.common.gen.ExpressionGenerator;
 import sqlancer.common.oracle.TestOracle;
+import sqlancer.general.GeneralConnectionCache;
 import sqlancer.general.GeneralErrorHandler.GeneratorNode;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
 import sqlancer.general.GeneralSchema;
@@ -45,6 +46,7 @@ public class GeneralFuzzingOracle implements TestOracle<GeneralGlobalState> {
 
     private final GeneralGlobalState state;
     private Reproducer<GeneralGlobalState> reproducer;
+    private String lastQueryString;
 
     public GeneralFuzzingOracle(GeneralGlobalState state) {
         this.state = state;
@@ -134,6 +136,7 @@ public class GeneralFuzzingOracle implements TestOracle<GeneralGlobalState> {
         select.setWhereClause(whereClause);
 
         String queryString = GeneralToStringVisitor.asString(select);
+        lastQueryString = queryString;
 
         // Log to the current oracle-run local state.
         // OracleRunReproductionState.close() flushes this to the main state only on the bug path
@@ -171,8 +174,7 @@ public class GeneralFuzzingOracle implements TestOracle<GeneralGlobalState> {
      */
     static boolean isInternalOrCrashError(SQLException e) {
         // SQLState class "08" covers all connection exceptions (crash / connection loss)
-        String sqlState = e.getSQLState();
-        if (sqlState != null && sqlState.startsWith("08")) {
+        if (GeneralConnectionCache.isConnectionError(e)) {
             return true;
         }
         String msg = e.getMessage();
@@ -187,6 +189,11 @@ public class GeneralFuzzingOracle implements TestOracle<GeneralGlobalState> {
         return false;
     }
 
+    @Override
+    public String getLastQueryString() {
+        return lastQueryString;
+    }
+
     @Override
     public Reproducer<GeneralGlobalState> getLastReproducer() {
         return reproducer;
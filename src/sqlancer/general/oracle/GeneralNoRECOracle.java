@@ -24,6 +24,8 @@ import sqlancer.common.query.SQLancerResultSet;
 import sqlancer.general.GeneralErrorHandler.GeneratorNode;
 import sqlancer.general.GeneralErrors;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
+import sqlancer.general.GeneralReadConnections;
+import sqlancer.general.GeneralReadConnections.ReadTask;
 import sqlancer.general.GeneralSchema;
 import sqlancer.general.GeneralSchema.GeneralColumn;
 import sqlancer.general.GeneralSchema.GeneralTable;
@@ -130,13 +132,37 @@ public class GeneralNoRECOracle extends NoRECBase<GeneralGlobalState> implements
                 .map(t -> new TableReferenceNode<GeneralExpression, GeneralTable>(t)).collect(Collectors.toList());
         List<Node<GeneralExpression>> joins = GeneralJoin.getJoins(tableList, state);
 
-        int secondCount = getSecondQuery(tableList.stream().collect(Collectors.toList()), randomWhereCondition, joins);
-        int firstCount = getFirstQueryCount(con, tableList.stream().collect(Collectors.toList()), columns,
+        GeneralSelect unoptimizedSelect = createUnoptimizedSelect(tableList.stream().collect(Collectors.toList()),
                 randomWhereCondition, joins);
+        optimizedSelect = createOptimizedSelect(tableList.stream().collect(Collectors.toList()), columns,
+                randomWhereCondition, joins);
+        boolean aggregateFailed = false;
+        if (GeneralServerAggregates.isEnabled(state, GeneratorNode.AGGREGATE_COUNT)) {
+            Boolean countsMatch = compareCountsOnServer(unoptimizedSelect);
+            if (countsMatch != null && countsMatch) {
+                state.getHandler().appendScoreToTable(true, true, optimizedQueryString);
+                return;
+            }
+            // on a mismatch, the rows are transferred to report the counts of the original queries
+            aggregateFailed = countsMatch == null;
+        }
+        if (countsMatchConcurrently(unoptimizedSelect)) {
+            if (aggregateFailed) {
+                GeneralServerAggregates.disable(state, GeneratorNode.AGGREGATE_COUNT);
+            }
+            state.getHandler().appendScoreToTable(true, true, optimizedQueryString);
+            return;
+        }
+
+        int secondCount = getSecondQuery(unoptimizedSelect);
+        int firstCount = getFirstQueryCount(con);
         if (firstCount == -1 || secondCount == -1) {
             state.getHandler().appendScoreToTable(false, true);
             throw new IgnoreMeException();
         }
+        if (aggregateFailed) {
+            GeneralServerAggregates.disable(state, GeneratorNode.AGGREGATE_COUNT);
+        }
         if (firstCount != secondCount) {
             state.getHandler().appendScoreToTable(true, true, unoptimizedQueryString);
             String errorMessage = optimizedQueryString + "; -- " + firstCount + "\n" + unoptimizedQueryString + " -- "
@@ -147,8 +173,64 @@ public class GeneralNoRECOracle extends NoRECBase<GeneralGlobalState> implements
         state.getHandler().appendScoreToTable(true, true, optimizedQueryString);
     }
 
-    private int getSecondQuery(List<Node<GeneralExpression>> tableList, Node<GeneralExpression> randomWhereCondition,
-            List<Node<GeneralExpression>> joins) throws SQLException {
+    // returns whether the counts computed by the DBMS match, or null if it could not compute them
+    private Boolean compareCountsOnServer(GeneralSelect unoptimizedSelect) {
+        String unoptimizedCount = "COUNT(CASE WHEN "
+                + GeneralToStringVisitor.asString(unoptimizedSelect.getFetchColumns().get(0)) + " THEN 1 END)";
+        unoptimizedQueryString = GeneralToStringVisitor.asString(unoptimizedSelect, unoptimizedCount);
+        optimizedQueryString = GeneralToStringVisitor.asString(optimizedSelect, "COUNT(*)");
+        long[] secondCount = GeneralServerAggregates.getSums(state, unoptimizedQueryString, 1);
+        if (secondCount == null) {
+            return null;
+        }
+        long[] firstCount = GeneralServerAggregates.getSums(state, optimizedQueryString, 1);
+        if (firstCount == null) {
+            return null;
+        }
+        return firstCount[0] == secondCount[0];
+    }
+
+    // counts the rows of both queries concurrently on additional connections; a difference or an error is checked on
+    // the main connection, whose session might see other data
+    private boolean countsMatchConcurrently(GeneralSelect unoptimizedSelect) {
+        if (!GeneralReadConnections.isEnabled(state)) {
+            return false;
+        }
+        String unoptimized = GeneralToStringVisitor.asString(unoptimizedSelect);
+        String optimized = GeneralToStringVisitor.asString(optimizedSelect);
+        unoptimizedQueryString = unoptimized;
+        optimizedQueryString = optimized;
+        List<ReadTask<Integer>> tasks = List.of(c -> countTrueRows(c, unoptimized), c -> countRows(c, optimized));
+        if (options.logEachSelect()) {
+            logger.writeCurrent(unoptimized);
+            logger.writeCurrent(optimized);
+        }
+        List<Integer> counts = GeneralReadConnections.runConcurrently(state, tasks);
+        return counts != null && counts.get(0).equals(counts.get(1));
+    }
+
+    private static int countTrueRows(Statement stat, String queryString) throws SQLException {
+        int count = 0;
+        try (ResultSet rs = stat.executeQuery(queryString)) {
+            while (rs.next()) {
+                count += rs.getBoolean(1) ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    private static int countRows(Statement stat, String queryString) throws SQLException {
+        int count = 0;
+        try (ResultSet rs = stat.executeQuery(queryString)) {
+            while (rs.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private GeneralSelect createUnoptimizedSelect(List<Node<GeneralExpression>> tableList,
+            Node<GeneralExpression> randomWhereCondition, List<Node<GeneralExpression>> joins) {
         GeneralSelect select = new GeneralSelect();
         // select.setGroupByClause(groupBys);
         // GeneralExpression isTrue =
@@ -159,6 +241,10 @@ public class GeneralNoRECOracle extends NoRECBase<GeneralGlobalState> implements
         select.setFromList(tableList);
         // select.setSelectType(SelectType.ALL);
         select.setJoinList(joins);
+        return select;
+    }
+
+    private int getSecondQuery(GeneralSelect select) throws SQLException {
         int secondCount = 0;
         unoptimizedQueryString = GeneralToStringVisitor.asString(select);
         // errors.add("canceling statement due to statement timeout");
@@ -187,25 +273,29 @@ public class GeneralNoRECOracle extends NoRECBase<GeneralGlobalState> implements
         return secondCount;
     }
 
-    private int getFirstQueryCount(SQLConnection con, List<Node<GeneralExpression>> tableList,
+    private GeneralSelect createOptimizedSelect(List<Node<GeneralExpression>> tableList,
             List<GeneralColumn> columns, Node<GeneralExpression> randomWhereCondition,
-            List<Node<GeneralExpression>> joins) throws SQLException {
-        optimizedSelect = new GeneralSelect();
+            List<Node<GeneralExpression>> joins) {
+        GeneralSelect select = new GeneralSelect();
         // select.setGroupByClause(groupBys);
         // GeneralAggregate aggr = new GeneralAggregate(
         List<Node<GeneralExpression>> allColumns = columns.stream()
                 .map((c) -> new ColumnReferenceNode<GeneralExpression, GeneralColumn>(c)).collect(Collectors.toList());
         // GeneralAggregateFunction.COUNT);
         // select.setFetchColumns(Arrays.asList(aggr));
-        optimizedSelect.setFetchColumns(allColumns);
-        optimizedSelect.setFromList(tableList);
-        optimizedSelect.setWhereClause(randomWhereCondition);
+        select.setFetchColumns(allColumns);
+        select.setFromList(tableList);
+        select.setWhereClause(randomWhereCondition);
         // if (Randomly.getBooleanWithSmallProbability()) {
         // select.setOrderByExpressions(new
         // GeneralExpressionGenerator(state).setColumns(columns).generateOrderBys());
         // }
         // select.setSelectType(SelectType.ALL);
-        optimizedSelect.setJoinList(joins);
+        select.setJoinList(joins);
+        return select;
+    }
+
+    private int getFirstQueryCount(SQLConnection con) throws SQLException {
         optimizedQueryString = GeneralToStringVisitor.asString(optimizedSelect);
         int firstCount = 0;
         try (Statement stat = con.createStatement()) {
@@ -225,6 +315,11 @@ public class GeneralNoRECOracle extends NoRECBase<GeneralGlobalState> implements
         return firstCount;
     }
 
+    @Override
+    public String getLastQueryString() {
+        return optimizedQueryString;
+    }
+
     @Override
     public Reproducer<GeneralGlobalState> getLastReproducer() {
         return reproducer;
@@ -0,0 +1,286 @@
+package sqlancer.general.oracle;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import sqlancer.ExecutionTimer;
+import sqlancer.IgnoreMeException;
+import sqlancer.Randomly;
+import sqlancer.Reproducer;
+import sqlancer.common.ast.newast.NewBinaryOperatorNode;
+import sqlancer.common.ast.newast.Node;
+import sqlancer.common.ast.newast.TableReferenceNode;
+import sqlancer.general.GeneralErrorHandler.GeneratorNode;
+import sqlancer.general.GeneralOptions;
+import sqlancer.general.GeneralProvider.GeneralGlobalState;
+import sqlancer.general.GeneralToStringVisitor;
+import sqlancer.general.GeneralToStringVisitor.SelectTemplate;
+import sqlancer.general.ast.GeneralBinaryLogicalOperator;
+import sqlancer.general.ast.GeneralExpression;
+import sqlancer.general.ast.GeneralJoin;
+import sqlancer.general.ast.GeneralJoin.JoinType;
+
+/**
+ * A performance oracle: a query and a semantically equivalent rewrite of it are each run several times, and a bug is
+ * reported when one of them is consistently slower than the other by a configurable factor.
+ *
+ * The rewrites are the ones of the logic oracles, i.e., the partitions of TLP combined with UNION ALL and the
+ * unoptimized count of NoREC, and a reversed join order and a predicate moved from the WHERE clause into the ON
+ * condition of an inner join. The queries are warmed up, and their measured runs are interleaved so that a change of
+ * the load of the machine affects both. A slowdown is only reported if the median latencies differ by the factor, the
+ * fastest run of the slower query is slower than the median of the other one by the factor, and the medians are
+ * further apart than the median absolute deviations (MAD) of the runs, so that noise is not reported.
+ */
+public class GeneralPerformanceOracle extends GeneralQueryPartitioningBase {
+
+    // the MADs of the latencies of both queries the medians need to be apart
+    private static final int NOISE_MADS = 3;
+
+    private Reproducer<GeneralGlobalState> reproducer;
+    private String lastQueryString;
+
+    private enum Rewrite {
+        PARTITIONING, NOREC, JOIN_ORDER, PREDICATE_PLACEMENT
+    }
+
+    /**
+     * The latencies of the measured runs of a query.
+     */
+    private static final class Latencies {
+        private final long[] nanos;
+        private final long median;
+        private final long mad;
+
+        Latencies(long[] nanos) {
+            this.nanos = nanos.clone();
+            this.median = median(this.nanos);
+            long[] deviations = new long[nanos.length];
+            for (int i = 0; i < nanos.length; i++) {
+                deviations[i] = Math.abs(nanos[i] - median);
+            }
+            this.mad = median(deviations);
+        }
+
+        long getMin() {
+            return Arrays.stream(nanos).min().getAsLong();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "median %.3fms, MAD %.3fms, min %.3fms over %d runs", median / 1e6,
+                    mad / 1e6, getMin() / 1e6, nanos.length);
+        }
+
+        private static long median(long[] values) {
+            long[] sorted = values.clone();
+            Arrays.sort(sorted);
+            int middle = sorted.length / 2;
+            return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+        }
+    }
+
+    public GeneralPerformanceOracle(GeneralGlobalState state) {
+        super(state);
+    }
+
+    private class GeneralPerformanceReproducer implements Reproducer<GeneralGlobalState> {
+        final String firstQueryString;
+        final String secondQueryString;
+        private String errorMessage;
+
+        GeneralPerformanceReproducer(String firstQueryString, String secondQueryString, String errorMessage) {
+            this.firstQueryString = firstQueryString;
+            this.secondQueryString = secondQueryString;
+            this.errorMessage = errorMessage;
+        }
+
+        @Override
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        @Override
+        public boolean bugStillTriggers(GeneralGlobalState globalState) {
+            try {
+                List<Latencies> latencies = measure(globalState, firstQueryString, secondQueryString);
+                String message = getSlowdownMessage(globalState, firstQueryString, latencies.get(0),
+                        secondQueryString, latencies.get(1));
+                if (message != null) {
+                    errorMessage = message;
+                    return true;
+                }
+            } catch (SQLException | IgnoreMeException ignored) {
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void check() throws SQLException {
+        reproducer = null;
+        super.check();
+        List<String> queries = getEquivalentQueries(Randomly.fromOptions(Rewrite.values()));
+        String firstQueryString = queries.get(0);
+        String secondQueryString = queries.get(1);
+        lastQueryString = firstQueryString;
+        state.getState().getLocalState().log(firstQueryString);
+        state.getState().getLocalState().log(secondQueryString);
+
+        List<Latencies> latencies;
+        try {
+            latencies = measure(state, firstQueryString, secondQueryString);
+        } catch (SQLException e) {
+            state.getHandler().appendScoreToTable(false, true, secondQueryString, e.getMessage());
+            state.getLogger().writeCurrent("-- " + e.getMessage());
+            throw new IgnoreMeException();
+        }
+        String errorMessage = getSlowdownMessage(state, firstQueryString, latencies.get(0), secondQueryString,
+                latencies.get(1));
+        state.getHandler().appendScoreToTable(true, true, secondQueryString);
+        if (errorMessage != null) {
+            reproducer = new GeneralPerformanceReproducer(firstQueryString, secondQueryString, errorMessage);
+            throw new AssertionError(errorMessage);
+        }
+    }
+
+    // returns a query and an equivalent rewrite of it; a rewrite that does not apply to the select falls back to the
+    // partitioning of TLP, which applies to every select
+    private List<String> getEquivalentQueries(Rewrite rewrite) {
+        String predicateString = GeneralToStringVisitor.asString(predicate);
+        switch (rewrite) {
+        case NOREC:
+            if (GeneralServerAggregates.isEnabled(state, GeneratorNode.AGGREGATE_COUNT)) {
+                String unoptimizedCount = "COUNT(CASE WHEN " + predicateString + " THEN 1 END)";
+                String unoptimizedQueryString = GeneralToStringVisitor.asString(select, unoptimizedCount);
+                select.setWhereClause(predicate);
+                String optimizedQueryString = GeneralToStringVisitor.asString(select, "COUNT(*)");
+                return List.of(optimizedQueryString, unoptimizedQueryString);
+            }
+            break;
+        case JOIN_ORDER:
+            if (select.getFromList().size() + select.getJoinList().size() >= 2) {
+                select.setWhereClause(predicate);
+                String queryString = GeneralToStringVisitor.asString(select);
+                // the tables and joins of the FROM clause are a commutative cross product
+                List<Node<GeneralExpression>> fromList = new ArrayList<>(select.getFromList());
+                List<Node<GeneralExpression>> joinList = new ArrayList<>(select.getJoinList());
+                Collections.reverse(fromList);
+                Collections.reverse(joinList);
+                select.setFromList(fromList);
+                select.setJoinList(joinList);
+                return List.of(queryString, GeneralToStringVisitor.asString(select));
+            }
+            break;
+        case PREDICATE_PLACEMENT:
+            // the predicate can only refer to the tables of the join if the join is the whole FROM clause
+            if (select.getFromList().isEmpty() && select.getJoinList().size() == 1
+                    && ((GeneralJoin) select.getJoinList().get(0)).getJoinType() == JoinType.INNER
+                    && ((GeneralJoin) select.getJoinList().get(0)).getRightTable() instanceof TableReferenceNode) {
+                GeneralJoin join = (GeneralJoin) select.getJoinList().get(0);
+                select.setWhereClause(predicate);
+                String queryString = GeneralToStringVisitor.asString(select);
+                Node<GeneralExpression> onCondition = new NewBinaryOperatorNode<>(join.getOnCondition(), predicate,
+                        GeneralBinaryLogicalOperator.AND);
+                select.setJoinList(List.of(
+                        new GeneralJoin(join.getLeftTable(), join.getRightTable(), JoinType.INNER, onCondition)));
+                select.setWhereClause(null);
+                return List.of(queryString, GeneralToStringVisitor.asString(select));
+            }
+            break;
+        case PARTITIONING:
+            break;
+        default:
+            throw new AssertionError(rewrite);
+        }
+        SelectTemplate template = GeneralToStringVisitor.asTemplate(select);
+        String negatedPredicateString = GeneralToStringVisitor.asString(negatedPredicate, predicate, predicateString);
+        String isNullPredicateString = GeneralToStringVisitor.asString(isNullPredicate, predicate, predicateString);
+        String unionString = template.getQuery(predicateString) + " UNION ALL "
+                + template.getQuery(negatedPredicateString) + " UNION ALL " + template.getQuery(isNullPredicateString);
+        return List.of(template.getQuery(), unionString);
+    }
+
+    // runs the queries for warm-up, and then alternately for the measured runs
+    private static List<Latencies> measure(GeneralGlobalState globalState, String firstQueryString,
+            String secondQueryString) throws SQLException {
+        GeneralOptions options = globalState.getDbmsSpecificOptions();
+        long firstRows = -1;
+        long secondRows = -1;
+        for (int i = 0; i < options.performanceWarmupRuns; i++) {
+            firstRows = run(globalState, firstQueryString, null);
+            secondRows = run(globalState, secondQueryString, null);
+        }
+        int nrRuns = Math.max(1, options.performanceRuns);
+        long[] firstNanos = new long[nrRuns];
+        long[] secondNanos = new long[nrRuns];
+        ExecutionTimer timer = new ExecutionTimer();
+        for (int i = 0; i < nrRuns; i++) {
+            firstRows = run(globalState, firstQueryString, timer);
+            firstNanos[i] = timer.getElapsedNanos();
+            secondRows = run(globalState, secondQueryString, timer);
+            secondNanos[i] = timer.getElapsedNanos();
+        }
+        if (firstRows != secondRows) {
+            // the queries are not equivalent on this engine, which the logic oracles check
+            throw new IgnoreMeException();
+        }
+        return List.of(new Latencies(firstNanos), new Latencies(secondNanos));
+    }
+
+    // executes a query and fetches its rows, timing both if a timer is given
+    private static long run(GeneralGlobalState globalState, String queryString, ExecutionTimer timer)
+            throws SQLException {
+        if (globalState.getOptions().logEachSelect()) {
+            globalState.getLogger().writeCurrent(queryString);
+        }
+        long nrRows = 0;
+        try (Statement s = globalState.getConnection().createStatement()) {
+            if (timer != null) {
+                timer.start();
+            }
+            try (ResultSet rs = s.executeQuery(queryString)) {
+                while (rs.next()) {
+                    nrRows++;
+                }
+            }
+            if (timer != null) {
+                timer.end();
+            }
+        }
+        return nrRows;
+    }
+
+    // returns a description of the slowdown of one query over the other, or null if there is none
+    private static String getSlowdownMessage(GeneralGlobalState globalState, String firstQueryString,
+            Latencies first, String secondQueryString, Latencies second) {
+        boolean firstIsSlower = first.median > second.median;
+        Latencies slow = firstIsSlower ? first : second;
+        Latencies fast = firstIsSlower ? second : first;
+        GeneralOptions options = globalState.getDbmsSpecificOptions();
+        double factor = options.performanceSlowdownFactor;
+        if (slow.median < options.performanceMinLatency * 1_000_000L || slow.median < factor * fast.median
+                || slow.getMin() < factor * fast.median
+                || slow.median - fast.median <= NOISE_MADS * (slow.mad + fast.mad)) {
+            return null;
+        }
+        return String.format(Locale.ROOT, "Equivalent query is %.1fx slower:\n%s; -- %s\n%s; -- %s",
+                (double) slow.median / Math.max(1, fast.median), firstQueryString, first, secondQueryString, second);
+    }
+
+    @Override
+    public String getLastQueryString() {
+        return lastQueryString;
+    }
+
+    @Override
+    public Reproducer<GeneralGlobalState> getLastReproducer() {
+        return reproducer;
+    }
+
+}
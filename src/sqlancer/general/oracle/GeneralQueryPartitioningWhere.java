@@ -2,17 +2,24 @@ package sqlancer.general.oracle;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import sqlancer.ComparatorHelper;
 import sqlancer.Randomly;
 import sqlancer.Reproducer;
+import sqlancer.ResultSetFingerprint;
+import sqlancer.general.GeneralErrorHandler.GeneratorNode;
 import sqlancer.general.GeneralErrors;
 import sqlancer.general.GeneralProvider.GeneralGlobalState;
+import sqlancer.general.GeneralReadConnections;
+import sqlancer.general.GeneralReadConnections.ReadTask;
 import sqlancer.general.GeneralToStringVisitor;
+import sqlancer.general.GeneralToStringVisitor.SelectTemplate;
 
 public class GeneralQueryPartitioningWhere extends GeneralQueryPartitioningBase {
     private Reproducer<GeneralGlobalState> reproducer;
+    private String lastQueryString;
 
     public GeneralQueryPartitioningWhere(GeneralGlobalState state) {
         super(state);
@@ -45,13 +52,14 @@ public class GeneralQueryPartitioningWhere extends GeneralQueryPartitioningBase
         @Override
         public boolean bugStillTriggers(GeneralGlobalState globalState) {
             try {
-                List<String> resultSet = ComparatorHelper.getResultSetFirstColumnAsString(originalQueryString, errors,
-                        globalState);
+                ResultSetFingerprint resultSet = new ResultSetFingerprint();
+                ComparatorHelper.addResultSetFirstColumn(originalQueryString, errors, globalState, resultSet);
                 List<String> combinedString1 = new ArrayList<>();
-                List<String> secondResultSet1 = ComparatorHelper.getCombinedResultSet(firstQueryString,
-                        secondQueryString, thirdQueryString, combinedString1, !orderBy, globalState, errors);
+                ResultSetFingerprint secondResultSet1 = ComparatorHelper.getCombinedResultFingerprint(
+                        firstQueryString, secondQueryString, thirdQueryString, combinedString1, !orderBy, globalState,
+                        errors);
                 ComparatorHelper.assumeResultSetsAreEqual(resultSet, secondResultSet1, originalQueryString,
-                        combinedString1, globalState, ComparatorHelper::canonicalizeResultValue);
+                        combinedString1, globalState, errors);
             } catch (AssertionError triggeredError) {
                 this.errorMessage = triggeredError.getMessage();
                 return true;
@@ -66,10 +74,52 @@ public class GeneralQueryPartitioningWhere extends GeneralQueryPartitioningBase
         reproducer = null;
         super.check();
         select.setWhereClause(null);
-        String originalQueryString = GeneralToStringVisitor.asString(select);
-        List<String> resultSet;
+        // the variants only differ in their WHERE clause, so the rest of the select is rendered once
+        SelectTemplate template = GeneralToStringVisitor.asTemplate(select);
+        String originalQueryString = template.getQuery();
+        lastQueryString = originalQueryString;
+        String predicateString = GeneralToStringVisitor.asString(predicate);
+        String negatedPredicateString = GeneralToStringVisitor.asString(negatedPredicate, predicate, predicateString);
+        String isNullPredicateString = GeneralToStringVisitor.asString(isNullPredicate, predicate, predicateString);
+        boolean orderBy = Randomly.getBooleanWithRatherLowProbability();
+        // an ORDER BY does not change the aggregates, so only the queries without one are checked on the server; counts
+        // alone cannot tell different values apart, so the server only checks the engines that can hash the values
+        GeneratorNode failedAggregate = null;
+        String column = GeneralToStringVisitor.asString(select.getFetchColumns().get(0));
+        String checksum = column.equals("*") ? null
+                : state.getDbmsSpecificOptions().getDatabaseEngineFactory().getChecksumAggregate(column);
+        if (!orderBy && !select.isDistinct() && checksum != null
+                && GeneralServerAggregates.isEnabled(state, GeneratorNode.AGGREGATE_CHECKSUM)) {
+            Boolean aggregatesMatch = compareAggregatesOnServer(column, checksum, predicateString,
+                    negatedPredicateString, isNullPredicateString);
+            if (aggregatesMatch != null && aggregatesMatch) {
+                return;
+            }
+            // on a mismatch, the rows are transferred to confirm it and to report the missing values
+            if (aggregatesMatch == null) {
+                failedAggregate = GeneratorNode.AGGREGATE_CHECKSUM;
+            }
+        }
+        if (orderBy) {
+            select.setOrderByExpressions(gen.generateOrderBys());
+            template = template.withTail(select);
+        }
+        String firstQueryString = template.getQuery(predicateString);
+        String secondQueryString = template.getQuery(negatedPredicateString);
+        String thirdQueryString = template.getQuery(isNullPredicateString);
+        if (resultsMatchConcurrently(originalQueryString, firstQueryString, secondQueryString, thirdQueryString,
+                orderBy)) {
+            if (failedAggregate != null) {
+                GeneralServerAggregates.disable(state, failedAggregate);
+            }
+            state.getHandler().appendScoreToTable(true, true, firstQueryString);
+            return;
+        }
+
+        // the results are compared by their fingerprints, so the rows are not kept
+        ResultSetFingerprint resultSet = new ResultSetFingerprint();
         try {
-            resultSet = ComparatorHelper.getResultSetFirstColumnAsString(originalQueryString, errors, state);
+            ComparatorHelper.addResultSetFirstColumn(originalQueryString, errors, state, resultSet);
         } catch (Exception e) {
             if (select.getJoinList().size() == 0 && select.getFromList().size() <= 2) {
                 e.printStackTrace();
@@ -83,29 +133,22 @@ public class GeneralQueryPartitioningWhere extends GeneralQueryPartitioningBase
             throw e;
         }
 
-        boolean orderBy = Randomly.getBooleanWithRatherLowProbability();
-        if (orderBy) {
-            select.setOrderByExpressions(gen.generateOrderBys());
-        }
-        select.setWhereClause(predicate);
-        String firstQueryString = GeneralToStringVisitor.asString(select);
-        select.setWhereClause(negatedPredicate);
-        String secondQueryString = GeneralToStringVisitor.asString(select);
-        select.setWhereClause(isNullPredicate);
-        String thirdQueryString = GeneralToStringVisitor.asString(select);
         List<String> combinedString = new ArrayList<>();
 
-        List<String> secondResultSet;
+        ResultSetFingerprint secondResultSet;
         try {
-            secondResultSet = ComparatorHelper.getCombinedResultSet(firstQueryString, secondQueryString,
+            secondResultSet = ComparatorHelper.getCombinedResultFingerprint(firstQueryString, secondQueryString,
                     thirdQueryString, combinedString, !orderBy, state, errors);
         } catch (Exception e) {
             state.getHandler().appendScoreToTable(false, true, firstQueryString, e.getMessage());
             throw e;
         }
+        if (failedAggregate != null) {
+            GeneralServerAggregates.disable(state, failedAggregate);
+        }
         try {
             ComparatorHelper.assumeResultSetsAreEqual(resultSet, secondResultSet, originalQueryString, combinedString,
-                    state, ComparatorHelper::canonicalizeResultValue);
+                    state, errors);
         } catch (AssertionError e) {
             // TODO we need to give some information to the handler here
             // state.getHandler().printStatistics();
@@ -117,6 +160,82 @@ public class GeneralQueryPartitioningWhere extends GeneralQueryPartitioningBase
         state.getHandler().appendScoreToTable(true, true, firstQueryString);
     }
 
+    /**
+     * Runs the original query and the partitions concurrently on additional connections. A difference or an error is
+     * checked on the main connection, whose session might see other data than the additional ones.
+     *
+     * @return whether the results match
+     */
+    private boolean resultsMatchConcurrently(String originalQueryString, String firstQueryString,
+            String secondQueryString, String thirdQueryString, boolean orderBy) {
+        if (!GeneralReadConnections.isEnabled(state)) {
+            return false;
+        }
+        List<String> queries = new ArrayList<>();
+        queries.add(originalQueryString);
+        if (orderBy) {
+            queries.add(firstQueryString);
+            queries.add(secondQueryString);
+            queries.add(thirdQueryString);
+        } else {
+            queries.add(firstQueryString + " UNION ALL " + secondQueryString + " UNION ALL " + thirdQueryString);
+        }
+        List<ReadTask<ResultSetFingerprint>> tasks = new ArrayList<>();
+        for (String query : queries) {
+            if (state.getOptions().logEachSelect()) {
+                state.getLogger().writeCurrent(query);
+            }
+            tasks.add(s -> ComparatorHelper.getResultSetFirstColumnFingerprint(s, query));
+        }
+        List<ResultSetFingerprint> results = GeneralReadConnections.runConcurrently(state, tasks);
+        if (results == null) {
+            return false;
+        }
+        ResultSetFingerprint combined = new ResultSetFingerprint();
+        for (ResultSetFingerprint partition : results.subList(1, results.size())) {
+            combined.addAll(partition);
+        }
+        if (state.getOptions().validateResultSizeOnly()) {
+            return results.get(0).getCount() == combined.getCount();
+        }
+        return results.get(0).hasSameValues(combined);
+    }
+
+    /**
+     * Compares the number of rows, the number of non-NULL values of the first column, and the checksum of these values
+     * of the original query and the partitions, as computed by the DBMS.
+     *
+     * @return whether the aggregates match, or null if the DBMS could not compute them
+     */
+    private Boolean compareAggregatesOnServer(String column, String checksum, String predicateString,
+            String negatedPredicateString, String isNullPredicateString) {
+        String aggregates = "COUNT(*), COUNT(" + column + "), " + checksum;
+        int nrAggregates = 3;
+        SelectTemplate aggregateTemplate = GeneralToStringVisitor.asTemplate(select, aggregates);
+        long[] original = GeneralServerAggregates.getSums(state, aggregateTemplate.getQuery(), nrAggregates);
+        if (original == null) {
+            return null;
+        }
+        String firstQueryString = aggregateTemplate.getQuery(predicateString);
+        String combinedQueryString = firstQueryString + " UNION ALL "
+                + aggregateTemplate.getQuery(negatedPredicateString) + " UNION ALL "
+                + aggregateTemplate.getQuery(isNullPredicateString);
+        long[] partitions = GeneralServerAggregates.getSums(state, combinedQueryString, nrAggregates);
+        if (partitions == null) {
+            return null;
+        }
+        if (!Arrays.equals(original, partitions)) {
+            return false;
+        }
+        state.getHandler().appendScoreToTable(true, true, firstQueryString);
+        return true;
+    }
+
+    @Override
+    public String getLastQueryString() {
+        return lastQueryString;
+    }
+
     @Override
     public Reproducer<GeneralGlobalState> getLastReproducer() {
         return reproducer;
@@ -0,0 +1,73 @@
+package sqlancer.general.oracle;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import sqlancer.general.GeneralErrorHandler.GeneratorNode;
+import sqlancer.general.GeneralProvider.GeneralGlobalState;
+
+/**
+ * The aggregate mode of the oracles, in which the DBMS computes counts and checksums of the rows instead of returning
+ * them. The oracles only transfer the rows if the aggregates mismatch, or if the DBMS does not support an aggregate,
+ * which is learned when an aggregate query fails while the same query without aggregates succeeds.
+ */
+final class GeneralServerAggregates {
+
+    private GeneralServerAggregates() {
+    }
+
+    static boolean isEnabled(GeneralGlobalState state, GeneratorNode aggregate) {
+        return state.getDbmsSpecificOptions().serverSideAggregates && state.getHandler().getOption(aggregate);
+    }
+
+    /**
+     * Executes an aggregate query and sums each of its columns over the rows it returns, e.g., one row per partition
+     * of a UNION ALL.
+     *
+     * @param state
+     *            the global state
+     * @param queryString
+     *            the aggregate query
+     * @param nrColumns
+     *            the number of aggregates of the query
+     *
+     * @return the sums, or null if the query failed
+     */
+    static long[] getSums(GeneralGlobalState state, String queryString, int nrColumns) {
+        if (state.getOptions().logEachSelect()) {
+            state.getLogger().writeCurrent(queryString);
+        }
+        long[] sums = new long[nrColumns];
+        try (Statement stat = state.getConnection().createStatement();
+                ResultSet rs = stat.executeQuery(queryString)) {
+            while (rs.next()) {
+                for (int i = 0; i < nrColumns; i++) {
+                    String value = rs.getString(i + 1);
+                    // the SUM of no rows is NULL, and some DBMS return it as a decimal
+                    if (value != null) {
+                        sums[i] += new BigDecimal(value.trim()).longValue();
+                    }
+                }
+            }
+        } catch (SQLException | NumberFormatException e) {
+            state.getLogger().writeCurrent("-- " + e.getMessage());
+            return null;
+        }
+        return sums;
+    }
+
+    /**
+     * Stops using an aggregate whose query failed although the same query without it succeeded.
+     *
+     * @param state
+     *            the global state
+     * @param aggregate
+     *            the aggregate
+     */
+    static void disable(GeneralGlobalState state, GeneratorNode aggregate) {
+        state.getHandler().setOption(aggregate, false);
+    }
+
+}
@@ -0,0 +1,127 @@
+package sqlancer;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestQueryPlanPool {
+
+    @Test
+    public void testAdd() {
+        QueryPlanPool pool = new QueryPlanPool(10);
+        assertTrue(pool.add(1, "SELECT 1"));
+        assertFalse(pool.add(1, "SELECT 2"));
+        assertTrue(pool.add(2, "SELECT 2"));
+        assertTrue(pool.contains(1));
+        assertEquals(2, pool.size());
+        // the first query of a plan is kept
+        assertTrue(pool.sample(10, new Randomly()).contains(Map.entry(1L, "SELECT 1")));
+        pool.remove(1);
+        assertFalse(pool.contains(1));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void testEviction() {
+        QueryPlanPool pool = new QueryPlanPool(3);
+        pool.add(1, "SELECT 1");
+        pool.add(2, "SELECT 2");
+        pool.add(3, "SELECT 3");
+        pool.add(4, "SELECT 4");
+        // the least recently added plan is evicted
+        assertEquals(3, pool.size());
+        assertFalse(pool.contains(1));
+        // adding a plan again marks it as recently found
+        assertFalse(pool.add(2, "SELECT 2"));
+        pool.add(5, "SELECT 5");
+        assertTrue(pool.contains(2));
+        assertFalse(pool.contains(3));
+        assertTrue(pool.contains(4));
+        assertTrue(pool.contains(5));
+    }
+
+    @Test
+    public void testSampleDoesNotMarkRecent() {
+        QueryPlanPool pool = new QueryPlanPool(2);
+        pool.add(1, "SELECT 1");
+        pool.add(2, "SELECT 2");
+        // neither sampling nor looking up a plan marks it as recently found
+        pool.sample(2, new Randomly());
+        pool.contains(1);
+        pool.add(3, "SELECT 3");
+        assertFalse(pool.contains(1));
+        assertTrue(pool.contains(2));
+    }
+
+    @Test
+    public void testSample() {
+        QueryPlanPool pool = new QueryPlanPool(100);
+        for (long i = 0; i < 20; i++) {
+            pool.add(i, "SELECT " + i);
+        }
+        Randomly r = new Randomly();
+        Set<Long> sampled = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            List<Map.Entry<Long, String>> sample = pool.sample(5, r);
+            assertEquals(5, sample.size());
+            Set<Long> distinct = new HashSet<>();
+            for (Map.Entry<Long, String> entry : sample) {
+                assertEquals("SELECT " + entry.getKey(), entry.getValue());
+                distinct.add(entry.getKey());
+            }
+            assertEquals(5, distinct.size());
+            sampled.addAll(distinct);
+        }
+        // every plan can be sampled
+        assertEquals(20, sampled.size());
+        // a sample larger than the pool contains every plan
+        assertEquals(20, pool.sample(50, r).size());
+        assertEquals(0, pool.sample(0, r).size());
+        assertEquals(0, new QueryPlanPool(10).sample(5, r).size());
+    }
+
+    @Test
+    public void testSampleAfterRemoveAndEviction() {
+        QueryPlanPool pool = new QueryPlanPool(20);
+        // the plans in the order in which they were added
+        Set<Long> expected = new LinkedHashSet<>();
+        Randomly r = new Randomly();
+        for (long i = 0; i < 1000; i++) {
+            pool.add(i, "SELECT " + i);
+            expected.add(i);
+            if (expected.size() > 20) {
+                expected.remove(expected.iterator().next());
+            }
+            if (i % 3 == 0) {
+                long removed = i - r.getInteger(0, 10);
+                pool.remove(removed);
+                expected.remove(removed);
+            }
+            Set<Long> sampled = new HashSet<>();
+            for (Map.Entry<Long, String> entry : pool.sample(100, r)) {
+                sampled.add(entry.getKey());
+            }
+            assertEquals(expected, sampled);
+            assertEquals(expected.size(), pool.size());
+        }
+    }
+
+    @Test
+    public void testFingerprint() {
+        assertEquals("SEQ_SCAN t0 USING INDEX i0 ON v0",
+                QueryPlanPool.removeNames("SEQ_SCAN t12 USING INDEX i3 ON v7"));
+        assertEquals(QueryPlanPool.getFingerprint("SCAN t1"), QueryPlanPool.getFingerprint("SCAN t42"));
+        assertNotEquals(QueryPlanPool.getFingerprint("SCAN t1"), QueryPlanPool.getFingerprint("SEARCH t1"));
+        assertNotEquals(QueryPlanPool.getFingerprint("SCAN t1"), QueryPlanPool.getFingerprint("SCAN c1"));
+    }
+
+}
@@ -0,0 +1,105 @@
+package sqlancer;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestResultSetFingerprint {
+
+    private static ResultSetFingerprint fingerprint(String... values) {
+        ResultSetFingerprint fingerprint = new ResultSetFingerprint();
+        for (String value : values) {
+            fingerprint.add(value);
+        }
+        return fingerprint;
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(fingerprint().hasSameValues(new ResultSetFingerprint()));
+        assertEquals(0, fingerprint().getCount());
+        assertFalse(fingerprint().hasSameValues(fingerprint((String) null)));
+        assertFalse(fingerprint().hasSameValues(fingerprint("")));
+    }
+
+    @Test
+    public void testOrderIndependence() {
+        ResultSetFingerprint fingerprint = fingerprint("1", "a", null, "2.5", "a");
+        assertTrue(fingerprint.hasSameValues(fingerprint("a", null, "2.5", "a", "1")));
+        assertTrue(fingerprint.hasSameValues(fingerprint("2.5", "a", "a", "1", null)));
+        assertEquals(5, fingerprint.getCount());
+    }
+
+    @Test
+    public void testDuplicateSensitivity() {
+        assertFalse(fingerprint("a", "a").hasSameValues(fingerprint("a")));
+        assertFalse(fingerprint("a", "a", "b").hasSameValues(fingerprint("a", "b", "b")));
+        assertFalse(fingerprint(null, null).hasSameValues(fingerprint((String) null)));
+        // equal sums of the values of the same number of rows
+        assertFalse(fingerprint("a", "a").hasSameValues(fingerprint("b", "c")));
+        assertFalse(fingerprint("1", "3").hasSameValues(fingerprint("2", "2")));
+    }
+
+    @Test
+    public void testDifferentValues() {
+        assertFalse(fingerprint("a").hasSameValues(fingerprint("b")));
+        assertFalse(fingerprint("ab").hasSameValues(fingerprint("ba")));
+        assertFalse(fingerprint("").hasSameValues(fingerprint((String) null)));
+        assertFalse(fingerprint("null").hasSameValues(fingerprint((String) null)));
+        assertFalse(fingerprint("1.50").hasSameValues(fingerprint("1.5")));
+    }
+
+    @Test
+    public void testCanonicalization() {
+        assertTrue(fingerprint("1.0").hasSameValues(fingerprint("1")));
+        assertTrue(fingerprint("1.000").hasSameValues(fingerprint("1")));
+        assertTrue(fingerprint("-0").hasSameValues(fingerprint("0")));
+        assertTrue(fingerprint("-0.0").hasSameValues(fingerprint("0")));
+        assertFalse(fingerprint("-1").hasSameValues(fingerprint("1")));
+        assertFalse(fingerprint("10").hasSameValues(fingerprint("1")));
+    }
+
+    private static ResultSetFingerprint rows(String[]... rows) {
+        ResultSetFingerprint fingerprint = new ResultSetFingerprint();
+        for (String[] row : rows) {
+            for (String value : row) {
+                fingerprint.addRowValue(value);
+            }
+            fingerprint.endRow();
+        }
+        return fingerprint;
+    }
+
+    @Test
+    public void testRows() {
+        ResultSetFingerprint fingerprint = rows(new String[] { "1", "2" }, new String[] { "2", "1" });
+        assertEquals(2, fingerprint.getCount());
+        assertTrue(fingerprint.hasSameValues(rows(new String[] { "2", "1" }, new String[] { "1", "2" })));
+        // the same values in other rows
+        assertFalse(fingerprint.hasSameValues(rows(new String[] { "1", "1" }, new String[] { "2", "2" })));
+        // the same values in other columns
+        assertFalse(rows(new String[] { "1", "2" }).hasSameValues(rows(new String[] { "2", "1" })));
+        assertFalse(rows(new String[] { "a", null }).hasSameValues(rows(new String[] { null, "a" })));
+        // the same values in another number of columns
+        assertFalse(rows(new String[] { "1", "2" }).hasSameValues(rows(new String[] { "1" }, new String[] { "2" })));
+        assertFalse(rows(new String[] { "1", "2" }, new String[] {})
+                .hasSameValues(rows(new String[] { "1" }, new String[] { "2" })));
+        assertTrue(rows(new String[] { "1.0", "-0" }).hasSameValues(rows(new String[] { "1", "0" })));
+    }
+
+    @Test
+    public void testAddAll() {
+        List<String> values = Arrays.asList("x", "y", null, "x", "z");
+        ResultSetFingerprint partitions = fingerprint("x", "x");
+        partitions.addAll(fingerprint("y", null));
+        partitions.addAll(fingerprint("z"));
+        assertTrue(partitions.hasSameValues(fingerprint(values.toArray(new String[0]))));
+        assertEquals(values.size(), partitions.getCount());
+    }
+
+}
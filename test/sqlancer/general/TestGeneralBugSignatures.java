@@ -0,0 +1,88 @@
+package sqlancer.general;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import sqlancer.general.GeneralBugSignatures.Match;
+import sqlancer.general.GeneralBugSignatures.Signature;
+
+public class TestGeneralBugSignatures {
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int i : indexes) {
+            bits.set(i);
+        }
+        return bits;
+    }
+
+    private static Signature nodes(boolean error, int... nodes) {
+        return new Signature(error, bits(nodes), new BitSet(), new BitSet());
+    }
+
+    @Test
+    public void testEmpty() {
+        GeneralBugSignatures signatures = new GeneralBugSignatures();
+        assertEquals(Match.NONE, signatures.match(nodes(false, 1, 2)));
+        assertEquals(Match.NONE, signatures.match(nodes(false)));
+    }
+
+    @Test
+    public void testNodeSubset() {
+        GeneralBugSignatures signatures = new GeneralBugSignatures();
+        signatures.put("database0", nodes(false, 2, 5));
+        signatures.put("database1", nodes(false, 1, 7, 9));
+        // uses all the nodes of a stored bug
+        assertEquals(Match.FEATURE, signatures.match(nodes(false, 2, 5)));
+        assertEquals(Match.FEATURE, signatures.match(nodes(false, 0, 2, 3, 5, 8)));
+        assertEquals(Match.FEATURE, signatures.match(nodes(false, 1, 2, 7, 9)));
+        // only uses some of the nodes of each stored bug
+        assertEquals(Match.NONE, signatures.match(nodes(false, 2)));
+        assertEquals(Match.NONE, signatures.match(nodes(false, 1, 5, 7)));
+        assertEquals(Match.NONE, signatures.match(nodes(false, 3, 4)));
+    }
+
+    @Test
+    public void testFragmentsAndFunctions() {
+        GeneralBugSignatures signatures = new GeneralBugSignatures();
+        signatures.put("database0", new Signature(false, bits(1, 2), bits(10), bits(20, 21)));
+        assertEquals(Match.FEATURE, signatures.match(new Signature(false, bits(3), bits(10, 11), new BitSet())));
+        assertEquals(Match.FEATURE, signatures.match(new Signature(false, bits(3), new BitSet(), bits(21))));
+        assertEquals(Match.NONE, signatures.match(new Signature(false, bits(3), bits(11), bits(22))));
+    }
+
+    @Test
+    public void testConstant() {
+        GeneralBugSignatures signatures = new GeneralBugSignatures();
+        signatures.put("database0", nodes(false, 1));
+        assertEquals(Match.NONE, signatures.match(nodes(false)));
+        // the fragments and functions of a constant bug are not compared
+        signatures.put("database1", new Signature(false, new BitSet(), bits(10), bits(20)));
+        assertEquals(Match.CONSTANT, signatures.match(nodes(false)));
+        assertEquals(Match.NONE, signatures.match(new Signature(false, bits(3), bits(10), bits(20))));
+    }
+
+    @Test
+    public void testErrorsAndFailuresAreSeparate() {
+        GeneralBugSignatures signatures = new GeneralBugSignatures();
+        signatures.put("database0", nodes(true, 1));
+        assertEquals(Match.FEATURE, signatures.match(nodes(true, 1, 2)));
+        assertEquals(Match.NONE, signatures.match(nodes(false, 1, 2)));
+    }
+
+    @Test
+    public void testReplace() {
+        GeneralBugSignatures signatures = new GeneralBugSignatures();
+        signatures.put("database0", nodes(false, 1));
+        signatures.put("database1", nodes(true, 4));
+        // a database keeps only the signature of its last bug
+        signatures.put("database0", nodes(false, 2));
+        assertEquals(Match.NONE, signatures.match(nodes(false, 1)));
+        assertEquals(Match.FEATURE, signatures.match(nodes(false, 2)));
+        assertEquals(Match.FEATURE, signatures.match(nodes(true, 4)));
+    }
+
+}
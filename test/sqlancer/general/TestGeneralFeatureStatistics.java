@@ -0,0 +1,103 @@
+package sqlancer.general;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestGeneralFeatureStatistics {
+
+    @Test
+    public void testEmpty() {
+        GeneralFeatureStatistics<String> statistics = new GeneralFeatureStatistics<>();
+        assertTrue(statistics.isEmpty());
+        assertNull(statistics.get("a"));
+        assertTrue(statistics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void testAdd() {
+        GeneralFeatureStatistics<String> statistics = new GeneralFeatureStatistics<>();
+        statistics.add("a", 1, 2);
+        statistics.add("a", 3, 4);
+        statistics.add("b", 0, 1);
+        assertFalse(statistics.isEmpty());
+        assertEquals(4, statistics.get("a").getSuccess());
+        assertEquals(6, statistics.get("a").getCount());
+        assertEquals(4.0 / 6, statistics.get("a").getRate());
+        assertEquals(0, statistics.get("b").getRate());
+        assertEquals(2, statistics.snapshot().size());
+    }
+
+    @Test
+    public void testBatch() {
+        GeneralFeatureStatistics<Integer> statistics = new GeneralFeatureStatistics<>();
+        GeneralFeatureStatistics.Batch batch = new GeneralFeatureStatistics.Batch();
+        GeneralFeatureScore score = new GeneralFeatureScore(4);
+        score.add(1);
+        score.add(1);
+        // grows the arrays of the batch
+        score.add(100);
+        batch.add(score, true);
+        batch.add(score, false);
+        statistics.addAll(batch, id -> id);
+        // each statement counts a feature once, and a successful one credits it with its number of uses
+        assertEquals(2, statistics.get(1).getSuccess());
+        assertEquals(2, statistics.get(1).getCount());
+        assertEquals(1, statistics.get(100).getSuccess());
+        assertEquals(2, statistics.get(100).getCount());
+        // the batch is cleared when it is published
+        statistics.addAll(batch, id -> id);
+        assertEquals(2, statistics.get(1).getCount());
+    }
+
+    @Test
+    public void testAverage() {
+        GeneralFeatureStatistics<String> statistics = new GeneralFeatureStatistics<>();
+        statistics.add("often", 5, 10);
+        statistics.add("rarely", 1, 2);
+        statistics.add("never", 0, 2);
+        Map<String, Double> average = statistics.getAverage(5, false);
+        assertEquals(Map.of("often", 0.5), average);
+        average = statistics.getAverage(5, true);
+        assertEquals(Map.of("often", 0.5, "rarely", 0.5), average);
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        GeneralFeatureStatistics<String> statistics = new GeneralFeatureStatistics<>();
+        int nrThreads = 8;
+        int nrAdds = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(nrThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < nrThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < nrAdds; j++) {
+                        statistics.add("a", j % 2, 1);
+                        // a reader never sees more successes than executions
+                        GeneralFeatureStatistics.FeatureCount count = statistics.get("a");
+                        assertTrue(count.getSuccess() <= count.getCount());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals((long) nrThreads * nrAdds, statistics.get("a").getCount());
+        assertEquals((long) nrThreads * nrAdds / 2, statistics.get("a").getSuccess());
+    }
+
+}
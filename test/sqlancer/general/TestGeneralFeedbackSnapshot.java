@@ -0,0 +1,81 @@
+package sqlancer.general;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestGeneralFeedbackSnapshot {
+
+    private static GeneralFeedbackSnapshot load(byte[] bytes) throws IOException {
+        File file = File.createTempFile("feedback", ".snapshot");
+        try {
+            Files.write(file.toPath(), bytes);
+            return GeneralFeedbackSnapshot.load(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        GeneralFeedbackSnapshot snapshot = new GeneralFeedbackSnapshot("DUCKDB", "v1.0.0 \u00e9");
+        snapshot.getNodeCounts().put("UNARY_PREFIX", new long[] { 3, 10 });
+        snapshot.getNodeCounts().put("BINARY_ARITHMETIC", new long[] { Long.MAX_VALUE, 0 });
+        snapshot.getCompositeCounts().put("INT[]", new long[] { 0, 7 });
+        snapshot.getNodeOptions().put("UNARY_PREFIX", true);
+        snapshot.getNodeOptions().put("BINARY_ARITHMETIC", false);
+        snapshot.getCompositeOptions().put("INT[]", false);
+        snapshot.getDisabledFragments().add("CREATE_TABLE-0");
+        snapshot.getDisabledFragments().add("");
+        snapshot.getDepths().put("WHERE", 3);
+
+        GeneralFeedbackSnapshot loaded = load(snapshot.toBytes());
+        assertEquals("DUCKDB", loaded.getEngine());
+        assertEquals("v1.0.0 \u00e9", loaded.getEngineVersion());
+        assertEquals(List.of("UNARY_PREFIX", "BINARY_ARITHMETIC"), List.copyOf(loaded.getNodeCounts().keySet()));
+        assertArrayEquals(new long[] { 3, 10 }, loaded.getNodeCounts().get("UNARY_PREFIX"));
+        assertArrayEquals(new long[] { Long.MAX_VALUE, 0 }, loaded.getNodeCounts().get("BINARY_ARITHMETIC"));
+        assertArrayEquals(new long[] { 0, 7 }, loaded.getCompositeCounts().get("INT[]"));
+        assertEquals(snapshot.getNodeOptions(), loaded.getNodeOptions());
+        assertEquals(snapshot.getCompositeOptions(), loaded.getCompositeOptions());
+        assertEquals(Arrays.asList("CREATE_TABLE-0", ""), loaded.getDisabledFragments());
+        assertEquals(Map.of("WHERE", 3), loaded.getDepths());
+    }
+
+    @Test
+    public void testEmptyRoundTrip() throws IOException {
+        GeneralFeedbackSnapshot loaded = load(new GeneralFeedbackSnapshot("SQLITE", "").toBytes());
+        assertEquals("SQLITE", loaded.getEngine());
+        assertEquals("", loaded.getEngineVersion());
+        assertTrue(loaded.getNodeCounts().isEmpty());
+        assertTrue(loaded.getCompositeCounts().isEmpty());
+        assertTrue(loaded.getNodeOptions().isEmpty());
+        assertTrue(loaded.getCompositeOptions().isEmpty());
+        assertTrue(loaded.getDisabledFragments().isEmpty());
+        assertTrue(loaded.getDepths().isEmpty());
+    }
+
+    @Test
+    public void testInvalidFile() {
+        assertThrows(IOException.class, () -> load(new byte[0]));
+        assertThrows(IOException.class, () -> load("not a snapshot".getBytes(StandardCharsets.UTF_8)));
+        byte[] bytes = new GeneralFeedbackSnapshot("DUCKDB", "v1.0.0").toBytes();
+        // a truncated file
+        assertThrows(IOException.class, () -> load(Arrays.copyOf(bytes, bytes.length - 1)));
+        // another format version
+        bytes[7]++;
+        assertThrows(IOException.class, () -> load(bytes));
+    }
+
+}
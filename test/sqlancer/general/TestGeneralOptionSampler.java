@@ -0,0 +1,97 @@
+package sqlancer.general;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestGeneralOptionSampler {
+
+    private static final int NR_SAMPLES = 100000;
+
+    // the predicates of these tests do not use the handler, so none is created
+    private static Map<String, Integer> sample(GeneralOptionSampler<String> sampler) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < NR_SAMPLES; i++) {
+            counts.merge(sampler.next(null), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    public void testWeightedDistribution() {
+        Map<String, Integer> weights = Map.of("a", 1, "b", 2, "c", 3, "d", 4);
+        GeneralOptionSampler<String> sampler = new GeneralOptionSampler<>(weights::keySet, weights::get,
+                (handler, option) -> true);
+        Map<String, Integer> counts = sample(sampler);
+        assertEquals(weights.keySet(), counts.keySet());
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            double expected = entry.getValue() / 10.0;
+            double actual = (double) counts.get(entry.getKey()) / NR_SAMPLES;
+            assertEquals(expected, actual, 0.01, entry.getKey());
+        }
+    }
+
+    @Test
+    public void testUniformDistribution() {
+        List<String> options = Arrays.asList("a", "b", "c");
+        GeneralOptionSampler<String> sampler = new GeneralOptionSampler<>(() -> options, (handler, option) -> true);
+        Map<String, Integer> counts = sample(sampler);
+        for (String option : options) {
+            assertEquals(1.0 / 3, (double) counts.get(option) / NR_SAMPLES, 0.01, option);
+        }
+    }
+
+    @Test
+    public void testDisabledOptionsAreExcluded() {
+        Map<String, Integer> weights = Map.of("a", 1, "b", 5, "c", 0);
+        GeneralOptionSampler<String> sampler = new GeneralOptionSampler<>(weights::keySet, weights::get,
+                (handler, option) -> !"b".equals(option));
+        // b is disabled, and c has no weight
+        assertEquals(Set.of("a"), sample(sampler).keySet());
+    }
+
+    @Test
+    public void testNothingEnabled() {
+        GeneralOptionSampler<String> sampler = new GeneralOptionSampler<>(() -> Arrays.asList("a", "b"),
+                (handler, option) -> false);
+        assertNull(sampler.next(null));
+        sampler = new GeneralOptionSampler<>(ArrayList::new, (handler, option) -> true);
+        assertNull(sampler.next(null));
+    }
+
+    @Test
+    public void testRebuildWhenOptionsChange() {
+        List<String> options = new ArrayList<>(Arrays.asList("a"));
+        Set<String> disabled = new HashSet<>();
+        GeneralOptionSampler<String> sampler = new GeneralOptionSampler<>(() -> options,
+                (handler, option) -> !disabled.contains(option));
+        assertEquals("a", sampler.next(null));
+
+        // the table is only rebuilt when the options change
+        options.add("b");
+        assertEquals(Set.of("a"), sample(sampler).keySet());
+        GeneralErrorHandler.markOptionsChanged();
+        assertEquals(Set.of("a", "b"), sample(sampler).keySet());
+
+        disabled.add("a");
+        assertTrue(sample(sampler).containsKey("a"));
+        GeneralErrorHandler.markOptionsChanged();
+        assertFalse(sample(sampler).containsKey("a"));
+
+        disabled.add("b");
+        GeneralErrorHandler.markOptionsChanged();
+        assertNull(sampler.next(null));
+    }
+
+}
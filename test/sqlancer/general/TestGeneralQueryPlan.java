@@ -0,0 +1,119 @@
+package sqlancer.general;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class TestGeneralQueryPlan {
+
+    // EXPLAIN SELECT * FROM t8, t0 on DuckDB 1.0.0
+    private static final String DUCKDB_CROSS_PRODUCT = "┌───────────────────────────┐\n"
+            + "│         PROJECTION        │\n"
+            + "│   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   │\n"
+            + "│             c0            │\n"
+            + "│             c0            │\n"
+            + "└─────────────┬─────────────┘\n"
+            + "┌─────────────┴─────────────┐\n"
+            + "│       CROSS_PRODUCT       ├──────────────┐\n"
+            + "└─────────────┬─────────────┘              │\n"
+            + "┌─────────────┴─────────────┐┌─────────────┴─────────────┐\n"
+            + "│         SEQ_SCAN          ││         SEQ_SCAN          │\n"
+            + "│   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   ││   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   │\n"
+            + "│             t0            ││             t8            │\n"
+            + "│   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   ││   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   │\n"
+            + "│             c0            ││             c0            │\n"
+            + "│   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   ││   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   │\n"
+            + "│           EC: 3           ││           EC: 1           │\n"
+            + "└───────────────────────────┘└───────────────────────────┘\n";
+
+    // EXPLAIN SELECT t0.c0 FROM t0 WHERE c0 > 1 on DuckDB 1.0.0
+    private static final String DUCKDB_SEQ_SCAN = "┌───────────────────────────┐\n"
+            + "│         SEQ_SCAN          │\n"
+            + "│   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   │\n"
+            + "│             t0            │\n"
+            + "│   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   │\n"
+            + "│             c0            │\n"
+            + "│   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   │\n"
+            + "│Filters: c0>1 AND c0 IS NOT│\n"
+            + "│            NULL           │\n"
+            + "│   ─ ─ ─ ─ ─ ─ ─ ─ ─ ─ ─   │\n"
+            + "│           EC: 1           │\n"
+            + "└───────────────────────────┘\n";
+
+    private static List<String[]> plan(String[] labels, String[]... rows) {
+        List<String[]> plan = new ArrayList<>();
+        plan.add(labels);
+        plan.addAll(List.of(rows));
+        return plan;
+    }
+
+    private static List<String[]> textPlan(String label, String... lines) {
+        List<String[]> plan = new ArrayList<>();
+        plan.add(new String[] { label });
+        for (String line : lines) {
+            plan.add(new String[] { line });
+        }
+        return plan;
+    }
+
+    @Test
+    public void testDuckDB() {
+        String[] labels = { "explain_key", "explain_value" };
+        // the root has no estimate, so the ones of the scans are not taken
+        assertEquals(-1, GeneralQueryPlan.getRootEstimate(
+                plan(labels, new String[] { "physical_plan", DUCKDB_CROSS_PRODUCT }), "EC:"));
+        assertEquals(1, GeneralQueryPlan.getRootEstimate(
+                plan(labels, new String[] { "physical_plan", DUCKDB_SEQ_SCAN }), "EC:"));
+    }
+
+    @Test
+    public void testSQLite() {
+        // EXPLAIN QUERY PLAN SELECT * FROM t8, t0 WHERE t8.c0 > 0 on SQLite 3.40.0
+        List<String[]> plan = plan(new String[] { "id", "parent", "notused", "detail" },
+                new String[] { "3", "0", "0", "SCAN t8" }, new String[] { "7", "0", "0", "SCAN t0" });
+        for (String label : new String[] { "rows=", "estRows", "estimated row count:", "EC:" }) {
+            assertEquals(-1, GeneralQueryPlan.getRootEstimate(plan, label));
+        }
+    }
+
+    @Test
+    public void testPostgres() {
+        // EXPLAIN SELECT * FROM t8, t0 WHERE t8.c0 > 0 on PostgreSQL
+        List<String[]> plan = textPlan("QUERY PLAN", "Nested Loop  (cost=0.00..76.93 rows=4335 width=8)",
+                "  ->  Seq Scan on t0  (cost=0.00..35.50 rows=2550 width=4)",
+                "  ->  Materialize  (cost=0.00..41.88 rows=850 width=4)",
+                "        ->  Seq Scan on t8  (cost=0.00..41.88 rows=850 width=4)",
+                "              Filter: (c0 > 0)");
+        assertEquals(4335, GeneralQueryPlan.getRootEstimate(plan, "rows="));
+        // the root has no estimate
+        plan = textPlan("QUERY PLAN", "Result  (cost=0.00..0.01 width=4)",
+                "  ->  Seq Scan on t0  (cost=0.00..35.50 rows=2550 width=4)");
+        assertEquals(-1, GeneralQueryPlan.getRootEstimate(plan, "rows="));
+    }
+
+    @Test
+    public void testTiDB() {
+        // EXPLAIN SELECT * FROM t0 WHERE c0 > 1 on TiDB
+        List<String[]> plan = plan(new String[] { "id", "estRows", "task", "access object", "operator info" },
+                new String[] { "TableReader_7", "3333.33", "root", "", "data:Selection_6" },
+                new String[] { "└─Selection_6", "3333.33", "cop[tikv]", "", "gt(test.t0.c0, 1)" },
+                new String[] { "  └─TableFullScan_5", "10000.00", "cop[tikv]", "table:t0",
+                        "keep order:false, stats:pseudo" });
+        assertEquals(3333, GeneralQueryPlan.getRootEstimate(plan, "estRows"));
+    }
+
+    @Test
+    public void testCockroachDB() {
+        // EXPLAIN SELECT * FROM t8, t0 on CockroachDB
+        List<String[]> plan = textPlan("info", "distribution: local", "vectorized: true", "",
+                "• cross join", "│ estimated row count: 1,000,000 (missing stats)", "│",
+                "├── • scan", "│     estimated row count: 1,000 (missing stats)",
+                "│     table: t8@t8_pkey", "│", "└── • scan",
+                "      estimated row count: 1,000 (missing stats)", "      table: t0@t0_pkey");
+        assertEquals(1000000, GeneralQueryPlan.getRootEstimate(plan, "estimated row count:"));
+    }
+
+}